@@ -8,8 +8,17 @@ import goat.thaw.system.EyeOfEnderListener;
 import goat.thaw.system.dev.*;
 import goat.thaw.system.space.SpaceManager;
 import goat.thaw.system.space.SpaceEventListener;
+import goat.thaw.system.space.SpaceRevalidator;
 import goat.thaw.system.space.SpacePresenceListener;
 import goat.thaw.system.space.SpaceBlockListener;
+import goat.thaw.system.space.SpaceChunkListener;
+import goat.thaw.system.space.AirGraph;
+import goat.thaw.system.space.BlockChangeDispatcher;
+import goat.thaw.system.space.SkyColumnCache;
+import goat.thaw.system.environment.CaveLabels;
+import goat.thaw.system.environment.EnvironmentSampler;
+import goat.thaw.system.environment.SunVisibility;
+import goat.thaw.system.space.temperature.HeatSolver;
 import goat.thaw.system.stats.StatsCommand;
 import goat.thaw.system.stats.StatsManager;
 import goat.thaw.subsystems.hunting.TrailManager;
@@ -27,6 +36,7 @@ import org.bukkit.block.Block;
 import org.bukkit.Material;
 import org.bukkit.plugin.java.JavaPlugin;
 import goat.thaw.subsystems.temperature.DiceManager;
+import goat.thaw.subsystems.temperature.ThermalIndex;
 import goat.thaw.subsystems.temperature.FireTickManager;
 import goat.thaw.system.logging.DiceLogger;
 import goat.thaw.system.effects.EffectManager;
@@ -41,6 +51,8 @@ import goat.thaw.system.monument.MonumentManager;
 import java.util.*;
 import goat.thaw.system.dev.BungalowLootManager;
 import goat.thaw.system.dev.ToggleEffectsCommand;
+import goat.thaw.system.dev.SpaceRevalidationCommand;
+import goat.thaw.system.dev.HeatSolverCommand;
 import goat.thaw.system.enchanting.EnchantingManager;
 
 public final class Thaw extends JavaPlugin {
@@ -57,7 +69,16 @@ public final class Thaw extends JavaPlugin {
     private CalorieManager calorieManager;
     private ActivityEnergyManager activityEnergyManager;
     private ThermalRegulator thermalRegulator;
+    private BlockChangeDispatcher blockChanges;
+    private SkyColumnCache skyColumns;
+    private AirGraph airGraph;
+    private EnvironmentSampler environmentSampler;
+    private CaveLabels caveLabels;
+    private SunVisibility sunVisibility;
     private SpaceManager spaceManager;
+    private SpaceRevalidator spaceRevalidator;
+    private HeatSolver heatSolver;
+    private ThermalIndex thermalIndex;
     private DiceManager diceManager;
     private DiceLogger diceLogger;
     private SledManager sledManager;
@@ -90,15 +111,42 @@ public final class Thaw extends JavaPlugin {
     @Override
     public void onEnable() {
         instance = this; // set reference on plugin enable
+        saveDefaultConfig(); // writes config.yml on first run; existing files are left alone
 
         // getServer().getPluginManager().registerEvents(new ResourcePackListener(), this);
 
+        // One set of block-event handlers feeding every block cache below
+        blockChanges = new BlockChangeDispatcher(this);
+        blockChanges.start();
+        // Column heights for sky checks, shared by spaces, oxygen and temperature
+        skyColumns = new SkyColumnCache(this);
+        skyColumns.start();
+        blockChanges.subscribe(skyColumns);
+        // Air connectivity around players, so sky checks don't have to flood
+        airGraph = new AirGraph(this, skyColumns);
+        airGraph.start();
+        blockChanges.subscribe(airGraph);
+
         // Spaces: load and listeners
-        spaceManager = new SpaceManager(this);
+        spaceManager = new SpaceManager(this, skyColumns, airGraph);
         spaceManager.load();
         getServer().getPluginManager().registerEvents(new SpacePresenceListener(spaceManager), this);
-        getServer().getPluginManager().registerEvents(new SpaceEventListener(spaceManager, this), this);
+        spaceRevalidator = new SpaceRevalidator(this, spaceManager, skyColumns);
+        spaceRevalidator.start();
+        blockChanges.subscribe(spaceRevalidator);
+        heatSolver = new HeatSolver(this, spaceManager);
+        heatSolver.start();
+
+        // Per-player surroundings (space, sky, sun, underground...) shared by the subsystems below
+        sunVisibility = new SunVisibility(skyColumns);
+        caveLabels = new CaveLabels(this);
+        getServer().getPluginManager().registerEvents(caveLabels, this);
+        blockChanges.subscribe(caveLabels);
+        environmentSampler = new EnvironmentSampler(this, spaceManager, skyColumns, sunVisibility, caveLabels, airGraph);
+        environmentSampler.start();
+        getServer().getPluginManager().registerEvents(new SpaceEventListener(spaceRevalidator), this);
         getServer().getPluginManager().registerEvents(new SpaceBlockListener(spaceManager), this);
+        getServer().getPluginManager().registerEvents(new SpaceChunkListener(spaceManager), this);
         getServer().getPluginManager().registerEvents(new FirstJoinListener(this), this);
         getServer().getPluginManager().registerEvents(new WolfSpawnListener(), this);
         getServer().getPluginManager().registerEvents(new EyeOfEnderListener(), this);
@@ -137,7 +185,13 @@ public final class Thaw extends JavaPlugin {
             getCommand("teleporttopeak").setExecutor(new TeleportToPeakCommand());
         }
         if (getCommand("floodfillalgorithm") != null) {
-            getCommand("floodfillalgorithm").setExecutor(new FloodFillAlgorithmCommand(this, spaceManager));
+            getCommand("floodfillalgorithm").setExecutor(new FloodFillAlgorithmCommand(this, spaceManager, skyColumns));
+        }
+        if (getCommand("spacerevalidation") != null) {
+            getCommand("spacerevalidation").setExecutor(new SpaceRevalidationCommand(spaceRevalidator));
+        }
+        if (getCommand("heatsolver") != null) {
+            getCommand("heatsolver").setExecutor(new HeatSolverCommand(heatSolver));
         }
         if (getCommand("sled") != null) {
             sledManager = new SledManager(this);
@@ -182,7 +236,10 @@ public final class Thaw extends JavaPlugin {
 
         // DICE: external climate and body drift
         diceLogger = new DiceLogger(this);
-        diceManager = new DiceManager(this, statsManager, spaceManager, diceLogger);
+        thermalIndex = new ThermalIndex(this);
+        thermalIndex.start();
+        blockChanges.subscribe(thermalIndex);
+        diceManager = new DiceManager(this, statsManager, spaceManager, heatSolver, sunVisibility, thermalIndex, environmentSampler, diceLogger);
         diceManager.start();
 
         // Effects: circumstantial and timed (e.g., Hypoxia)
@@ -198,7 +255,7 @@ public final class Thaw extends JavaPlugin {
         sidebarManager.start();
 
         // Oxygen: deep-underground detection, depletion and regeneration
-        oxygenManager = new OxygenManager(this, statsManager);
+        oxygenManager = new OxygenManager(this, statsManager, environmentSampler);
         oxygenManager.start();
 
         // Eye Spy: nocturnal tracking eye
@@ -345,7 +402,9 @@ public final class Thaw extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        if (spaceManager != null) spaceManager.save();
+        if (spaceRevalidator != null) spaceRevalidator.stop();
+        if (heatSolver != null) heatSolver.stop();
+        if (spaceManager != null) spaceManager.shutdown();
         if (sidebarManager != null) sidebarManager.stop();
         if (statsManager != null) statsManager.stop();
         if (tablistManager != null) tablistManager.stop();
@@ -355,11 +414,16 @@ public final class Thaw extends JavaPlugin {
         if (activityEnergyManager != null) activityEnergyManager.stop();
         if (thermalRegulator != null) thermalRegulator.stop();
         if (diceManager != null) diceManager.stop();
+        if (thermalIndex != null) thermalIndex.stop();
         if (sledManager != null) sledManager.stopAll();
         if (effectManager != null) effectManager.stop();
         if (fireTickManager != null) fireTickManager.stop();
         if (oxygenManager != null) oxygenManager.stop();
         if (eyeSpyManager != null) eyeSpyManager.stop();
+        if (environmentSampler != null) environmentSampler.stop();
+        if (airGraph != null) airGraph.stop();
+        if (skyColumns != null) skyColumns.stop();
+        if (blockChanges != null) blockChanges.stop();
     }
 
 
@@ -1,6 +1,7 @@
 package goat.thaw.subsystems.calories;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
@@ -27,6 +28,7 @@ public class ActivityEnergyManager implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey calories, temperature;
     private BukkitTask sampleTask;
 
     // Baselines (cal/min)
@@ -57,6 +59,8 @@ public class ActivityEnergyManager implements Listener {
     public ActivityEnergyManager(JavaPlugin plugin, StatsManager stats) {
         this.plugin = plugin;
         this.stats = stats;
+        this.calories = stats.key("Calories");
+        this.temperature = stats.key("Temperature");
     }
 
     public void start() {
@@ -128,12 +132,10 @@ public class ActivityEnergyManager implements Listener {
     }
 
     private void spendCalories(Player p, double amount) {
-        StatInstance cal = stats.get(p.getUniqueId(), "Calories");
-        if (cal == null) return;
-        cal.subtract(amount);
+        PlayerStats values = stats.of(p.getUniqueId());
+        values.subtract(calories, amount);
         // Calorie coupling: only warm body when below 65 F
-        StatInstance body = stats.get(p.getUniqueId(), "Temperature");
-        if (body != null && body.get() < 65.0) body.add(amount * 0.5);
+        if (values.get(temperature) < 65.0) values.add(temperature, amount * 0.5);
     }
 
     // Per-action hooks
@@ -1,6 +1,7 @@
 package goat.thaw.subsystems.calories;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -23,6 +24,7 @@ public class CalorieManager implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey calorieKey, temperatureKey;
     private BukkitTask hungerTask;
     private BukkitTask deathTask;
     private BukkitTask healingTask;
@@ -40,6 +42,8 @@ public class CalorieManager implements Listener {
     public CalorieManager(JavaPlugin plugin, StatsManager stats) {
         this.plugin = plugin;
         this.stats = stats;
+        this.calorieKey = stats.key("Calories");
+        this.temperatureKey = stats.key("Temperature");
     }
 
     public void start() {
@@ -80,10 +84,9 @@ public class CalorieManager implements Listener {
     @EventHandler
     public void onConsume(PlayerItemConsumeEvent e) {
         Player p = e.getPlayer();
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst == null) return;
-        double calories = calInst.get();
-        double max = calInst.getDefinition().getMax();
+        PlayerStats values = stats.of(p.getUniqueId());
+        double calories = values.get(calorieKey);
+        double max = calorieKey.getDefinition().getMax();
         if (calories >= max) {
             // Block eating at max calories
             e.setCancelled(true);
@@ -96,7 +99,7 @@ public class CalorieManager implements Listener {
         if (m != null) {
             double gain = caloriesFor(m);
             if (gain > 0) {
-                calInst.add(gain);
+                values.add(calorieKey, gain);
             }
         }
     }
@@ -104,10 +107,8 @@ public class CalorieManager implements Listener {
     @EventHandler
     public void onDeath(PlayerDeathEvent e) {
         Player p = e.getEntity();
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst == null) return;
         // Set to 2000 to avoid chain-death immediately after respawn
-        calInst.set(1000.0);
+        stats.of(p.getUniqueId()).set(calorieKey, 1000.0);
     }
 
     @EventHandler
@@ -127,9 +128,7 @@ public class CalorieManager implements Listener {
     }
 
     private void syncPlayerHunger(Player p) {
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst == null) return;
-        double calories = calInst.get();
+        double calories = stats.of(p.getUniqueId()).get(calorieKey);
 
         // Map Calories to hunger: 150 Calories => 1 hunger point; 0..20 range
         int hunger = (int) Math.floor(calories / 150.0);
@@ -143,9 +142,7 @@ public class CalorieManager implements Listener {
     }
 
     private void enforceZeroCalorieDeath(Player p) {
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst == null) return;
-        if (calInst.get() <= 0.0) {
+        if (stats.of(p.getUniqueId()).get(calorieKey) <= 0.0) {
             // Kill immediately if not already dead
             if (p.isDead()) return;
             try {
@@ -162,9 +159,8 @@ public class CalorieManager implements Listener {
     private void processHealing(Player p) {
         if (p.isDead()) { healElapsed.remove(p.getUniqueId()); return; }
 
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst == null) return;
-        double calories = calInst.get();
+        PlayerStats values = stats.of(p.getUniqueId());
+        double calories = values.get(calorieKey);
 
         // Determine threshold settings
         int interval;
@@ -194,9 +190,8 @@ public class CalorieManager implements Listener {
         if (calories < HEAL_COST_CALORIES) return;
 
         // Spend calories and heal; couple to temperature
-        calInst.subtract(HEAL_COST_CALORIES);
-        goat.thaw.system.stats.StatInstance body = stats.get(p.getUniqueId(), "Temperature");
-        if (body != null && body.get() < 65.0) body.add(HEAL_COST_CALORIES * 0.5);
+        values.subtract(calorieKey, HEAL_COST_CALORIES);
+        if (values.get(temperatureKey) < 65.0) values.add(temperatureKey, HEAL_COST_CALORIES * 0.5);
         double newHealth = Math.min(cap, health + HEAL_AMOUNT);
         try {
             p.setHealth(newHealth);
@@ -1,5 +1,6 @@
 package goat.thaw.subsystems.combat;
 
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import goat.thaw.subsystems.hunting.TrailManager;
 import goat.thaw.system.DailyAnnouncementManager;
@@ -89,7 +90,8 @@ public class PopulationManager implements Listener {
                 } catch (Throwable ignore) {}
             });
             // Increment DayCount for online players
-            Bukkit.getOnlinePlayers().forEach(p -> stats.add(p.getUniqueId(), "DayCount", 1.0));
+            StatKey dayCount = stats.key("DayCount");
+            Bukkit.getOnlinePlayers().forEach(p -> stats.of(p.getUniqueId()).add(dayCount, 1.0));
         }
     }
 
@@ -1,14 +1,16 @@
 package goat.thaw.subsystems.temperature;
 
+import goat.thaw.system.environment.EnvironmentSample;
+import goat.thaw.system.environment.EnvironmentSampler;
+import goat.thaw.system.environment.SunVisibility;
 import goat.thaw.system.space.Space;
 import goat.thaw.system.space.SpaceManager;
-import goat.thaw.system.space.temperature.TemperatureRegistry;
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.space.temperature.HeatSolver;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -16,15 +18,33 @@ import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
 public class DiceManager implements Listener {
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey temperature, externalTemperature;
     private final SpaceManager spaces;
+    private final HeatSolver heat;
+    private final SunVisibility sun;
+    private final EnvironmentSampler environment;
+    private final ThermalIndex thermal;
+    private final int[] airByShell = new int[RADIUS + 1]; // main thread only (onMove), reused per sample
+    private final int[] waterByShell = new int[RADIUS + 1];
     private BukkitTask task;
+    private ForkJoinPool pool; // evaluates captured players
+    private boolean inFlight = false;
     private final goat.thaw.system.logging.DiceLogger logger;
 
     private static final int TICKS = 20; // drift once per second
     private static final int RADIUS = 5; // DFS radius in blocks
+    private static final int BATCH = 16; // players per worker task
     // Absolute drift rates (degrees per second)
     private static final double HEAT_RATE_DEG_PER_SEC = 5; // warming speed (twice as fast)
     private static final double COOL_RATE_DEG_PER_SEC = 5; // cooling speed
@@ -37,70 +57,164 @@ public class DiceManager implements Listener {
     private static final double FAR_STRENGTH = 0.5;  // 50% weaker at radius
     private static final double COLD_MULTIPLIER = 1; // buff cold influences
 
-    public DiceManager(JavaPlugin plugin, StatsManager stats, SpaceManager spaces, goat.thaw.system.logging.DiceLogger logger) {
+    // One player's DICE inputs, captured on the main thread; externalBias is filled in by a worker
+    private static final class Probe {
+        final UUID player;
+        final String world;
+        final int x, y, z;
+        final long time;
+        final boolean storm;
+        final boolean nether;
+        final Space space;               // sealed space the player is in, or null
+        final ThermalIndex.Region region; // blocks around the player, when not in a space
+        final double sunBias;
+        double externalBias;
+
+        Probe(UUID player, World w, int x, int y, int z, boolean nether, Space space, ThermalIndex.Region region, double sunBias) {
+            this.player = player;
+            this.world = w.getName();
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.time = w.getTime();
+            this.storm = w.hasStorm() || w.isThundering();
+            this.nether = nether;
+            this.space = space;
+            this.region = region;
+            this.sunBias = sunBias;
+        }
+    }
+
+    public DiceManager(JavaPlugin plugin, StatsManager stats, SpaceManager spaces, HeatSolver heat, SunVisibility sun, ThermalIndex thermal, EnvironmentSampler environment, goat.thaw.system.logging.DiceLogger logger) {
         this.plugin = plugin;
         this.stats = stats;
+        this.temperature = stats.key("Temperature");
+        this.externalTemperature = stats.key("ExternalTemperature");
         this.spaces = spaces;
+        this.heat = heat;
+        this.sun = sun;
+        this.environment = environment;
+        this.thermal = thermal;
         this.logger = logger;
     }
 
     public void start() {
         Bukkit.getPluginManager().registerEvents(this, plugin);
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                    t.setName("Thaw-Dice-" + t.getPoolIndex());
+                    t.setDaemon(true);
+                    return t;
+                }, null, false);
         task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, TICKS, TICKS);
     }
 
     public void stop() {
         if (task != null) { task.cancel(); task = null; }
+        if (pool != null) { pool.shutdownNow(); pool = null; }
+        inFlight = false;
     }
 
+    // Main thread: capture every player, then evaluate in parallel; the results are applied on a later tick
     private void tick() {
+        if (inFlight) return; // the previous round hasn't been applied yet; skip rather than pile up
+        List<Probe> probes = new ArrayList<>();
         for (Player p : Bukkit.getOnlinePlayers()) {
-            updatePlayer(p);
+            // Space and sun come from the shared per-player sample, which is only rebuilt when something moved
+            EnvironmentSample env = environment.get(p);
+            probes.add(capture(p.getUniqueId(), p.getWorld(), env.x, env.y + 1, env.z, env.space, env.sunVisible));
         }
+        if (probes.isEmpty()) return;
+        inFlight = true;
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < probes.size(); from += BATCH) {
+            List<Probe> batch = probes.subList(from, Math.min(probes.size(), from + BATCH));
+            batches.add(CompletableFuture.runAsync(() -> {
+                int[] air = new int[RADIUS + 1], water = new int[RADIUS + 1];
+                for (Probe probe : batch) probe.externalBias = evaluate(probe, air, water);
+            }, pool));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).whenComplete((v, error) -> {
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                inFlight = false;
+                if (error != null) {
+                    plugin.getLogger().warning("DICE evaluation failed: " + error.getMessage());
+                    return;
+                }
+                for (Probe probe : probes) apply(probe);
+            });
+        });
     }
 
-    private void updatePlayer(Player p) {
-        World w = p.getWorld();
-        int x = p.getLocation().getBlockX();
-        int y = p.getLocation().getBlockY() + 1; // one above feet
-        int z = p.getLocation().getBlockZ();
+    // One above feet; everything the evaluation needs that can only be read on the main thread
+    private Probe capture(UUID id, World w, int x, int y, int z, Space s, boolean sunVisible) {
+        if (w.getEnvironment() == World.Environment.NETHER) return new Probe(id, w, x, y, z, true, null, null, 0.0);
+        if (s != null) return new Probe(id, w, x, y, z, false, s, null, 0.0);
+        return new Probe(id, w, x, y, z, false, null, thermal.capture(w, x, y, z, RADIUS), computeSunBias(w, sunVisible));
+    }
 
-        double externalBias;
-        if (w.getEnvironment() == World.Environment.NETHER) {
-            // Nether baseline is extremely hot
-            externalBias = 200.0;
-        } else {
-            externalBias = computeExternalTemperatureDFS(w, x, y, z);
+    // Any thread
+    private double evaluate(Probe probe, int[] airByShell, int[] waterByShell) {
+        // Nether baseline is extremely hot
+        if (probe.nether) return 200.0;
+        // If in a sealed space, use the temperature of the part of it the player is in
+        if (probe.space != null) return heat.sample(probe.space, probe.x, probe.y, probe.z);
+
+        // Every block within RADIUS (Chebyshev), solid or not: air and water by distance, plus the indexed sources
+        Arrays.fill(airByShell, 0);
+        Arrays.fill(waterByShell, 0);
+        int sx = probe.x, sy = probe.y, sz = probe.z;
+        double[] total = {0.0};
+        int[] samples = {0};
+        probe.region.sample(airByShell, waterByShell, (x, y, z, influence) -> {
+            int d = Math.max(Math.max(Math.abs(x - sx), Math.abs(y - sy)), Math.abs(z - sz));
+            total[0] += cold(influence) * weight(d);
+            samples[0]++;
+        });
+        for (int d = 0; d <= RADIUS; d++) {
+            total[0] += (airByShell[d] * cold(AIR_COOLING) + waterByShell[d] * cold(WATER_COOLING)) * weight(d);
+            samples[0] += airByShell[d] + waterByShell[d];
         }
 
+        if (samples[0] == 0) return 0.0;
+        double fieldBias = total[0] / samples[0];
+        return fieldBias + probe.sunBias;
+    }
+
+    // Main thread
+    private void apply(Probe probe) {
+        double externalBias = probe.externalBias;
+        // Left between the async sample and now; of() would read them back from disk just to drop them
+        Player p = Bukkit.getPlayer(probe.player);
+        if (p == null) return;
+
         // Update ExternalTemperature stat
-        StatInstance ext = stats.get(p.getUniqueId(), "ExternalTemperature");
-        if (ext != null) ext.set(externalBias);
+        PlayerStats values = stats.of(probe.player);
+        values.set(externalTemperature, externalBias);
 
         // Drift core Temperature toward ExternalTemperature bias without overshooting (no +65 anywhere)
-        StatInstance body = stats.get(p.getUniqueId(), "Temperature");
         double dtSeconds = TICKS / 20.0;
-        if (body != null) {
-            double cur = body.get();
-            // Work in bias space to compare targets without converting external
-            double bodyBias = cur; // bias of current body temp relative to neutral
-            double deltaBias = externalBias - bodyBias; // how far to move in bias space
-            double step;
-            if (deltaBias > 0) {
-                step = Math.min(deltaBias, HEAT_RATE_DEG_PER_SEC * dtSeconds);
-            } else if (deltaBias < 0) {
-                step = -Math.min(-deltaBias, COOL_RATE_DEG_PER_SEC * dtSeconds);
-            } else {
-                step = 0.0;
-            }
-            double newTemp = cur + step;
-            body.set(newTemp);
-            if (debugEnabled(p)) sendDebugDrift(p, externalBias, cur, step);
-            if (logger != null && logger.isEnabled(p.getUniqueId())) {
-                logger.log(p.getUniqueId(), String.format(java.util.Locale.US,
-                        "tick world=%s pos=(%d,%d,%d) time=%d weather=%s bias=%.2f temp=%.2f applied=%+.3f",
-                        w.getName(), x, y, z, w.getTime(), (w.hasStorm()||w.isThundering()?"storm":"clear"), externalBias, cur, step));
-            }
+        double cur = values.get(temperature);
+        // Work in bias space to compare targets without converting external
+        double bodyBias = cur; // bias of current body temp relative to neutral
+        double deltaBias = externalBias - bodyBias; // how far to move in bias space
+        double step;
+        if (deltaBias > 0) {
+            step = Math.min(deltaBias, HEAT_RATE_DEG_PER_SEC * dtSeconds);
+        } else if (deltaBias < 0) {
+            step = -Math.min(-deltaBias, COOL_RATE_DEG_PER_SEC * dtSeconds);
+        } else {
+            step = 0.0;
+        }
+        double newTemp = cur + step;
+        values.set(temperature, newTemp);
+        if (debugEnabled(p)) sendDebugDrift(p, externalBias, cur, step);
+        if (logger != null && logger.isEnabled(probe.player)) {
+            logger.log(probe.player, String.format(java.util.Locale.US,
+                    "tick world=%s pos=(%d,%d,%d) time=%d weather=%s bias=%.2f temp=%.2f applied=%+.3f",
+                    probe.world, probe.x, probe.y, probe.z, probe.time, (probe.storm?"storm":"clear"), externalBias, cur, step));
         }
     }
 
@@ -110,97 +224,21 @@ public class DiceManager implements Listener {
                 && e.getFrom().getBlockY() == e.getTo().getBlockY()
                 && e.getFrom().getBlockZ() == e.getTo().getBlockZ()) return;
         Player p = e.getPlayer();
+        // A single player is cheap enough to evaluate right here
         World w = p.getWorld();
-        int x = e.getTo().getBlockX();
-        int y = e.getTo().getBlockY() + 1;
-        int z = e.getTo().getBlockZ();
-        double externalBias = computeExternalTemperatureDFS(w, x, y, z);
-        StatInstance ext = stats.get(p.getUniqueId(), "ExternalTemperature");
-        if (ext != null) ext.set(externalBias);
+        int x = e.getTo().getBlockX(), y = e.getTo().getBlockY() + 1, z = e.getTo().getBlockZ();
+        Probe probe = capture(p.getUniqueId(), w, x, y, z, spaces.spaceAt(w, x, y, z), sun.canSeeSun(w, x, y, z));
+        double externalBias = evaluate(probe, airByShell, waterByShell);
+        stats.of(p.getUniqueId()).set(externalTemperature, externalBias);
     }
 
-    private double computeExternalTemperatureDFS(World w, int sx, int sy, int sz) {
-        // If in a sealed space, use its temperature bias (convert absolute -> bias temporarily)
-        Space s = spaces.findSpaceAt(w, sx, sy, sz).orElse(null);
-        if (s != null) return s.getTemperature();
-
-        java.util.ArrayDeque<int[]> stack = new java.util.ArrayDeque<>();
-        java.util.HashSet<String> visited = new java.util.HashSet<>();
-        push(stack, visited, sx, sy, sz);
-
-        double total = 0.0;
-        int samples = 0;
-
-        while (!stack.isEmpty()) {
-            int[] p = stack.pop();
-            int x = p[0], y = p[1], z = p[2];
-            if (!withinRadius(sx, sy, sz, x, y, z)) continue;
-
-            Block b = w.getBlockAt(x, y, z);
-            Material m = b.getType();
-
-            double base = 0.0;
-            boolean counted = false;
-            if (m.isAir()) { base = AIR_COOLING; counted = true; }
-            else if (m == Material.WATER) { base = WATER_COOLING; counted = true; }
-            else {
-                base = TemperatureRegistry.influence(b);
-                if (base != 0.0) counted = true;
-            }
-
-            if (counted) {
-                if (base < 0) base *= COLD_MULTIPLIER; // buff cold influences
-                int d = Math.max(Math.max(Math.abs(x - sx), Math.abs(y - sy)), Math.abs(z - sz));
-                double t = Math.min(1.0, Math.max(0.0, d / (double) RADIUS));
-                double weight = NEAR_STRENGTH + (FAR_STRENGTH - NEAR_STRENGTH) * t; // 1.5 -> 0.5
-                total += base * weight;
-                samples++;
-            }
-
-            // Traverse all neighbors within radius (regardless of solidity)
-            push(stack, visited, x+1, y, z);
-            push(stack, visited, x-1, y, z);
-            push(stack, visited, x, y+1, z);
-            push(stack, visited, x, y-1, z);
-            push(stack, visited, x, y, z+1);
-            push(stack, visited, x, y, z-1);
-        }
-
-        if (samples == 0) return 0.0;
-        double fieldBias = total / samples;
-        double sunBias = computeSunBias(w, sx, sy, sz);
-        return fieldBias + sunBias;
-    }
-
-    private boolean withinRadius(int sx, int sy, int sz, int x, int y, int z) {
-        int dx = Math.abs(x - sx), dy = Math.abs(y - sy), dz = Math.abs(z - sz);
-        return Math.max(Math.max(dx, dy), dz) <= RADIUS;
-    }
-
-    private void push(java.util.ArrayDeque<int[]> stack, java.util.Set<String> visited, int x, int y, int z) {
-        String key = x + "," + y + "," + z;
-        if (visited.add(key)) stack.push(new int[]{x,y,z});
-    }
-
-    private void pushIfTraversable(World w, java.util.ArrayDeque<int[]> stack, java.util.Set<String> visited, int x, int y, int z, int sx, int sy, int sz) {
-        if (!withinRadius(sx, sy, sz, x, y, z)) return;
-        if (isTraversable(w.getBlockAt(x, y, z).getType())) push(stack, visited, x, y, z);
+    private static double cold(double base) {
+        return base < 0 ? base * COLD_MULTIPLIER : base; // buff cold influences
     }
 
-    private double boundaryOrPushWeighted(World w, java.util.ArrayDeque<int[]> stack, java.util.Set<String> visited, int x, int y, int z, int sx, int sy, int sz) {
-        if (!withinRadius(sx, sy, sz, x, y, z)) return 0.0;
-        Block n = w.getBlockAt(x, y, z);
-        Material m = n.getType();
-        if (isTraversable(m)) { push(stack, visited, x, y, z); return 0.0; }
-        double inf = TemperatureRegistry.influence(n);
-        if (inf == 0.0) return 0.0;
-        int d = Math.max(Math.max(Math.abs(x - sx), Math.abs(y - sy)), Math.abs(z - sz));
-        double weight = 1.0 / (1.0 + d);
-        return inf * weight;
-    }
-
-    private boolean isTraversable(Material m) {
-        return m.isAir() || m == Material.WATER;
+    private static double weight(int d) {
+        double t = Math.min(1.0, Math.max(0.0, d / (double) RADIUS));
+        return NEAR_STRENGTH + (FAR_STRENGTH - NEAR_STRENGTH) * t; // 1.5 -> 0.5
     }
 
     private boolean isNight(World w) {
@@ -213,16 +251,8 @@ public class DiceManager implements Listener {
         return t < 12000L;
     }
 
-    private boolean isColumnOpenToSky(World w, int x, int y, int z) {
-        int top = w.getMaxHeight();
-        for (int yy = y + 1; yy < top; yy++) {
-            if (!w.getBlockAt(x, yy, z).getType().isAir()) return false;
-        }
-        return true;
-    }
-
     // Compute a sun bias up to +30F when daytime and the sun ray has line of sight to the player.
-    private double computeSunBias(World w, int x, int y, int z) {
+    private double computeSunBias(World w, boolean sunVisible) {
         if (!isDay(w)) return 0.0;
         if (w.hasStorm() || w.isThundering()) return 0.0;
 
@@ -232,39 +262,11 @@ public class DiceManager implements Listener {
         double strength = Math.max(0.0, 1.0 - dist); // 0..1
         if (strength <= 0.0) return 0.0;
 
-        // Sun direction approximation: east (+X) at dawn -> up at noon -> west (-X) at dusk; no Z component.
-        double theta = (Math.PI * t) / 12000.0; // 0..pi from dawn to dusk
-        double dx = Math.cos(theta); // +1 east at dawn, 0 at noon, -1 west at dusk
-        double dy = Math.sin(theta); // 0 at dawn/dusk, +1 at noon
-        double dz = 0.0;
-        // Normalize
-        double len = Math.sqrt(dx*dx + dy*dy + dz*dz);
-        if (len <= 1e-6) return 0.0;
-        dx /= len; dy /= len; // dz already 0
-
-        if (!hasLineOfSightAlong(w, x + 0.5, y + 0.5, z + 0.5, dx, dy, dz)) return 0.0;
+        // Line of sight along the sun's (bucketed) direction, from SunVisibility
+        if (!sunVisible) return 0.0;
         return 50 * strength;
     }
 
-    // Ray-march along the given direction; return true if no solid block encountered before reaching sky/out of world.
-    private boolean hasLineOfSightAlong(World w, double sx, double sy, double sz, double dx, double dy, double dz) {
-        final double step = 0.5; // half-block steps
-        final int maxSteps = 512;
-        double x = sx, y = sy, z = sz;
-        for (int i = 0; i < maxSteps; i++) {
-            x += dx * step; y += dy * step; z += dz * step;
-            int bx = (int) Math.floor(x);
-            int by = (int) Math.floor(y);
-            int bz = (int) Math.floor(z);
-            if (by >= w.getMaxHeight()) return true; // reached sky
-            if (by < w.getMinHeight()) return false; // below world; consider blocked
-            if (!w.getBlockAt(bx, by, bz).getType().isAir()) return false; // any block blocks sun
-        }
-        return true; // no block within ray budget
-    }
-
-    
-
     // Debug toggle and actionbar output
     private final java.util.Set<java.util.UUID> debugPlayers = new java.util.HashSet<>();
     public void toggleDebug(java.util.UUID id) {
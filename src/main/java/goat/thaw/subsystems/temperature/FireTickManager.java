@@ -1,6 +1,6 @@
 package goat.thaw.subsystems.temperature;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -14,11 +14,13 @@ import org.bukkit.scheduler.BukkitTask;
 public class FireTickManager {
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey temperature;
     private BukkitTask task;
 
     public FireTickManager(JavaPlugin plugin, StatsManager stats) {
         this.plugin = plugin;
         this.stats = stats;
+        this.temperature = stats.key("Temperature");
     }
 
     public void start() {
@@ -37,8 +39,7 @@ public class FireTickManager {
             int fire = p.getFireTicks();
             if (fire <= 0) continue;
 
-            StatInstance temp = stats.get(p.getUniqueId(), "Temperature");
-            double t = temp != null ? temp.get() : 72.0;
+            double t = stats.of(p.getUniqueId()).get(temperature);
 
             if (t < 50.0) {
                 // Too cold to maintain fire
@@ -0,0 +1,285 @@
+package goat.thaw.subsystems.temperature;
+
+import goat.thaw.system.space.BlockChangeDispatcher;
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import goat.thaw.system.util.LongIntHashMap;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What DICE needs to know about the blocks around a player, per 16x16x16 section: which voxels are air,
+ * which are water (one bit each), and a short list of the blocks with a non-zero TemperatureRegistry
+ * influence (torches, campfires, lava, ice, snow...). Everything else is neutral and isn't stored.
+ * Air and water box counts come from summed-volume tables over the bitsets, so their cost doesn't
+ * depend on the box size.
+ *
+ * Sections are read from the world the first time a query touches them and dropped with their chunk.
+ * Block events mark positions dirty; they are re-read on the next tick, once the change has happened.
+ * The index itself is main thread only; capture() hands out immutable Regions for worker threads.
+ */
+public class ThermalIndex implements Listener, BlockChangeDispatcher.Subscriber {
+    private final Plugin plugin;
+    private final Map<String, LongObjectHashMap<Section>> worlds = new HashMap<>(); // world -> section key -> section
+    private final Map<String, LongIntHashMap> dirty = new HashMap<>(); // world -> packed block pos -> 1
+    private boolean refreshScheduled = false;
+
+    /** Receives each indexed source inside a query box. */
+    @FunctionalInterface
+    public interface SourceVisitor {
+        void accept(int x, int y, int z, double influence);
+    }
+
+    private static final class Section {
+        final int bx, by, bz; // world coords of the section's low corner
+        final long[] air = new long[64];   // bit (y << 8 | z << 4 | x)
+        final long[] water = new long[64];
+        int modCount;
+        int sources;
+        short[] sourceAt = new short[4];    // local index of each source
+        double[] influence = new double[4];
+        private View view;
+        private int viewAt = -1;
+
+        Section(int sx, int sy, int sz) {
+            this.bx = sx << 4;
+            this.by = sy << 4;
+            this.bz = sz << 4;
+        }
+
+        void set(int i, boolean isAir, boolean isWater, double value) {
+            modCount++;
+            long bit = 1L << (i & 63);
+            if (isAir) air[i >>> 6] |= bit; else air[i >>> 6] &= ~bit;
+            if (isWater) water[i >>> 6] |= bit; else water[i >>> 6] &= ~bit;
+            for (int s = 0; s < sources; s++) {
+                if (sourceAt[s] != i) continue;
+                sources--;
+                sourceAt[s] = sourceAt[sources];
+                influence[s] = influence[sources];
+                break;
+            }
+            if (value == 0.0) return;
+            if (sources == sourceAt.length) {
+                sourceAt = Arrays.copyOf(sourceAt, sources * 2);
+                influence = Arrays.copyOf(influence, sources * 2);
+            }
+            sourceAt[sources] = (short) i;
+            influence[sources++] = value;
+        }
+
+        // Rebuilt lazily once modCount has moved on; a view is never written again, so other threads may read it
+        View view() {
+            if (viewAt == modCount) return view;
+            view = new View(bx, by, bz, sums(air), sums(water), Arrays.copyOf(sourceAt, sources), Arrays.copyOf(influence, sources));
+            viewAt = modCount;
+            return view;
+        }
+
+        // S(x,y,z) = bits set in [0,x) x [0,y) x [0,z), 17^3 with a zero border
+        private static short[] sums(long[] bits) {
+            short[] s = new short[17 * 17 * 17];
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    int row = 0;
+                    for (int x = 0; x < 16; x++) {
+                        int i = (y << 8) | (z << 4) | x;
+                        row += (int) (bits[i >>> 6] >>> (i & 63)) & 1;
+                        int at = sumIndex(x + 1, y + 1, z + 1);
+                        s[at] = (short) (row + s[at - 17] + s[at - 17 * 17] - s[at - 17 - 17 * 17]);
+                    }
+                }
+            }
+            return s;
+        }
+    }
+
+    /** Immutable summed-volume tables and source list of one section. */
+    private static final class View {
+        final int bx, by, bz;
+        final short[] airSums, waterSums;
+        final short[] sourceAt;
+        final double[] influence;
+
+        View(int bx, int by, int bz, short[] airSums, short[] waterSums, short[] sourceAt, double[] influence) {
+            this.bx = bx;
+            this.by = by;
+            this.bz = bz;
+            this.airSums = airSums;
+            this.waterSums = waterSums;
+            this.sourceAt = sourceAt;
+            this.influence = influence;
+        }
+    }
+
+    /**
+     * The sections around one point, captured on the main thread by capture(). Immutable, so sample()
+     * can run on any thread while the index keeps changing.
+     */
+    public static final class Region {
+        private final int cx, cy, cz, r, minY, maxY;
+        private final View[] views;
+
+        private Region(int cx, int cy, int cz, int r, int minY, int maxY, View[] views) {
+            this.cx = cx;
+            this.cy = cy;
+            this.cz = cz;
+            this.r = r;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.views = views;
+        }
+
+        /**
+         * Adds the number of air and water voxels at each Chebyshev distance d (0..r) to airByShell[d] /
+         * waterByShell[d], and hands every source in the box to the visitor.
+         */
+        public void sample(int[] airByShell, int[] waterByShell, SourceVisitor sources) {
+            int minX = cx - r, maxX = cx + r, minZ = cz - r, maxZ = cz + r;
+            for (View v : views) {
+                int x0 = Math.max(minX, v.bx), x1 = Math.min(maxX, v.bx + 15);
+                int y0 = Math.max(minY, v.by), y1 = Math.min(maxY, v.by + 15);
+                int z0 = Math.max(minZ, v.bz), z1 = Math.min(maxZ, v.bz + 15);
+                // Shell d = cube of radius d minus cube of radius d-1, each clipped to this section
+                int airInside = 0, waterInside = 0;
+                for (int d = 0; d <= r; d++) {
+                    int ax = Math.max(x0, cx - d) - v.bx, ay = Math.max(y0, cy - d) - v.by, az = Math.max(z0, cz - d) - v.bz;
+                    int zx = Math.min(x1, cx + d) - v.bx, zy = Math.min(y1, cy + d) - v.by, zz = Math.min(z1, cz + d) - v.bz;
+                    if (ax > zx || ay > zy || az > zz) continue;
+                    int a = count(v.airSums, ax, ay, az, zx, zy, zz);
+                    int wa = count(v.waterSums, ax, ay, az, zx, zy, zz);
+                    airByShell[d] += a - airInside;
+                    waterByShell[d] += wa - waterInside;
+                    airInside = a;
+                    waterInside = wa;
+                }
+                for (int s = 0; s < v.sourceAt.length; s++) {
+                    int i = v.sourceAt[s];
+                    int x = v.bx | (i & 15), y = v.by | (i >>> 8), z = v.bz | ((i >>> 4) & 15);
+                    if (x < x0 || x > x1 || y < y0 || y > y1 || z < z0 || z > z1) continue;
+                    sources.accept(x, y, z, v.influence[s]);
+                }
+            }
+        }
+    }
+
+    public ThermalIndex(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void stop() {
+        worlds.clear();
+        dirty.clear();
+    }
+
+    /**
+     * Captures the sections covering the box of Chebyshev radius r around (cx,cy,cz), clipped to the world's
+     * height. Unloaded chunks contribute nothing. Main thread; the result can be sampled anywhere.
+     */
+    public Region capture(World world, int cx, int cy, int cz, int r) {
+        int minY = Math.max(world.getMinHeight(), cy - r), maxY = Math.min(world.getMaxHeight() - 1, cy + r);
+        List<View> views = new ArrayList<>(8);
+        for (int sx = (cx - r) >> 4; sx <= (cx + r) >> 4; sx++) {
+            for (int sz = (cz - r) >> 4; sz <= (cz + r) >> 4; sz++) {
+                for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+                    Section section = section(world, sx, sy, sz, true);
+                    if (section != null) views.add(section.view());
+                }
+            }
+        }
+        return new Region(cx, cy, cz, r, minY, maxY, views.toArray(new View[0]));
+    }
+
+    /** capture() and Region.sample() in one go, for main-thread callers. */
+    public void sample(World world, int cx, int cy, int cz, int r, int[] airByShell, int[] waterByShell, SourceVisitor sources) {
+        capture(world, cx, cy, cz, r).sample(airByShell, waterByShell, sources);
+    }
+
+    // Bits set in the local box [x0,x1] x [y0,y1] x [z0,z1] (inclusive), 8 lookups
+    private static int count(short[] s, int x0, int y0, int z0, int x1, int y1, int z1) {
+        x1++; y1++; z1++;
+        return s[sumIndex(x1, y1, z1)] - s[sumIndex(x0, y1, z1)] - s[sumIndex(x1, y0, z1)] - s[sumIndex(x1, y1, z0)]
+                + s[sumIndex(x0, y0, z1)] + s[sumIndex(x0, y1, z0)] + s[sumIndex(x1, y0, z0)] - s[sumIndex(x0, y0, z0)];
+    }
+
+    private static int sumIndex(int x, int y, int z) {
+        return (y * 17 + z) * 17 + x;
+    }
+
+    private Section section(World world, int sx, int sy, int sz, boolean build) {
+        LongObjectHashMap<Section> sections = worlds.get(world.getName());
+        Section section = sections == null ? null : sections.get(BlockPos.pack(sx, sy, sz));
+        if (section != null || !build || !world.isChunkLoaded(sx, sz)) return section;
+        section = new Section(sx, sy, sz);
+        for (int i = 0; i < 4096; i++) read(world, section.bx | (i & 15), section.by | (i >>> 8), section.bz | ((i >>> 4) & 15), section, i);
+        worlds.computeIfAbsent(world.getName(), w -> new LongObjectHashMap<>()).put(BlockPos.pack(sx, sy, sz), section);
+        return section;
+    }
+
+    // Same classification DICE has always used: air, water, else whatever the registry says
+    private static void read(World world, int x, int y, int z, Section section, int i) {
+        Material m = world.getType(x, y, z);
+        if (m.isAir()) section.set(i, true, false, 0.0);
+        else if (m == Material.WATER) section.set(i, false, true, 0.0);
+        else if (m == Material.SNOW) section.set(i, false, false, TemperatureRegistry.influence(world.getBlockData(x, y, z)));
+        else section.set(i, false, false, TemperatureRegistry.influenceOfKind(TemperatureRegistry.kindOf(m)));
+    }
+
+    @Override
+    public void blockChanged(Block b, BlockChangeDispatcher.Becomes becomes) {
+        if (section(b.getWorld(), b.getX() >> 4, b.getY() >> 4, b.getZ() >> 4, false) == null) return;
+        dirty.computeIfAbsent(b.getWorld().getName(), w -> new LongIntHashMap()).put(BlockPos.pack(b.getX(), b.getY(), b.getZ()), 1, 0);
+        if (refreshScheduled) return;
+        refreshScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::refresh);
+    }
+
+    private void refresh() {
+        refreshScheduled = false;
+        dirty.forEach((name, positions) -> {
+            World world = Bukkit.getWorld(name);
+            if (world == null) return;
+            positions.forEach((p, unused) -> {
+                int x = BlockPos.unpackX(p), y = BlockPos.unpackY(p), z = BlockPos.unpackZ(p);
+                Section section = section(world, x >> 4, y >> 4, z >> 4, false);
+                if (section != null) read(world, x, y, z, section, ((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+            });
+        });
+        dirty.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        LongObjectHashMap<Section> sections = worlds.get(e.getWorld().getName());
+        if (sections == null) return;
+        int cx = e.getChunk().getX(), cz = e.getChunk().getZ();
+        for (int sy = e.getWorld().getMinHeight() >> 4; sy <= (e.getWorld().getMaxHeight() - 1) >> 4; sy++) {
+            sections.remove(BlockPos.pack(cx, sy, cz));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        worlds.remove(e.getWorld().getName());
+        dirty.remove(e.getWorld().getName());
+    }
+}
@@ -1,6 +1,7 @@
 package goat.thaw.subsystems.temperature;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -21,6 +22,7 @@ public class ThermalRegulator implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey temperature, calories;
     private BukkitTask task;
 
     private static final double SETPOINT = 72.0;
@@ -31,6 +33,8 @@ public class ThermalRegulator implements Listener {
     public ThermalRegulator(JavaPlugin plugin, StatsManager stats) {
         this.plugin = plugin;
         this.stats = stats;
+        this.temperature = stats.key("Temperature");
+        this.calories = stats.key("Calories");
     }
 
     public void start() {
@@ -43,12 +47,9 @@ public class ThermalRegulator implements Listener {
 
     private void tick() {
         for (Player p : Bukkit.getOnlinePlayers()) {
-            StatInstance temp = stats.get(p.getUniqueId(), "Temperature");
-            StatInstance cal = stats.get(p.getUniqueId(), "Calories");
-            if (temp == null || cal == null) continue;
-
-            double t = temp.get();
-            double cals = cal.get();
+            PlayerStats values = stats.of(p.getUniqueId());
+            double t = values.get(temperature);
+            double cals = values.get(calories);
 
             // Skip when in healthy band
             if (t >= HEALTHY_MIN && t <= HEALTHY_MAX) continue;
@@ -69,8 +70,8 @@ public class ThermalRegulator implements Listener {
             double cost = applied * COST_PER_DEGREE;
             if (cals < cost) continue; // not enough fuel; skip this tick
 
-            temp.set(t + dir * applied);
-            cal.subtract(cost);
+            values.set(temperature, t + dir * applied);
+            values.subtract(calories, cost);
         }
     }
 }
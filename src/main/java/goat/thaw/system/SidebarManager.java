@@ -1,6 +1,7 @@
 package goat.thaw.system;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.ChatColor;
 import org.bukkit.Bukkit;
@@ -25,6 +26,7 @@ public class SidebarManager implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey temperature, calories, oxygen;
     private BukkitTask task;
 
     private static class PlayerSidebar {
@@ -67,6 +69,9 @@ public class SidebarManager implements Listener {
     public SidebarManager(JavaPlugin plugin, StatsManager stats) {
         this.plugin = plugin;
         this.stats = stats;
+        this.temperature = stats.key("Temperature");
+        this.calories = stats.key("Calories");
+        this.oxygen = stats.key("Oxygen");
     }
 
     public void start() {
@@ -107,11 +112,10 @@ public class SidebarManager implements Listener {
         for (Player p : Bukkit.getOnlinePlayers()) {
             ensureBoard(p);
             PlayerSidebar ps = sidebars.get(p.getUniqueId());
+            PlayerStats values = stats.of(p.getUniqueId());
 
             // Temperature with animation (tenths precision)
-            double tempActual = 72.0;
-            StatInstance inst = stats.get(p.getUniqueId(), "Temperature");
-            if (inst != null) tempActual = inst.get();
+            double tempActual = values.get(temperature);
             int targetTenths = (int)Math.round(tempActual * 10.0);
             ps.tempAnim = updateTempAnimation(ps.tempAnim, targetTenths);
             double tempDisplay = ps.tempAnim.displayedTenths / 10.0;
@@ -133,9 +137,7 @@ public class SidebarManager implements Listener {
             ps.lastTemp = text;
 
             // Calories with animation
-            int actualCalInt = 0;
-            StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-            if (calInst != null) actualCalInt = (int)Math.round(calInst.get());
+            int actualCalInt = (int)Math.round(values.get(calories));
             ps.calAnim = updateCalorieAnimation(ps.calAnim, actualCalInt);
             int displayCal = ps.calAnim.displayed;
             ChatColor calNumColor;
@@ -151,10 +153,8 @@ public class SidebarManager implements Listener {
             ps.lastCal = calText;
         
             // Oxygen with animation (integer display)
-            double oxyActual = 0.0;
-            double oxyMax = 1000.0;
-            StatInstance oxyInst = stats.get(p.getUniqueId(), "Oxygen");
-            if (oxyInst != null) { oxyActual = oxyInst.get(); oxyMax = oxyInst.getDefinition().getMax(); }
+            double oxyActual = values.get(oxygen);
+            double oxyMax = oxygen.getDefinition().getMax();
             int oxyTarget = (int)Math.round(oxyActual);
             ps.oxyAnim = updateOxyAnimation(ps.oxyAnim, oxyTarget);
             int oxyDisplay = ps.oxyAnim.displayed;
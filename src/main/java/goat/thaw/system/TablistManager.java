@@ -3,7 +3,8 @@ package goat.thaw.system;
 import goat.thaw.subsystems.combat.PopulationManager;
 import goat.thaw.system.effects.EffectManager;
 import goat.thaw.subsystems.oxygen.OxygenManager;
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.PlayerStats;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -21,6 +22,7 @@ public class TablistManager implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager stats;
+    private final StatKey calorieKey, oxygenKey, temperatureKey, externalKey;
     private final PopulationManager population;
     private final EffectManager effects;
     private final OxygenManager oxygen;
@@ -29,6 +31,10 @@ public class TablistManager implements Listener {
     public TablistManager(JavaPlugin plugin, StatsManager stats, PopulationManager population, EffectManager effects, OxygenManager oxygen) {
         this.plugin = plugin;
         this.stats = stats;
+        this.calorieKey = stats.key("Calories");
+        this.oxygenKey = stats.key("Oxygen");
+        this.temperatureKey = stats.key("Temperature");
+        this.externalKey = stats.key("ExternalTemperature");
         this.population = population;
         this.effects = effects;
         this.oxygen = oxygen;
@@ -61,10 +67,10 @@ public class TablistManager implements Listener {
     }
 
     private void updatePlayer(Player p) {
+        PlayerStats ps = stats.of(p.getUniqueId());
+
         // Calories
-        double cal = 0.0, calMax = 3000.0;
-        StatInstance calInst = stats.get(p.getUniqueId(), "Calories");
-        if (calInst != null) { cal = calInst.get(); calMax = calInst.getDefinition().getMax(); }
+        double cal = ps.get(calorieKey), calMax = calorieKey.getDefinition().getMax();
         double calPct = calMax > 0 ? Math.min(cal, calMax) / calMax : 0.0;
         ChatColor calNumColor = (cal >= 2000.0 && cal <= 3000.0) ? ChatColor.GREEN
                 : (cal >= 1000.0 ? ChatColor.YELLOW : ChatColor.RED);
@@ -73,9 +79,7 @@ public class TablistManager implements Listener {
                 + ChatColor.GRAY + " (" + calWord + ")" + ChatColor.RESET;
 
         // Oxygen
-        double oxy = 0.0, oxyMax = 1000.0;
-        StatInstance oxyInst = stats.get(p.getUniqueId(), "Oxygen");
-        if (oxyInst != null) { oxy = oxyInst.get(); oxyMax = oxyInst.getDefinition().getMax(); }
+        double oxy = ps.get(oxygenKey), oxyMax = oxygenKey.getDefinition().getMax();
         double oxyPct = oxyMax > 0 ? Math.min(oxy, oxyMax) / oxyMax : 0.0;
         ChatColor oxyNumColor = (oxyPct >= 0.5) ? ChatColor.GREEN : (oxyPct >= 0.2 ? ChatColor.YELLOW : ChatColor.RED);
         String oxyWord = (oxyNumColor == ChatColor.GREEN) ? "healthy" : (oxyNumColor == ChatColor.YELLOW ? "caution" : "hypoxic");
@@ -83,9 +87,7 @@ public class TablistManager implements Listener {
                 + ChatColor.GRAY + " (" + oxyWord + ")" + ChatColor.RESET;
 
         // Thermal (Temperature)
-        double temp = 72.0;
-        StatInstance tInst = stats.get(p.getUniqueId(), "Temperature");
-        if (tInst != null) temp = tInst.get();
+        double temp = ps.get(temperatureKey);
         ChatColor tempColor;
         if (temp >= 65.0 && temp <= 85.0) tempColor = ChatColor.GREEN;
         else if ((temp >= 35.0 && temp < 65.0) || (temp > 85.0 && temp <= 110.0)) tempColor = ChatColor.YELLOW;
@@ -116,9 +118,7 @@ public class TablistManager implements Listener {
                 + ChatColor.WHITE + String.format(Locale.US, "%.1f", population.getMonsterPopulation());
 
         // External temperature from DICE/Spaces
-        double ext = 0.0; // bias
-        StatInstance extInst = stats.get(p.getUniqueId(), "ExternalTemperature");
-        if (extInst != null) ext = extInst.get();
+        double ext = ps.get(externalKey); // bias
         String extLine = ChatColor.BLUE + "External Temp: " + ChatColor.WHITE + String.format(Locale.US, "%+.1f F", ext);
 
         String divider = ChatColor.DARK_GRAY + "---------------------------" + ChatColor.RESET;
@@ -1,5 +1,6 @@
 package goat.thaw.system.dev;
 
+import goat.thaw.system.environment.CaveLabels;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -254,6 +255,9 @@ public class ArcticChunkGenerator extends ChunkGenerator {
         // 9) Post-process: enforce sand rules near water and above sand
         postProcessSandAndDirt(world, data);
 
+        // 10) Label cave air by sky connectivity so oxygen can skip its flood (written to the chunk on load)
+        CaveLabels.stash(world.getName(), chunkX, chunkZ, CaveLabels.compute(data));
+
         return data;
     }
 
@@ -1,7 +1,10 @@
 package goat.thaw.system.dev;
 
+import goat.thaw.system.space.SkyColumnCache;
 import goat.thaw.system.space.Space;
 import goat.thaw.system.space.SpaceManager;
+import goat.thaw.system.space.VoxelSet;
+import goat.thaw.system.space.flood.VoxelTraversal;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -12,10 +15,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -28,24 +27,29 @@ public class FloodFillAlgorithmCommand implements CommandExecutor {
 
     private final Plugin plugin;
     private final SpaceManager spaces;
+    private final SkyColumnCache sky;
 
-    public FloodFillAlgorithmCommand(Plugin plugin, SpaceManager spaces) {
+    public FloodFillAlgorithmCommand(Plugin plugin, SpaceManager spaces, SkyColumnCache sky) {
         this.plugin = plugin;
         this.spaces = spaces;
+        this.sky = sky;
     }
 
     private static class FillSession {
         final Player player;
         final World world;
-        final Deque<Block> stack = new ArrayDeque<>(); // DFS stack
-        final Set<String> visited = new HashSet<>();
-        final Set<Space.BlockPos> collected = new HashSet<>();
+        final VoxelTraversal traversal = new VoxelTraversal(); // DFS stack + visited
+        final VoxelSet collected = new VoxelSet();
+        VoxelTraversal.Visitor visitor;
         BukkitTask task;
         int blocksPerTick;
+        int collectedThisTick;
+        String skyAt; // set when the fill hits sky
 
         FillSession(Player player) {
             this.player = player;
             this.world = player.getWorld();
+            this.traversal.reset(world);
         }
     }
 
@@ -81,11 +85,22 @@ public class FloodFillAlgorithmCommand implements CommandExecutor {
             return true;
         }
 
-        pushIfValid(session, start);
-        if (session.stack.isEmpty()) {
+        session.traversal.seed(start.getX(), start.getY(), start.getZ());
+        if (session.traversal.isDone()) {
             player.sendMessage("Nothing to map.");
             return true;
         }
+        session.visitor = (x, y, z) -> {
+            if (sky.isOpenAbove(session.world, x, y, z)) {
+                session.skyAt = x + "," + y + "," + z;
+                return VoxelTraversal.Step.STOP;
+            }
+            if (!session.world.getType(x, y, z).isAir()) return VoxelTraversal.Step.SKIP; // boundary
+            // collect this block
+            session.collected.add(x, y, z);
+            session.collectedThisTick++;
+            return VoxelTraversal.Step.EXPAND;
+        };
 
         player.sendMessage("Mapping space via DFS (" + session.blocksPerTick + " blocks/tick)...");
         session.task = Bukkit.getScheduler().runTaskTimer(plugin, () -> step(session), 0L, 1L);
@@ -93,87 +108,32 @@ public class FloodFillAlgorithmCommand implements CommandExecutor {
     }
 
     private void step(FillSession s) {
-        int worldMin = s.world.getMinHeight();
-        int worldMax = s.world.getMaxHeight();
-        int collectedThisTick = 0;
+        s.collectedThisTick = 0;
         int scanBudget = 4096;
 
-        while (collectedThisTick < s.blocksPerTick && scanBudget-- > 0) {
-            if (s.stack.isEmpty()) {
+        while (s.collectedThisTick < s.blocksPerTick && scanBudget-- > 0) {
+            VoxelTraversal.Result result = s.traversal.run(s.visitor, 1);
+            if (result == VoxelTraversal.Result.STOPPED) {
+                abort(s, "Sky exposure at " + s.skyAt);
+                return;
+            }
+            if (result == VoxelTraversal.Result.COMPLETE) {
                 if (s.task != null) s.task.cancel();
                 // Completed successfully -> compute influence, create and persist space
                 SpaceManager.InfluenceResult inf = spaces.computeInfluence(s.world, s.collected);
-                Space space = new Space(UUID.randomUUID(), s.world.getName(), s.collected, inf.temperature, inf.totalInfluence, s.collected.size());
+                Space space = new Space(UUID.randomUUID(), s.world.getName(), s.collected, inf.faces);
                 spaces.register(space);
-                spaces.save();
                 s.player.sendMessage("Space created: id=" + space.getId() +
                         ", air=" + space.getAirBlocks() +
                         ", influence=" + String.format("%.2f", space.getTotalInfluence()) +
                         ", temp=" + String.format("%.1fF", space.getTemperature()));
                 return;
             }
-
-            Block b = s.stack.pop();
-            if (b.getWorld() != s.world) continue;
-            int y = b.getY();
-            if (y < worldMin || y >= worldMax) continue;
-
-            if (isSkyExposed(s.world, b.getX(), y, b.getZ())) {
-                abort(s, "Sky exposure at " + b.getX() + "," + y + "," + b.getZ());
-                return;
-            }
-
-            if (!b.getType().isAir()) continue; // boundary
-
-            // collect this block
-            s.collected.add(new Space.BlockPos(b.getX(), y, b.getZ()));
-            collectedThisTick++;
-
-            pushIfValid(s, b.getRelative(1, 0, 0));
-            pushIfValid(s, b.getRelative(-1, 0, 0));
-            pushIfValid(s, b.getRelative(0, 1, 0));
-            pushIfValid(s, b.getRelative(0, -1, 0));
-            pushIfValid(s, b.getRelative(0, 0, 1));
-            pushIfValid(s, b.getRelative(0, 0, -1));
         }
     }
 
-    private void pushIfValid(FillSession s, Block n) {
-        if (n.getWorld() != s.world) return;
-        int y = n.getY();
-        if (y < s.world.getMinHeight() || y >= s.world.getMaxHeight()) return;
-        String key = key(n.getX(), y, n.getZ());
-        if (s.visited.add(key)) s.stack.push(n);
-    }
-
     private void abort(FillSession s, String reason) {
         if (s.task != null) s.task.cancel();
         s.player.sendMessage("Space mapping aborted: " + reason);
     }
-
-    private String key(int x, int y, int z) {
-        return x + "," + y + "," + z;
-    }
-
-    // More reliable sky exposure test using skylight
-    private boolean isSkyExposed(org.bukkit.World world, int x, int y, int z) {
-        org.bukkit.block.Block block = world.getBlockAt(x, y, z);
-        boolean suspect;
-        try {
-            suspect = block.getLightFromSky() > 0;
-        } catch (Throwable t) {
-            // if we cannot query skylight, be conservative and verify by scan
-            suspect = true;
-        }
-        if (!suspect) return false; // definitely not exposed
-
-        // Verify: any non-air block above seals it (glass, leaves, water, etc. count as sealing here)
-        int top = world.getMaxHeight();
-        for (int yy = y + 1; yy < top; yy++) {
-            if (!world.getBlockAt(x, yy, z).getType().isAir()) {
-                return false; // sealed by any block
-            }
-        }
-        return true; // true exposure (no blocks above before sky)
-    }
 }
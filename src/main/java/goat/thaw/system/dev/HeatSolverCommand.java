@@ -0,0 +1,28 @@
+package goat.thaw.system.dev;
+
+import goat.thaw.system.space.temperature.HeatSolver;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+public class HeatSolverCommand implements CommandExecutor {
+    private final HeatSolver solver;
+
+    public HeatSolverCommand(HeatSolver solver) { this.solver = solver; }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 1 && (args[0].equalsIgnoreCase("on") || args[0].equalsIgnoreCase("off"))) {
+            solver.setEnabled(args[0].equalsIgnoreCase("on"));
+            sender.sendMessage("Heat simulation " + (solver.isEnabled() ? "enabled" : "disabled (static space temperatures)") + ".");
+            return true;
+        }
+        sender.sendMessage("Heat simulation: " + (solver.isEnabled() ? "on" : "off")
+                + ", spaces=" + solver.getModelCount() + ", cells=" + solver.getCellCount()
+                + ", rebuildQueue=" + solver.getRebuildQueueDepth());
+        sender.sendMessage("lastPass=" + solver.getMicrosLastPass() + "us/" + solver.getPassBudgetMicros() + "us"
+                + ", steps=" + solver.getSteps() + ", dropped=" + solver.getStepsDropped()
+                + ", rebuilds=" + solver.getRebuilds());
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+package goat.thaw.system.dev;
+
+import goat.thaw.system.space.SpaceRevalidator;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+public class SpaceRevalidationCommand implements CommandExecutor {
+    private final SpaceRevalidator revalidator;
+
+    public SpaceRevalidationCommand(SpaceRevalidator revalidator) { this.revalidator = revalidator; }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        sender.sendMessage("Space revalidation: queue=" + revalidator.getQueueDepth()
+                + ", lastTick=" + revalidator.getMicrosLastTick() + "us/" + revalidator.getTickBudgetMicros() + "us"
+                + ", total=" + (revalidator.getMicrosTotal() / 1000L) + "ms");
+        sender.sendMessage("completed=" + revalidator.getCompleted()
+                + ", restarted=" + revalidator.getRestarted()
+                + ", coalesced=" + revalidator.getCoalesced()
+                + ", deferred=" + revalidator.getDeferred());
+        return true;
+    }
+}
@@ -1,6 +1,6 @@
 package goat.thaw.system.effects;
 
-import goat.thaw.system.stats.StatInstance;
+import goat.thaw.system.stats.StatKey;
 import goat.thaw.system.stats.StatsManager;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -22,6 +22,7 @@ public class EffectManager implements Listener {
 
     private final JavaPlugin plugin;
     private final StatsManager statsManager;
+    private final StatKey oxygen, temperature;
     private BukkitTask tickTask;
     private BukkitTask saveTask;
     private File effectsDir;
@@ -33,6 +34,8 @@ public class EffectManager implements Listener {
     public EffectManager(JavaPlugin plugin, StatsManager statsManager) {
         this.plugin = plugin;
         this.statsManager = statsManager;
+        this.oxygen = statsManager.key("Oxygen");
+        this.temperature = statsManager.key("Temperature");
     }
 
     public void start() {
@@ -198,9 +201,7 @@ public class EffectManager implements Listener {
     }
 
     private void evaluateHypoxia(Player p) {
-        StatInstance oxy = statsManager.get(p.getUniqueId(), "Oxygen");
-        if (oxy == null) return;
-        double v = oxy.get();
+        double v = statsManager.of(p.getUniqueId()).get(oxygen);
         int desiredLevel;
         if (v > 500.0) {
             desiredLevel = 0; // clear
@@ -215,9 +216,7 @@ public class EffectManager implements Listener {
     }
 
     private void evaluateHypothermia(Player p) {
-        StatInstance temp = statsManager.get(p.getUniqueId(), "Temperature");
-        if (temp == null) return;
-        double t = temp.get();
+        double t = statsManager.of(p.getUniqueId()).get(temperature);
         if (t <= 0.0) {
             setCircumstantial(p, EffectId.FROSTBITE, 1);
             setCircumstantial(p, EffectId.HYPOTHERMIA, 0);
@@ -234,9 +233,7 @@ public class EffectManager implements Listener {
     }
 
     private void evaluateOverheated(Player p) {
-        StatInstance temp = statsManager.get(p.getUniqueId(), "Temperature");
-        if (temp == null) return;
-        double t = temp.get();
+        double t = statsManager.of(p.getUniqueId()).get(temperature);
         if (t >= 190.0) {
             setCircumstantial(p, EffectId.OVERHEATED, 1);
         } else {
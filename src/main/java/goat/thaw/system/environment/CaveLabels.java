@@ -0,0 +1,331 @@
+package goat.thaw.system.environment;
+
+import goat.thaw.system.space.BlockChangeDispatcher;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.generator.ChunkGenerator.ChunkData;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Air connectivity worked out once, when our generator builds a chunk. Every air component of the chunk is
+ * labelled SKY (reaches a column's open top), SEALED (closed inside the chunk), or BORDER (runs into a
+ * neighbouring chunk, so the chunk alone can't tell). The layer is stored as column runs in the chunk's
+ * persistent data, and "is this cave sealed?" becomes one lookup.
+ *
+ * Block changes mark the sections around them as modified. A component that spans a modified section
+ * answers UNKNOWN from then on, and callers fall back to a flood. Chunks from other generators have no
+ * layer and are always UNKNOWN. Runtime side is main thread only; compute() and stash() run on the
+ * generator's threads.
+ */
+public class CaveLabels implements Listener, BlockChangeDispatcher.Subscriber {
+    public enum Label { SKY, SEALED, BORDER, UNKNOWN }
+
+    private static final byte FORMAT = 1;
+    private static final Label[] LABELS = Label.values();
+
+    // Generated but not yet loaded: world -> chunk key -> encoded layer. Not every generated chunk is ever
+    // loaded as a new chunk, so layers expire and each world keeps at most PENDING_LIMIT; a dropped layer just
+    // leaves that chunk UNKNOWN.
+    private static final Map<String, Map<Long, Pending>> PENDING = new ConcurrentHashMap<>();
+    private static final int PENDING_LIMIT = 1024;
+    private static final long PENDING_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final class Pending {
+        final byte[] layer;
+        final long stashedAt = System.nanoTime();
+
+        Pending(byte[] layer) {
+            this.layer = layer;
+        }
+    }
+
+    private final NamespacedKey layerKey;
+    private final NamespacedKey modifiedKey;
+    private final Map<String, LongObjectHashMap<Layer>> loaded = new HashMap<>(); // world -> chunk -> decoded layer
+
+    private static final class Layer {
+        static final Layer NONE = new Layer(0, new byte[0], new long[0], new int[257], new short[0], new short[0], new char[0]);
+
+        final int minY;
+        final byte[] labels;    // per component
+        final long[] sections;  // per component: bit (sectionY - minY / 16) for every section it has cells in
+        final int[] colStart;   // runs of column c are [colStart[c], colStart[c + 1])
+        final short[] runFrom, runTo;
+        final char[] runComponent; // unsigned, a chunk can have more than 32767 components
+        long modified;          // sections changed since generation
+
+        Layer(int minY, byte[] labels, long[] sections, int[] colStart, short[] runFrom, short[] runTo, char[] runComponent) {
+            this.minY = minY;
+            this.labels = labels;
+            this.sections = sections;
+            this.colStart = colStart;
+            this.runFrom = runFrom;
+            this.runTo = runTo;
+            this.runComponent = runComponent;
+        }
+
+        Label at(int lx, int y, int lz) {
+            int c = (lz << 4) | lx;
+            for (int r = colStart[c]; r < colStart[c + 1]; r++) {
+                if (y < runFrom[r] || y > runTo[r]) continue;
+                int comp = runComponent[r];
+                if ((sections[comp] & modified) != 0) return Label.UNKNOWN;
+                return LABELS[labels[comp]];
+            }
+            return Label.UNKNOWN; // wasn't air when generated
+        }
+    }
+
+    public CaveLabels(Plugin plugin) {
+        this.layerKey = new NamespacedKey(plugin, "cave_labels");
+        this.modifiedKey = new NamespacedKey(plugin, "cave_labels_modified");
+    }
+
+    /** Label of the air component holding (x,y,z); UNKNOWN without a layer or once the component was modified. */
+    public Label at(World world, int x, int y, int z) {
+        Layer layer = layer(world, x >> 4, z >> 4);
+        if (layer == null || layer == Layer.NONE) return Label.UNKNOWN;
+        return layer.at(x & 15, y, z & 15);
+    }
+
+    // --- Generation side ---
+
+    /**
+     * Labels the air components of freshly generated chunk data, or null if there are more than fit the
+     * format's 16-bit component ids. Called from the generator thread.
+     */
+    public static byte[] compute(ChunkData data) {
+        int minY = data.getMinHeight(), height = data.getMaxHeight() - minY;
+        int n = height << 8; // index (y - minY) << 8 | z << 4 | x
+        boolean[] air = new boolean[n];
+        int[] top = new int[256]; // highest solid per column, relative to minY (-1 if none)
+        Arrays.fill(top, -1);
+        for (int i = 0; i < n; i++) {
+            air[i] = data.getType(i & 15, (i >>> 8) + minY, (i >>> 4) & 15).isAir();
+            if (!air[i]) top[i & 255] = i >>> 8;
+        }
+
+        int[] comp = new int[n]; // 0 = unlabelled, else component + 1
+        int[] queue = new int[n];
+        ByteArrayOutputStream labelBytes = new ByteArrayOutputStream();
+        List<Long> sectionMasks = new ArrayList<>();
+        int count = 0;
+        for (int seed = 0; seed < n; seed++) {
+            if (!air[seed] || comp[seed] != 0) continue;
+            int id = ++count;
+            boolean sky = false, border = false;
+            long sections = 0L;
+            int head = 0, tail = 0;
+            queue[tail++] = seed;
+            comp[seed] = id;
+            while (head < tail) {
+                int i = queue[head++];
+                int x = i & 15, z = (i >>> 4) & 15, y = i >>> 8;
+                if (y > top[i & 255]) sky = true;
+                if (x == 0 || x == 15 || z == 0 || z == 15) border = true;
+                sections |= 1L << (y >> 4);
+                if (x > 0) tail = visit(air, comp, queue, tail, i - 1, id);
+                if (x < 15) tail = visit(air, comp, queue, tail, i + 1, id);
+                if (z > 0) tail = visit(air, comp, queue, tail, i - 16, id);
+                if (z < 15) tail = visit(air, comp, queue, tail, i + 16, id);
+                if (y > 0) tail = visit(air, comp, queue, tail, i - 256, id);
+                if (y < height - 1) tail = visit(air, comp, queue, tail, i + 256, id);
+            }
+            labelBytes.write((sky ? Label.SKY : border ? Label.BORDER : Label.SEALED).ordinal());
+            sectionMasks.add(sections);
+        }
+        if (count > 0xFFFF) return null; // ids would wrap; the chunk goes without a layer
+
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT);
+            out.writeShort(minY);
+            out.writeShort(count);
+            byte[] labels = labelBytes.toByteArray();
+            for (int c = 0; c < count; c++) {
+                out.writeByte(labels[c]);
+                out.writeLong(sectionMasks.get(c));
+            }
+            // Runs of one component along each column, column by column
+            ByteArrayOutputStream runBytes = new ByteArrayOutputStream();
+            DataOutputStream runs = new DataOutputStream(runBytes);
+            int runCount = 0;
+            for (int c = 0; c < 256; c++) {
+                int y = 0;
+                while (y < height) {
+                    int id = comp[(y << 8) | c];
+                    if (id == 0) { y++; continue; }
+                    int from = y;
+                    while (y + 1 < height && comp[((y + 1) << 8) | c] == id) y++;
+                    runs.writeByte(c);
+                    runs.writeShort(from + minY);
+                    runs.writeShort(y + minY);
+                    runs.writeShort(id - 1);
+                    runCount++;
+                    y++;
+                }
+            }
+            out.writeInt(runCount);
+            runs.flush();
+            out.write(runBytes.toByteArray());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't throw
+        }
+    }
+
+    private static int visit(boolean[] air, int[] comp, int[] queue, int tail, int j, int id) {
+        if (!air[j] || comp[j] != 0) return tail;
+        comp[j] = id;
+        queue[tail] = j;
+        return tail + 1;
+    }
+
+    /** Hands a computed layer over until the chunk loads and it can be written to the chunk. A null layer is ignored. */
+    public static void stash(String world, int cx, int cz, byte[] layer) {
+        if (layer == null) return;
+        Map<Long, Pending> pending = PENDING.computeIfAbsent(world, w -> new ConcurrentHashMap<>());
+        pending.put(chunkKey(cx, cz), new Pending(layer));
+        if (pending.size() > PENDING_LIMIT) prune(pending);
+    }
+
+    // Drops expired layers, then the oldest ones down to three quarters of the limit so this runs rarely
+    private static void prune(Map<Long, Pending> pending) {
+        long now = System.nanoTime();
+        pending.values().removeIf(p -> now - p.stashedAt > PENDING_TTL_NANOS);
+        int excess = pending.size() - PENDING_LIMIT * 3 / 4;
+        if (excess <= 0) return;
+        List<Map.Entry<Long, Pending>> entries = new ArrayList<>(pending.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().stashedAt));
+        for (int i = 0; i < excess && i < entries.size(); i++) pending.remove(entries.get(i).getKey(), entries.get(i).getValue());
+    }
+
+    // --- Runtime side ---
+
+    private Layer layer(World world, int cx, int cz) {
+        LongObjectHashMap<Layer> chunks = loaded.get(world.getName());
+        Layer layer = chunks == null ? null : chunks.get(chunkKey(cx, cz));
+        if (layer != null) return layer;
+        if (!world.isChunkLoaded(cx, cz)) return null;
+        PersistentDataContainer pdc = world.getChunkAt(cx, cz).getPersistentDataContainer();
+        byte[] bytes = pdc.get(layerKey, PersistentDataType.BYTE_ARRAY);
+        layer = bytes == null ? Layer.NONE : decode(bytes);
+        if (layer == null) layer = Layer.NONE;
+        Long modified = pdc.get(modifiedKey, PersistentDataType.LONG);
+        if (layer != Layer.NONE && modified != null) layer.modified = modified;
+        loaded.computeIfAbsent(world.getName(), w -> new LongObjectHashMap<>()).put(chunkKey(cx, cz), layer);
+        return layer;
+    }
+
+    private static Layer decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != FORMAT) return null;
+            int minY = in.readShort();
+            int count = in.readUnsignedShort();
+            byte[] labels = new byte[count];
+            long[] sections = new long[count];
+            for (int c = 0; c < count; c++) {
+                labels[c] = in.readByte();
+                sections[c] = in.readLong();
+            }
+            int runCount = in.readInt();
+            int[] colStart = new int[257];
+            short[] from = new short[runCount], to = new short[runCount];
+            char[] component = new char[runCount];
+            int[] column = new int[runCount];
+            for (int r = 0; r < runCount; r++) {
+                column[r] = in.readUnsignedByte();
+                from[r] = in.readShort();
+                to[r] = in.readShort();
+                component[r] = (char) in.readUnsignedShort();
+                colStart[column[r] + 1]++;
+            }
+            for (int c = 0; c < 256; c++) colStart[c + 1] += colStart[c]; // runs were written column by column
+            return new Layer(minY, labels, sections, colStart, from, to, component);
+        } catch (IOException e) {
+            return null; // corrupt: behave as if there were no layer
+        }
+    }
+
+    // A change can join or split the components around it, so the sections of the block and its neighbours go stale
+    @Override
+    public void blockChanged(Block b, BlockChangeDispatcher.Becomes becomes) {
+        World world = b.getWorld();
+        int x = b.getX(), y = b.getY(), z = b.getZ();
+        markModified(world, x, y, z);
+        markModified(world, x + 1, y, z);
+        markModified(world, x - 1, y, z);
+        markModified(world, x, y, z + 1);
+        markModified(world, x, y, z - 1);
+        markModified(world, x, y + 1, z);
+        markModified(world, x, y - 1, z);
+    }
+
+    private void markModified(World world, int x, int y, int z) {
+        int cx = x >> 4, cz = z >> 4;
+        Layer layer = layer(world, cx, cz);
+        if (layer == null || layer == Layer.NONE) return;
+        int section = (y - layer.minY) >> 4;
+        if (section < 0 || section > 63) return;
+        long bit = 1L << section;
+        if ((layer.modified & bit) != 0) return;
+        layer.modified |= bit;
+        world.getChunkAt(cx, cz).getPersistentDataContainer().set(modifiedKey, PersistentDataType.LONG, layer.modified);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent e) {
+        if (!e.isNewChunk()) return;
+        Map<Long, Pending> pending = PENDING.get(e.getWorld().getName());
+        Pending layer = pending == null ? null : pending.remove(chunkKey(e.getChunk().getX(), e.getChunk().getZ()));
+        if (layer == null) return;
+        Chunk chunk = e.getChunk();
+        chunk.getPersistentDataContainer().set(layerKey, PersistentDataType.BYTE_ARRAY, layer.layer);
+        LongObjectHashMap<Layer> chunks = loaded.get(e.getWorld().getName());
+        if (chunks != null) chunks.remove(chunkKey(chunk.getX(), chunk.getZ())); // may have been cached as NONE
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        LongObjectHashMap<Layer> chunks = loaded.get(e.getWorld().getName());
+        if (chunks != null) chunks.remove(chunkKey(e.getChunk().getX(), e.getChunk().getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        loaded.remove(e.getWorld().getName());
+        PENDING.remove(e.getWorld().getName());
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,46 @@
+package goat.thaw.system.environment;
+
+import goat.thaw.system.space.Space;
+import org.bukkit.block.Biome;
+
+/**
+ * What a player's surroundings looked like at one point in time, built by EnvironmentSampler.
+ * Immutable; subsystems read it instead of querying the world themselves.
+ */
+public final class EnvironmentSample {
+    public final String world;
+    public final int x, y, z;           // feet block
+    public final Space space;           // sealed space at head height, or null
+    public final boolean skyExposed;    // nothing but air above the feet block
+    public final boolean sunVisible;    // head block sees the sun (false at night)
+    public final boolean underground;   // deep underground: enclosed by stone with no way up to the sky
+    public final Biome biome;
+    public final boolean inWater;       // feet or head block is water
+    public final long tick;             // sampler tick this was built on
+
+    // What the sample was built from; a change in any of these makes it stale
+    final long chunkVersion;
+    final long spacesVersion;
+    final int sunBucket;
+    final long undergroundTick;         // when underground was last probed
+
+    EnvironmentSample(String world, int x, int y, int z, Space space, boolean skyExposed, boolean sunVisible,
+                      boolean underground, Biome biome, boolean inWater, long tick,
+                      long chunkVersion, long spacesVersion, int sunBucket, long undergroundTick) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.space = space;
+        this.skyExposed = skyExposed;
+        this.sunVisible = sunVisible;
+        this.underground = underground;
+        this.biome = biome;
+        this.inWater = inWater;
+        this.tick = tick;
+        this.chunkVersion = chunkVersion;
+        this.spacesVersion = spacesVersion;
+        this.sunBucket = sunBucket;
+        this.undergroundTick = undergroundTick;
+    }
+}
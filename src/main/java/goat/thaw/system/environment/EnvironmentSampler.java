@@ -0,0 +1,170 @@
+package goat.thaw.system.environment;
+
+import goat.thaw.system.space.AirGraph;
+import goat.thaw.system.space.SkyColumnCache;
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.SpaceManager;
+import goat.thaw.system.space.flood.VoxelTraversal;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps one EnvironmentSample per online player, refreshed every tick but only rebuilt when something it
+ * depends on moved: the player's block, their chunk's blocks (SkyColumnCache version), the published
+ * spaces, or whether the sun reaches them. The sun check runs every refresh because its ray crosses other
+ * chunks; SunVisibility caches it and retraces only when one of those chunks changed. The deep-underground
+ * probe (stone sandwich, then a bounded flood looking for sky) is the expensive part and only reruns every
+ * five seconds per player; caves with a CaveLabels entry or an AirGraph answer skip the flood.
+ * Main thread only.
+ */
+public class EnvironmentSampler implements Listener {
+    private static final long UNDERGROUND_INTERVAL_TICKS = 100L;
+    private static final int UNDERGROUND_FLOOD_STEPS = 1000;
+
+    private final Plugin plugin;
+    private final SpaceManager spaces;
+    private final SkyColumnCache sky;
+    private final SunVisibility sun;
+    private final CaveLabels caves;
+    private final AirGraph air;
+    private final Map<UUID, EnvironmentSample> samples = new HashMap<>();
+    private final VoxelTraversal traversal = new VoxelTraversal(); // reused across underground probes
+    private BukkitTask task;
+    private long tick = 0L;
+
+    public EnvironmentSampler(Plugin plugin, SpaceManager spaces, SkyColumnCache sky, SunVisibility sun,
+                              CaveLabels caves, AirGraph air) {
+        this.plugin = plugin;
+        this.spaces = spaces;
+        this.sky = sky;
+        this.sun = sun;
+        this.caves = caves;
+        this.air = air;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) { task.cancel(); task = null; }
+        samples.clear();
+    }
+
+    /** The player's current sample; built on the spot if the sampler hasn't seen them yet. */
+    public EnvironmentSample get(Player p) {
+        EnvironmentSample s = samples.get(p.getUniqueId());
+        return s != null ? s : refresh(p);
+    }
+
+    /** Latest sample for an online player, or null if there is none yet. */
+    public EnvironmentSample get(UUID id) {
+        return samples.get(id);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        samples.remove(e.getPlayer().getUniqueId());
+    }
+
+    private void tick() {
+        tick++;
+        for (Player p : Bukkit.getOnlinePlayers()) refresh(p);
+    }
+
+    private EnvironmentSample refresh(Player p) {
+        World w = p.getWorld();
+        Location loc = p.getLocation();
+        int x = loc.getBlockX(), y = loc.getBlockY(), z = loc.getBlockZ();
+        long chunkVersion = sky.chunkVersion(w, x >> 4, z >> 4);
+        long spacesVersion = spaces.snapshot().version();
+        int sunBucket = SunVisibility.bucket(w.getTime());
+        boolean sunVisible = sun.canSeeSun(w, x, y + 1, z);
+
+        EnvironmentSample prev = samples.get(p.getUniqueId());
+        boolean sameWorld = prev != null && prev.world.equals(w.getName());
+        boolean probeDue = !sameWorld || tick - prev.undergroundTick >= UNDERGROUND_INTERVAL_TICKS;
+        if (sameWorld && !probeDue && prev.x == x && prev.y == y && prev.z == z && prev.chunkVersion == chunkVersion
+                && prev.spacesVersion == spacesVersion && prev.sunBucket == sunBucket && prev.sunVisible == sunVisible) {
+            return prev;
+        }
+
+        Space space = spaces.spaceAt(w, x, y + 1, z); // one block above feet
+        boolean skyExposed = sky.isOpenAbove(w, x, y, z);
+        boolean inWater = w.getType(x, y, z) == Material.WATER || w.getType(x, y + 1, z) == Material.WATER;
+        boolean underground = prev != null && prev.underground;
+        long undergroundTick = prev == null ? tick : prev.undergroundTick;
+        if (probeDue) {
+            underground = suspectUnderground(w, x, y, z) && !reachesSky(w, x, y, z);
+            undergroundTick = tick;
+        }
+        EnvironmentSample s = new EnvironmentSample(w.getName(), x, y, z, space, skyExposed, sunVisible, underground,
+                w.getBiome(x, y, z), inWater, tick, chunkVersion, spacesVersion, sunBucket, undergroundTick);
+        samples.put(p.getUniqueId(), s);
+        return s;
+    }
+
+    // Stone-sandwich suspicion:
+    // - Block directly under feet is stone-like
+    // - Column above (y+1..y+100) is air up to the first solid; that first solid must be stone-like
+    private boolean suspectUnderground(World w, int x, int y, int z) {
+        Material below = w.getType(x, y - 1, z);
+        if (!isStoneLike(below)) return false;
+
+        int top = Math.min(w.getMaxHeight(), y + 100);
+        boolean sawAir = false;
+        for (int yy = y + 1; yy < top; yy++) {
+            Material m = w.getType(x, yy, z);
+            if (m.isAir()) { sawAir = true; continue; }
+            // Hit a solid before sky
+            return sawAir && isStoneLike(m);
+        }
+        // No solid above within 100 blocks -> likely open field/sky
+        return false;
+    }
+
+    private boolean isStoneLike(Material m) {
+        return m == Material.STONE || m == Material.DEEPSLATE || m == Material.ANDESITE
+                || m == Material.DIORITE || m == Material.GRANITE || m == Material.TUFF
+                || m == Material.DEEPSLATE_TILES || m == Material.COBBLESTONE || m == Material.BLACKSTONE; // fallback: conservative
+    }
+
+    // Generation-time labels answer for untouched caves, the air graph for the rest of the area around
+    // players; the flood only runs where neither can tell
+    private boolean reachesSky(World w, int x, int y, int z) {
+        switch (caves.at(w, x, y + 1, z)) {
+            case SEALED: return false;
+            case SKY: return true;
+            default: break;
+        }
+        switch (air.reach(w, x, y + 1, z)) {
+            case SEALED: return false;
+            case SKY: return true;
+            default: return floodFindsSky(w, x, y, z);
+        }
+    }
+
+    // Flood fill matching Space system semantics (DFS-style), bounded by UNDERGROUND_FLOOD_STEPS.
+    // Start one block above feet, stop immediately on sky exposure.
+    private boolean floodFindsSky(World w, int sx, int sy, int sz) {
+        traversal.reset(w).seed(sx, sy + 1, sz);
+        VoxelTraversal.Result result = traversal.run((x, y, z) -> {
+            if (sky.isOpenAbove(w, x, y, z)) return VoxelTraversal.Step.STOP; // immediate abort on sky
+            return w.getType(x, y, z).isAir() ? VoxelTraversal.Step.EXPAND : VoxelTraversal.Step.SKIP; // boundary
+        }, UNDERGROUND_FLOOD_STEPS);
+        return result == VoxelTraversal.Result.STOPPED;
+    }
+}
@@ -0,0 +1,132 @@
+package goat.thaw.system.environment;
+
+import goat.thaw.system.space.SkyColumnCache;
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Can a block see the sun? The sun's path is split into 64 angle buckets per day (375 ticks each), and
+ * the ray toward the middle of the current bucket is walked one voxel at a time (Amanda-Woo DDA, so
+ * each voxel on the line is read exactly once). Voxels above their column's highest block are known
+ * to be air from the SkyColumnCache and cost nothing; only the rest are read from the world.
+ *
+ * Results are cached per block and bucket, together with the versions of the chunks the ray crossed,
+ * so players standing in the same spot and repeated ticks reuse them until a block on the way changes
+ * or the sun moves to the next bucket. Main thread only.
+ */
+public final class SunVisibility {
+    private static final int BUCKETS_PER_DAY = 64;
+    private static final long TICKS_PER_BUCKET = 24000L / BUCKETS_PER_DAY;
+    private static final double MAX_DISTANCE = 256.0; // blocks along the ray
+    private static final int MAX_CACHED_PER_WORLD = 4096;
+
+    private final SkyColumnCache sky;
+    private final Map<String, WorldRays> worlds = new HashMap<>();
+
+    private static final class WorldRays {
+        int bucket = -1;
+        final LongObjectHashMap<Ray> rays = new LongObjectHashMap<>();
+    }
+
+    private static final class Ray {
+        boolean lit;
+        int chunkCount;
+        long[] chunks = new long[4];   // chunks the ray crossed
+        long[] versions = new long[4]; // their versions when it did
+
+        void crossed(long chunk, long version) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                versions = Arrays.copyOf(versions, chunkCount * 2);
+            }
+            chunks[chunkCount] = chunk;
+            versions[chunkCount++] = version;
+        }
+    }
+
+    public SunVisibility(SkyColumnCache sky) {
+        this.sky = sky;
+    }
+
+    /** Daytime sun angle bucket for a world time, or -1 at night (the sun is below the horizon). */
+    public static int bucket(long time) {
+        long t = time % 24000L;
+        if (t >= 12000L) return -1;
+        return (int) (t / TICKS_PER_BUCKET);
+    }
+
+    /** True if nothing but air lies between (x,y,z) and the sun, at the world's current time. */
+    public boolean canSeeSun(World world, int x, int y, int z) {
+        int bucket = bucket(world.getTime());
+        if (bucket < 0) return false;
+        WorldRays cache = worlds.computeIfAbsent(world.getName(), w -> new WorldRays());
+        if (cache.bucket != bucket || cache.rays.size() > MAX_CACHED_PER_WORLD) {
+            cache.rays.clear();
+            cache.bucket = bucket;
+        }
+        long key = BlockPos.pack(x, y, z);
+        Ray ray = cache.rays.get(key);
+        if (ray != null && isCurrent(world, ray)) return ray.lit;
+        ray = new Ray();
+        ray.lit = trace(world, x, y, z, bucket, ray);
+        cache.rays.put(key, ray);
+        return ray.lit;
+    }
+
+    private boolean isCurrent(World world, Ray ray) {
+        for (int i = 0; i < ray.chunkCount; i++) {
+            long chunk = ray.chunks[i];
+            if (sky.chunkVersion(world, (int) (chunk >> 32), (int) chunk) != ray.versions[i]) return false;
+        }
+        return true;
+    }
+
+    // Sun moves east (+X) at dawn -> straight up at noon -> west (-X) at dusk, no Z component
+    private boolean trace(World world, int x, int y, int z, int bucket, Ray ray) {
+        double theta = Math.PI * ((bucket + 0.5) * TICKS_PER_BUCKET) / 12000.0;
+        double dx = Math.cos(theta);
+        double dy = Math.sin(theta);
+        double dz = 0.0;
+
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        // Ray starts at the block centre, so the first boundary is half a block away on each axis
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dx);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dy);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dz);
+        double maxX = deltaX * 0.5, maxY = deltaY * 0.5, maxZ = deltaZ * 0.5;
+
+        int minHeight = world.getMinHeight(), maxHeight = world.getMaxHeight();
+        int bx = x, by = y, bz = z;
+        int cx = Integer.MIN_VALUE, cz = Integer.MIN_VALUE;
+        int chunkTop = Integer.MAX_VALUE;
+        while (true) {
+            double t;
+            if (maxX <= maxY && maxX <= maxZ) { t = maxX; bx += stepX; maxX += deltaX; }
+            else if (maxY <= maxZ) { t = maxY; by += stepY; maxY += deltaY; }
+            else { t = maxZ; bz += stepZ; maxZ += deltaZ; }
+            if (t > MAX_DISTANCE) return true; // nothing within range
+            if (by >= maxHeight) return true;  // out the top of the world
+            if (by < minHeight) return false;
+
+            if ((bx >> 4) != cx || (bz >> 4) != cz) {
+                cx = bx >> 4;
+                cz = bz >> 4;
+                long version = sky.chunkVersion(world, cx, cz);
+                ray.crossed(((long) cx << 32) | (cz & 0xFFFFFFFFL), version);
+                if (version < 0) return true; // unloaded: treat as open rather than load it
+                chunkTop = sky.chunkTop(world, cx, cz);
+            }
+            // Above everything in this chunk, or above this column's top block: air without a lookup
+            if (by > chunkTop) continue;
+            if (by > sky.highestBlockY(world, bx, bz)) continue;
+            if (!world.getType(bx, by, bz).isAir()) return false;
+        }
+    }
+}
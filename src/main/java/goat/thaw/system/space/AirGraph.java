@@ -0,0 +1,537 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.util.LongArrayStack;
+import goat.thaw.system.util.LongIntHashMap;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which air reaches the sky, kept for the chunks around players.
+ *
+ * Every 16x16x16 section labels its air into components, and each pair of neighbouring sections keeps
+ * the label pairs that touch across their shared face. A union-find over all section components, built
+ * from those links alone (never from blocks), then answers "does this air reach the sky?" in
+ * near-constant time. A block change only relabels its own section, whose new components are unioned
+ * into the forest in place. The forest is rebuilt only when a change may have split a component: a
+ * relabel that turned air solid, or a chunk dropping out of the indexed area.
+ *
+ * A component reaches the sky when one of its cells is above its column's highest block. Air that runs
+ * into a section nobody indexed answers UNKNOWN and callers fall back to their floods. Main thread only.
+ */
+public class AirGraph implements Listener, BlockChangeDispatcher.Subscriber {
+    public enum Reach { SKY, SEALED, UNKNOWN }
+
+    private static final int RADIUS = 4;                // chunks indexed around each player
+    private static final int SECTIONS_PER_TICK = 8;     // new sections labelled per tick
+    private static final int SCAN_INTERVAL_TICKS = 20;  // how often the indexed area follows players
+    private static final int COMPACT_MIN_RETIRED = 4096; // retired nodes tolerated before a rebuild reclaims them
+    private static final int[] NO_LINKS = new int[0];
+    private static final byte ALL_FACES = 0x3F;
+
+    private final Plugin plugin;
+    private final SkyColumnCache sky;
+    private final Map<String, Graph> worlds = new HashMap<>();
+    private BukkitTask task;
+    private boolean settleScheduled = false;
+    private long tick = 0L;
+
+    private static final class Section {
+        final int sx, sy, sz;
+        short[] labels;    // component + 1 per cell, (y << 8 | z << 4 | x), 0 = solid; null when uniform
+        int count;         // components; a uniform section is all solid (0) or all air (1)
+        boolean[] sky;     // per component
+        byte[] faces;      // per component: which of the six faces it has cells on (bit axis * 2 + side)
+        final int[][] links = new int[3][]; // towards +x, +y, +z: (mine << 16 | theirs) for touching components
+        int base;          // first union-find node, assigned on rebuild
+
+        Section(int sx, int sy, int sz) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+        }
+
+        int label(int i) {
+            return labels == null ? count : labels[i];
+        }
+    }
+
+    private static final class Columns {
+        final short[] highest = new short[256]; // column heights the sections' sky flags were computed from
+        int top;
+        long version = -2L;                     // SkyColumnCache version they were read at
+    }
+
+    private static final class Graph {
+        final int minSy, maxSy;
+        final LongObjectHashMap<Columns> chunks = new LongObjectHashMap<>();    // indexed chunks
+        final LongObjectHashMap<Section> sections = new LongObjectHashMap<>();  // labelled sections
+        final LongArrayStack queue = new LongArrayStack();                      // sections waiting to be labelled
+        final LongIntHashMap fresh = new LongIntHashMap(); // changed this tick; the block may not be in place yet
+        final LongIntHashMap dirty = new LongIntHashMap(); // changed before this tick, relabelled on next use
+        // Union-find over section components. Sky and open counts are sums over a tree, valid at its root, so a
+        // relabelled section's old nodes can be subtracted out and left behind as retired nodes.
+        int[] parent = new int[0];
+        int[] sky = new int[0];   // components above their column's highest block
+        int[] open = new int[0];  // faces onto a section nobody indexed; that air might lead anywhere
+        int nodes, retired;
+        boolean stale = true;
+
+        Graph(World world) {
+            this.minSy = world.getMinHeight() >> 4;
+            this.maxSy = (world.getMaxHeight() - 1) >> 4;
+        }
+    }
+
+    public AirGraph(Plugin plugin, SkyColumnCache sky) {
+        this.plugin = plugin;
+        this.sky = sky;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) { task.cancel(); task = null; }
+        worlds.clear();
+    }
+
+    /**
+     * Whether the air at (x,y,z) connects to the sky. UNKNOWN when the block isn't air, isn't indexed yet,
+     * changed this tick, or its air runs out of the indexed area without reaching the sky.
+     */
+    public Reach reach(World world, int x, int y, int z) {
+        Graph g = worlds.get(world.getName());
+        if (g == null) return Reach.UNKNOWN;
+        flush(world, g);
+        Section s = g.sections.get(BlockPos.pack(x >> 4, y >> 4, z >> 4));
+        if (s == null) return Reach.UNKNOWN;
+        int label = s.label(index(x & 15, y & 15, z & 15));
+        if (label == 0) return Reach.UNKNOWN;
+        if (g.stale) rebuild(g);
+        int root = find(g.parent, s.base + label - 1);
+        if (touchesFresh(g, root)) return Reach.UNKNOWN;
+        if (g.sky[root] > 0) return Reach.SKY;
+        return g.open[root] > 0 ? Reach.UNKNOWN : Reach.SEALED;
+    }
+
+    // Whether the component has a node in a section changed this tick; air elsewhere is answered as usual
+    private static boolean touchesFresh(Graph g, int root) {
+        if (g.fresh.isEmpty()) return false;
+        boolean[] hit = {false};
+        g.fresh.forEach((key, unused) -> {
+            Section s = g.sections.get(key);
+            if (hit[0] || s == null) return;
+            for (int c = 0; c < s.count; c++) {
+                if (find(g.parent, s.base + c) == root) { hit[0] = true; return; }
+            }
+        });
+        return hit[0];
+    }
+
+    private void tick() {
+        tick++;
+        for (World world : Bukkit.getWorlds()) {
+            Graph g = worlds.get(world.getName());
+            if (tick % SCAN_INTERVAL_TICKS == 1) g = follow(world, g);
+            if (g == null) continue;
+            checkColumns(world, g);
+            flush(world, g);
+            for (int built = 0; built < SECTIONS_PER_TICK && !g.queue.isEmpty(); ) {
+                long key = g.queue.pop();
+                int sx = BlockPos.unpackX(key), sy = BlockPos.unpackY(key), sz = BlockPos.unpackZ(key);
+                Columns columns = g.chunks.get(chunkKey(sx, sz));
+                if (columns == null || g.sections.containsKey(key)) continue; // dropped meanwhile
+                Section s = new Section(sx, sy, sz);
+                label(world, s, columns);
+                put(g, key, s, null);
+                built++;
+            }
+        }
+    }
+
+    // Index loaded chunks within RADIUS of a player, drop those that fell out of reach
+    private Graph follow(World world, Graph g) {
+        List<Player> players = world.getPlayers();
+        if (players.isEmpty()) {
+            if (g != null) worlds.remove(world.getName());
+            return null;
+        }
+        if (g == null) {
+            g = new Graph(world);
+            worlds.put(world.getName(), g);
+        }
+        LongIntHashMap wanted = new LongIntHashMap();
+        for (Player p : players) {
+            int pcx = p.getLocation().getBlockX() >> 4, pcz = p.getLocation().getBlockZ() >> 4;
+            for (int cx = pcx - RADIUS - 1; cx <= pcx + RADIUS + 1; cx++) {
+                for (int cz = pcz - RADIUS - 1; cz <= pcz + RADIUS + 1; cz++) {
+                    boolean inner = Math.abs(cx - pcx) <= RADIUS && Math.abs(cz - pcz) <= RADIUS;
+                    long key = chunkKey(cx, cz);
+                    if (inner) wanted.put(key, 2, 0);
+                    else if (wanted.get(key, 0) == 0) wanted.put(key, 1, 0); // kept if indexed, not added
+                }
+            }
+        }
+        Graph graph = g;
+        for (long key : graph.chunks.keys()) {
+            if (wanted.get(key, 0) == 0) drop(graph, (int) (key >> 32), (int) key);
+        }
+        wanted.forEach((key, want) -> {
+            int cx = (int) (key >> 32), cz = (int) key;
+            if (want != 2 || graph.chunks.containsKey(key) || !world.isChunkLoaded(cx, cz)) return;
+            Columns columns = new Columns();
+            readColumns(world, cx, cz, columns);
+            graph.chunks.put(key, columns);
+            for (int sy = graph.maxSy; sy >= graph.minSy; sy--) graph.queue.push(BlockPos.pack(cx, sy, cz));
+        });
+        return g;
+    }
+
+    private void drop(Graph g, int cx, int cz) {
+        if (g.chunks.remove(chunkKey(cx, cz)) == null) return;
+        for (int sy = g.minSy; sy <= g.maxSy; sy++) g.sections.remove(BlockPos.pack(cx, sy, cz));
+        g.stale = true; // air may have been connected only through this chunk
+    }
+
+    // Sky flags depend on column heights; when a chunk's heights moved, relabel the sections in between
+    private void checkColumns(World world, Graph g) {
+        for (long key : g.chunks.keys()) {
+            Columns columns = g.chunks.get(key);
+            int cx = (int) (key >> 32), cz = (int) key;
+            long version = sky.chunkVersion(world, cx, cz);
+            if (version == columns.version) continue;
+            columns.version = version;
+            if (version < 0) continue; // unloading; onChunkUnload drops it
+            for (int c = 0; c < 256; c++) {
+                int old = columns.highest[c];
+                int now = sky.highestBlockY(world, (cx << 4) | (c & 15), (cz << 4) | (c >> 4));
+                if (now == old) continue;
+                columns.highest[c] = (short) now;
+                int from = Math.max(g.minSy, (Math.min(old, now) + 1) >> 4), to = Math.min(g.maxSy, Math.max(old, now) >> 4);
+                for (int sy = from; sy <= to; sy++) g.dirty.put(BlockPos.pack(cx, sy, cz), 1, 0);
+            }
+            columns.top = top(columns.highest);
+        }
+    }
+
+    private void readColumns(World world, int cx, int cz, Columns columns) {
+        for (int c = 0; c < 256; c++) {
+            columns.highest[c] = (short) sky.highestBlockY(world, (cx << 4) | (c & 15), (cz << 4) | (c >> 4));
+        }
+        columns.top = top(columns.highest);
+        columns.version = sky.chunkVersion(world, cx, cz);
+    }
+
+    private void flush(World world, Graph g) {
+        if (g.dirty.isEmpty()) return;
+        g.dirty.forEach((key, unused) -> {
+            Section old = g.sections.get(key);
+            Columns columns = g.chunks.get(chunkKey(BlockPos.unpackX(key), BlockPos.unpackZ(key)));
+            if (old == null || columns == null) return; // not labelled yet; the queue reads it fresh
+            Section s = new Section(old.sx, old.sy, old.sz);
+            label(world, s, columns);
+            put(g, key, s, old);
+        });
+        g.dirty.clear();
+    }
+
+    // Labels a section's air into face-connected components, with a sky flag for each
+    private void label(World world, Section s, Columns columns) {
+        int bx = s.sx << 4, by = s.sy << 4, bz = s.sz << 4;
+        if (by > columns.top) {
+            // Above every block in the chunk: all air, all sky
+            s.labels = null;
+            s.count = 1;
+            s.sky = new boolean[]{true};
+            s.faces = new byte[]{ALL_FACES};
+            return;
+        }
+        boolean[] air = new boolean[4096];
+        int airCount = 0;
+        for (int i = 0; i < 4096; i++) {
+            air[i] = world.getType(bx + (i & 15), by + (i >> 8), bz + ((i >> 4) & 15)).isAir();
+            if (air[i]) airCount++;
+        }
+        if (airCount == 0) {
+            s.labels = null;
+            s.count = 0;
+            s.sky = new boolean[0];
+            s.faces = new byte[0];
+            return;
+        }
+        short[] labels = new short[4096];
+        int[] queue = new int[airCount];
+        boolean[] reachesSky = new boolean[airCount];
+        byte[] faces = new byte[airCount];
+        int count = 0;
+        for (int seed = 0; seed < 4096; seed++) {
+            if (!air[seed] || labels[seed] != 0) continue;
+            short id = (short) ++count;
+            int head = 0, tail = 0;
+            labels[seed] = id;
+            queue[tail++] = seed;
+            while (head < tail) {
+                int i = queue[head++];
+                int lx = i & 15, lz = (i >> 4) & 15, ly = i >> 8;
+                if (by + ly > columns.highest[(lz << 4) | lx]) reachesSky[count - 1] = true;
+                faces[count - 1] |= faceBits(lx, ly, lz);
+                if (lx > 0 && air[i - 1] && labels[i - 1] == 0) { labels[i - 1] = id; queue[tail++] = i - 1; }
+                if (lx < 15 && air[i + 1] && labels[i + 1] == 0) { labels[i + 1] = id; queue[tail++] = i + 1; }
+                if (lz > 0 && air[i - 16] && labels[i - 16] == 0) { labels[i - 16] = id; queue[tail++] = i - 16; }
+                if (lz < 15 && air[i + 16] && labels[i + 16] == 0) { labels[i + 16] = id; queue[tail++] = i + 16; }
+                if (ly > 0 && air[i - 256] && labels[i - 256] == 0) { labels[i - 256] = id; queue[tail++] = i - 256; }
+                if (ly < 15 && air[i + 256] && labels[i + 256] == 0) { labels[i + 256] = id; queue[tail++] = i + 256; }
+            }
+        }
+        s.labels = airCount == 4096 ? null : labels; // one component filling the section needs no per-cell labels
+        s.count = count;
+        s.sky = Arrays.copyOf(reachesSky, count);
+        s.faces = Arrays.copyOf(faces, count);
+    }
+
+    private static int faceBits(int lx, int ly, int lz) {
+        int bits = 0;
+        if (lx == 0) bits |= 1;
+        if (lx == 15) bits |= 1 << 1;
+        if (ly == 0) bits |= 1 << 2;
+        if (ly == 15) bits |= 1 << 3;
+        if (lz == 0) bits |= 1 << 4;
+        if (lz == 15) bits |= 1 << 5;
+        return bits;
+    }
+
+    // (Re)places a labelled section, refreshes the links on all six of its faces and unions them in
+    private void put(Graph g, long key, Section s, Section old) {
+        g.sections.put(key, s);
+        for (int axis = 0; axis < 3; axis++) {
+            Section up = g.sections.get(neighbour(s, axis, 1));
+            s.links[axis] = up == null ? NO_LINKS : link(s, up, axis);
+            Section down = g.sections.get(neighbour(s, axis, -1));
+            if (down != null) down.links[axis] = link(down, s, axis);
+        }
+        if (g.stale) return;
+        if (old != null && lostAir(old, s)) {
+            g.stale = true; // air turned solid: a component may have split, which a union-find can't undo
+            return;
+        }
+        // Air only grew, so every union already made still holds; the old nodes just stop counting
+        if (old != null) retire(g, old);
+        else closeFaces(g, s);
+        enter(g, s);
+        for (int axis = 0; axis < 3; axis++) {
+            Section up = g.sections.get(neighbour(s, axis, 1));
+            if (up != null) {
+                for (int pair : s.links[axis]) union(g, s.base + (pair >>> 16), up.base + (pair & 0xFFFF));
+            }
+            Section down = g.sections.get(neighbour(s, axis, -1));
+            if (down != null) {
+                for (int pair : down.links[axis]) union(g, down.base + (pair >>> 16), s.base + (pair & 0xFFFF));
+            }
+        }
+        if (g.retired > COMPACT_MIN_RETIRED && g.retired > g.nodes / 2) g.stale = true; // reclaim the retired nodes
+    }
+
+    private static boolean lostAir(Section old, Section now) {
+        if (old.count == 0 || (now.labels == null && now.count == 1)) return false;
+        for (int i = 0; i < 4096; i++) {
+            if (old.label(i) != 0 && now.label(i) == 0) return true;
+        }
+        return false;
+    }
+
+    // Gives the section's components fresh nodes, each its own tree for now
+    private static void enter(Graph g, Section s) {
+        int need = g.nodes + s.count;
+        if (need > g.parent.length) {
+            int size = Math.max(need, g.parent.length * 2);
+            g.parent = Arrays.copyOf(g.parent, size);
+            g.sky = Arrays.copyOf(g.sky, size);
+            g.open = Arrays.copyOf(g.open, size);
+        }
+        s.base = g.nodes;
+        g.nodes = need;
+        int openFaces = openFaces(g, s);
+        for (int c = 0; c < s.count; c++) {
+            int node = s.base + c;
+            g.parent[node] = node;
+            g.sky[node] = s.sky[c] ? 1 : 0;
+            g.open[node] = Integer.bitCount(s.faces[c] & openFaces);
+        }
+    }
+
+    // Takes a replaced section's own counts back out of whatever trees its nodes ended up in
+    private static void retire(Graph g, Section s) {
+        int openFaces = openFaces(g, s);
+        for (int c = 0; c < s.count; c++) {
+            int root = find(g.parent, s.base + c);
+            if (s.sky[c]) g.sky[root]--;
+            g.open[root] -= Integer.bitCount(s.faces[c] & openFaces);
+        }
+        g.retired += s.count;
+    }
+
+    // A newly indexed section closes the faces its neighbours had open towards it
+    private static void closeFaces(Graph g, Section s) {
+        for (int axis = 0; axis < 3; axis++) {
+            for (int side = 0; side < 2; side++) {
+                Section n = g.sections.get(neighbour(s, axis, side == 0 ? -1 : 1));
+                if (n == null) continue;
+                int bit = 1 << (axis * 2 + (1 - side)); // n's face towards s
+                for (int c = 0; c < n.count; c++) {
+                    if ((n.faces[c] & bit) != 0) g.open[find(g.parent, n.base + c)]--;
+                }
+            }
+        }
+    }
+
+    // Faces with no indexed section behind them; the world's top and bottom lead nowhere
+    private static int openFaces(Graph g, Section s) {
+        int bits = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            if (g.sections.get(neighbour(s, axis, -1)) == null && (axis != 1 || s.sy > g.minSy)) bits |= 1 << (axis * 2);
+            if (g.sections.get(neighbour(s, axis, 1)) == null && (axis != 1 || s.sy < g.maxSy)) bits |= 1 << (axis * 2 + 1);
+        }
+        return bits;
+    }
+
+    // Distinct component pairs touching across the face between a and b = a + axis
+    private static int[] link(Section a, Section b, int axis) {
+        if (a.count == 0 || b.count == 0) return NO_LINKS;
+        int[] pairs = new int[256];
+        int n = 0;
+        for (int u = 0; u < 16; u++) {
+            for (int v = 0; v < 16; v++) {
+                int la = a.label(faceCell(axis, 15, u, v)), lb = b.label(faceCell(axis, 0, u, v));
+                if (la != 0 && lb != 0) pairs[n++] = ((la - 1) << 16) | (lb - 1);
+            }
+        }
+        if (n == 0) return NO_LINKS;
+        Arrays.sort(pairs, 0, n);
+        int unique = 1;
+        for (int i = 1; i < n; i++) {
+            if (pairs[i] != pairs[unique - 1]) pairs[unique++] = pairs[i];
+        }
+        return Arrays.copyOf(pairs, unique);
+    }
+
+    private void rebuild(Graph g) {
+        long[] keys = g.sections.keys();
+        g.nodes = 0;
+        g.retired = 0;
+        for (long key : keys) g.nodes += g.sections.get(key).count;
+        g.parent = new int[g.nodes];
+        g.sky = new int[g.nodes];
+        g.open = new int[g.nodes];
+        g.nodes = 0;
+        for (long key : keys) enter(g, g.sections.get(key));
+        for (long key : keys) {
+            Section s = g.sections.get(key);
+            for (int axis = 0; axis < 3; axis++) {
+                Section up = g.sections.get(neighbour(s, axis, 1));
+                if (up == null) continue;
+                for (int pair : s.links[axis]) union(g, s.base + (pair >>> 16), up.base + (pair & 0xFFFF));
+            }
+        }
+        g.stale = false;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(Graph g, int a, int b) {
+        int ra = find(g.parent, a), rb = find(g.parent, b);
+        if (ra == rb) return;
+        g.parent[ra] = rb;
+        g.sky[rb] += g.sky[ra];
+        g.open[rb] += g.open[ra];
+    }
+
+    private static int faceCell(int axis, int layer, int u, int v) {
+        switch (axis) {
+            case 0: return index(layer, u, v);
+            case 1: return index(u, layer, v);
+            default: return index(u, v, layer);
+        }
+    }
+
+    private static long neighbour(Section s, int axis, int step) {
+        return BlockPos.pack(s.sx + (axis == 0 ? step : 0), s.sy + (axis == 1 ? step : 0), s.sz + (axis == 2 ? step : 0));
+    }
+
+    private static int index(int lx, int ly, int lz) {
+        return (ly << 8) | (lz << 4) | lx;
+    }
+
+    private static int top(short[] highest) {
+        int top = Integer.MIN_VALUE;
+        for (short h : highest) top = Math.max(top, h);
+        return top;
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    // --- Block changes: the section is relabelled once the change has been applied (next tick) ---
+
+    @Override
+    public void blockChanged(Block b, BlockChangeDispatcher.Becomes becomes) {
+        Graph g = worlds.get(b.getWorld().getName());
+        if (g == null || !g.chunks.containsKey(chunkKey(b.getX() >> 4, b.getZ() >> 4))) return;
+        // Air next to the block may sit across a section face; its component has to count as changed too
+        int x = b.getX(), y = b.getY(), z = b.getZ();
+        int sx = x >> 4, sy = y >> 4, sz = z >> 4;
+        g.fresh.put(BlockPos.pack(sx, sy, sz), 1, 0);
+        if ((x & 15) == 0) g.fresh.put(BlockPos.pack(sx - 1, sy, sz), 1, 0);
+        if ((x & 15) == 15) g.fresh.put(BlockPos.pack(sx + 1, sy, sz), 1, 0);
+        if ((y & 15) == 0) g.fresh.put(BlockPos.pack(sx, sy - 1, sz), 1, 0);
+        if ((y & 15) == 15) g.fresh.put(BlockPos.pack(sx, sy + 1, sz), 1, 0);
+        if ((z & 15) == 0) g.fresh.put(BlockPos.pack(sx, sy, sz - 1), 1, 0);
+        if ((z & 15) == 15) g.fresh.put(BlockPos.pack(sx, sy, sz + 1), 1, 0);
+        if (settleScheduled) return;
+        settleScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::settle);
+    }
+
+    private void settle() {
+        settleScheduled = false;
+        for (Graph g : worlds.values()) {
+            g.fresh.forEach((key, unused) -> g.dirty.put(key, 1, 0));
+            g.fresh.clear();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        Graph g = worlds.get(e.getWorld().getName());
+        if (g != null) drop(g, e.getChunk().getX(), e.getChunk().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        worlds.remove(e.getWorld().getName());
+    }
+}
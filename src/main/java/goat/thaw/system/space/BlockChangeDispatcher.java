@@ -0,0 +1,140 @@
+package goat.thaw.system.space;
+
+import org.bukkit.Bukkit;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The one set of block-event handlers behind everything that tracks world blocks (caches, space
+ * revalidation). Each event is turned into per-block changes here and handed to every subscriber, so a
+ * new kind of block change only has to be added once. Main thread only.
+ */
+public class BlockChangeDispatcher implements Listener {
+    /** What a changed block turns into, as far as the event tells. FLUID is flowing water or lava, never air. */
+    public enum Becomes { AIR, NOT_AIR, FLUID, UNKNOWN }
+
+    public interface Subscriber {
+        /**
+         * Called at MONITOR, so the world may not show the change until the next tick. UNKNOWN is for
+         * explosions and pistons, where many blocks move at once.
+         */
+        void blockChanged(Block block, Becomes becomes);
+    }
+
+    private final Plugin plugin;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    public BlockChangeDispatcher(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void stop() {
+        subscribers.clear();
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void changed(Block b, Becomes becomes) {
+        for (int i = 0; i < subscribers.size(); i++) subscribers.get(i).blockChanged(b, becomes);
+    }
+
+    private void changed(BlockState state) {
+        changed(state.getBlock(), state.getType().isAir() ? Becomes.AIR : Becomes.NOT_AIR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent e) {
+        Block b = e.getBlockPlaced();
+        changed(b, b.getType().isAir() ? Becomes.AIR : Becomes.NOT_AIR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent e) { changed(e.getBlock(), Becomes.AIR); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBurn(BlockBurnEvent e) { changed(e.getBlock(), Becomes.AIR); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onIgnite(BlockIgniteEvent e) { changed(e.getBlock(), Becomes.NOT_AIR); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDecay(LeavesDecayEvent e) { changed(e.getBlock(), Becomes.AIR); }
+
+    // Also covers spreading (grass, vines) and entity-formed blocks (frost walker, snow golems)
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onForm(BlockFormEvent e) { changed(e.getNewState()); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFade(BlockFadeEvent e) { changed(e.getNewState()); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFlow(BlockFromToEvent e) { changed(e.getToBlock(), Becomes.FLUID); }
+
+    // Falling blocks landing or lifting off, endermen, crops trampled
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChange(EntityChangeBlockEvent e) {
+        changed(e.getBlock(), e.getTo().isAir() ? Becomes.AIR : Becomes.NOT_AIR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGrow(StructureGrowEvent e) {
+        for (BlockState state : e.getBlocks()) changed(state);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e) {
+        for (Block b : e.blockList()) changed(b, Becomes.UNKNOWN);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e) {
+        for (Block b : e.blockList()) changed(b, Becomes.UNKNOWN);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent e) {
+        moved(e.getBlock(), e.getBlocks(), e.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent e) {
+        moved(e.getBlock(), e.getBlocks(), e.getDirection());
+    }
+
+    // Every moved block leaves its spot and lands one step further; the piston head covers the first spot
+    private void moved(Block piston, List<Block> blocks, BlockFace direction) {
+        changed(piston.getRelative(direction), Becomes.UNKNOWN);
+        for (Block b : blocks) {
+            changed(b, Becomes.UNKNOWN);
+            changed(b.getRelative(direction), Becomes.UNKNOWN);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import goat.thaw.system.util.LongIntHashMap;
+
+/**
+ * Histogram of a space's boundary faces by the kind of block on the other side
+ * (see TemperatureRegistry.kindOf), with the influence total kept alongside it.
+ * When a single block changes, only a few counts move, so temperature can be updated
+ * without rescanning the space. Frozen once it belongs to a Space, like VoxelSet.
+ */
+public final class BoundaryFaces {
+    private final LongIntHashMap counts;
+    private double total;
+    private int faces;
+    private boolean frozen;
+
+    public BoundaryFaces() {
+        this.counts = new LongIntHashMap();
+    }
+
+    private BoundaryFaces(LongIntHashMap counts, double total, int faces) {
+        this.counts = counts;
+        this.total = total;
+        this.faces = faces;
+    }
+
+    /** Adds (or with a negative count, removes) faces touching blocks of the given kind. */
+    public void add(int kind, int count) {
+        checkMutable();
+        if (count == 0) return;
+        int now = counts.get(kind, 0) + count;
+        if (now == 0) counts.remove(kind, 0);
+        else counts.put(kind, now, 0);
+        faces += count;
+        total += count * TemperatureRegistry.influenceOfKind(kind);
+    }
+
+    public void addAll(BoundaryFaces other) {
+        other.counts.forEach((kind, count) -> add((int) kind, count));
+    }
+
+    public void removeAll(BoundaryFaces other) {
+        other.counts.forEach((kind, count) -> add((int) kind, -count));
+    }
+
+    public int count(int kind) { return counts.get(kind, 0); }
+    public int kinds() { return counts.size(); }
+    public int faces() { return faces; }
+    public double total() { return total; }
+    public boolean isFrozen() { return frozen; }
+
+    public BoundaryFaces freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /** Mutable copy; cost is the number of distinct kinds, not faces. */
+    public BoundaryFaces copy() {
+        LongIntHashMap out = new LongIntHashMap();
+        counts.forEach((kind, count) -> out.put(kind, count, 0));
+        return new BoundaryFaces(out, total, faces);
+    }
+
+    /**
+     * Re-derives the total from the counts. add() keeps it up to date incrementally, which drifts by rounding
+     * over many +/- updates; SpaceManager calls this whenever it copies a space's histogram for an edit.
+     */
+    public void recomputeTotal() {
+        checkMutable();
+        double[] sum = new double[1];
+        counts.forEach((kind, count) -> sum[0] += count * TemperatureRegistry.influenceOfKind((int) kind));
+        total = sum[0];
+    }
+
+    public void forEach(KindConsumer action) {
+        counts.forEach((kind, count) -> action.accept((int) kind, count));
+    }
+
+    @FunctionalInterface
+    public interface KindConsumer {
+        void accept(int kind, int count);
+    }
+
+    private void checkMutable() {
+        if (frozen) throw new IllegalStateException("BoundaryFaces is frozen");
+    }
+}
@@ -0,0 +1,178 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.util.LongIntHashMap;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.HeightMap;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * "Is there anything but air above this block?" in O(1). Keeps, per chunk that has been asked about, the
+ * highest non-air Y of each of its 16x16 columns, read once from the server's WORLD_SURFACE heightmap
+ * and then patched from block events. Chunks are dropped when they unload.
+ *
+ * Explosions and pistons move many blocks at once; their columns are re-read from the heightmap on the
+ * next tick instead. Main thread only.
+ */
+public class SkyColumnCache implements Listener, BlockChangeDispatcher.Subscriber {
+    private final Plugin plugin;
+    private final Map<String, LongObjectHashMap<Columns>> worlds = new HashMap<>(); // world -> chunk -> column heights
+    private final Map<String, LongIntHashMap> refreshQueue = new HashMap<>(); // world -> block column -> 1
+    private boolean refreshScheduled = false;
+    private long versions = 0L;
+
+    private static final class Columns {
+        final short[] highest = new short[256]; // highest non-air Y per column, (z << 4 | x)
+        int top;      // max of highest
+        long version; // changes whenever a block in the chunk does
+    }
+
+    public SkyColumnCache(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void stop() {
+        worlds.clear();
+        refreshQueue.clear();
+    }
+
+    /** Y of the highest non-air block in the column (below the world's min height if there is none). */
+    public int highestBlockY(World world, int x, int z) {
+        Columns columns = columns(world, x >> 4, z >> 4, true);
+        if (columns == null) return world.getHighestBlockYAt(x, z, HeightMap.WORLD_SURFACE);
+        return columns.highest[index(x, z)];
+    }
+
+    /** True when nothing but air lies strictly above (x,y,z), i.e. the block sees the sky straight up. */
+    public boolean isOpenAbove(World world, int x, int y, int z) {
+        return highestBlockY(world, x, z) <= y;
+    }
+
+    /** Highest non-air Y anywhere in the chunk; Integer.MAX_VALUE if the chunk isn't loaded. */
+    public int chunkTop(World world, int cx, int cz) {
+        Columns columns = columns(world, cx, cz, true);
+        return columns == null ? Integer.MAX_VALUE : columns.top;
+    }
+
+    /**
+     * Changes whenever a block in the chunk changes (or the chunk is reloaded), so callers can cache
+     * results derived from a chunk's blocks. -1 if the chunk isn't loaded.
+     */
+    public long chunkVersion(World world, int cx, int cz) {
+        Columns columns = columns(world, cx, cz, true);
+        return columns == null ? -1L : columns.version;
+    }
+
+    // Built on first use; unloaded chunks aren't cached (asking the heightmap about them loads them anyway)
+    private Columns columns(World world, int cx, int cz, boolean build) {
+        LongObjectHashMap<Columns> chunks = worlds.get(world.getName());
+        Columns columns = chunks == null ? null : chunks.get(chunkKey(cx, cz));
+        if (columns != null || !build || !world.isChunkLoaded(cx, cz)) return columns;
+        columns = new Columns();
+        int bx = cx << 4, bz = cz << 4;
+        for (int lz = 0; lz < 16; lz++) {
+            for (int lx = 0; lx < 16; lx++) {
+                columns.highest[(lz << 4) | lx] = (short) world.getHighestBlockYAt(bx + lx, bz + lz, HeightMap.WORLD_SURFACE);
+            }
+        }
+        columns.top = top(columns.highest);
+        columns.version = ++versions;
+        worlds.computeIfAbsent(world.getName(), w -> new LongObjectHashMap<>()).put(chunkKey(cx, cz), columns);
+        return columns;
+    }
+
+    // A block at (x,y,z) is now air or not; only cached chunks are patched
+    private void set(World world, int x, int y, int z, boolean air) {
+        Columns columns = columns(world, x >> 4, z >> 4, false);
+        if (columns == null) return;
+        columns.version = ++versions;
+        int i = index(x, z);
+        int highest = columns.highest[i];
+        if (!air) {
+            if (y > highest) {
+                columns.highest[i] = (short) y;
+                columns.top = Math.max(columns.top, y);
+            }
+            return;
+        }
+        if (y != highest) return; // anything under the top block doesn't change what sees the sky
+        int yy = y - 1;
+        int min = world.getMinHeight();
+        while (yy >= min && world.getType(x, yy, z).isAir()) yy--;
+        columns.highest[i] = (short) yy;
+        if (highest == columns.top) columns.top = top(columns.highest);
+    }
+
+    // Explosions and pistons don't say what ends up where, so those columns are re-read instead
+    @Override
+    public void blockChanged(Block b, BlockChangeDispatcher.Becomes becomes) {
+        if (becomes == BlockChangeDispatcher.Becomes.UNKNOWN) refreshLater(b);
+        else set(b.getWorld(), b.getX(), b.getY(), b.getZ(), becomes == BlockChangeDispatcher.Becomes.AIR);
+    }
+
+    // Re-reads the column from the heightmap next tick, once the server has applied the change
+    private void refreshLater(Block b) {
+        if (columns(b.getWorld(), b.getX() >> 4, b.getZ() >> 4, false) == null) return;
+        refreshQueue.computeIfAbsent(b.getWorld().getName(), w -> new LongIntHashMap()).put(chunkKey(b.getX(), b.getZ()), 1, 0);
+        if (refreshScheduled) return;
+        refreshScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::refresh);
+    }
+
+    private void refresh() {
+        refreshScheduled = false;
+        refreshQueue.forEach((name, queued) -> {
+            World world = Bukkit.getWorld(name);
+            if (world == null) return;
+            queued.forEach((key, unused) -> {
+                int x = (int) (key >> 32), z = (int) key;
+                Columns columns = columns(world, x >> 4, z >> 4, false);
+                if (columns == null) return;
+                columns.highest[index(x, z)] = (short) world.getHighestBlockYAt(x, z, HeightMap.WORLD_SURFACE);
+                columns.top = top(columns.highest);
+                columns.version = ++versions;
+            });
+        });
+        refreshQueue.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        LongObjectHashMap<Columns> chunks = worlds.get(e.getWorld().getName());
+        if (chunks != null) chunks.remove(chunkKey(e.getChunk().getX(), e.getChunk().getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        worlds.remove(e.getWorld().getName());
+        refreshQueue.remove(e.getWorld().getName());
+    }
+
+    private static int top(short[] highest) {
+        int top = Integer.MIN_VALUE;
+        for (short h : highest) top = Math.max(top, h);
+        return top;
+    }
+
+    private static int index(int x, int z) {
+        return ((z & 15) << 4) | (x & 15);
+    }
+
+    private static long chunkKey(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+}
@@ -2,8 +2,6 @@ package goat.thaw.system.space;
 
 import org.bukkit.World;
 
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -11,40 +9,103 @@ import java.util.UUID;
 public class Space {
     private final UUID id;
     private final String worldName;
-    private final Set<BlockPos> blocks; // immutable snapshot
+    private final VoxelSet voxels; // frozen snapshot
+    private final Set<BlockPos> blocks; // read-only view over voxels
     private final double temperature; // computed internal temp proxy
     private final double totalInfluence; // sum of block influences touching internal air
     private final int airBlocks; // number of air cells in space
+    private final BoundaryFaces faces; // frozen face histogram, null for spaces saved before it existed
+    private final Bounds bounds; // null only for an empty space
 
     public Space(UUID id, String worldName, Set<BlockPos> blocks) {
         this(id, worldName, blocks, 0.0, 0.0, blocks.size());
     }
 
     public Space(UUID id, String worldName, Set<BlockPos> blocks, double temperature, double totalInfluence, int airBlocks) {
+        this(id, worldName, VoxelSet.of(blocks).freeze(), temperature, totalInfluence, airBlocks);
+    }
+
+    public Space(UUID id, String worldName, VoxelSet voxels, double temperature, double totalInfluence, int airBlocks) {
+        this(id, worldName, voxels, temperature, totalInfluence, airBlocks, null);
+    }
+
+    // Influence, air count and temperature all follow from the voxels and the face histogram
+    public Space(UUID id, String worldName, VoxelSet voxels, BoundaryFaces faces) {
+        this(id, worldName, voxels, SpaceManager.temperatureFor(faces.total(), voxels.size()), faces.total(), voxels.size(), faces);
+    }
+
+    private Space(UUID id, String worldName, VoxelSet voxels, double temperature, double totalInfluence, int airBlocks,
+                  BoundaryFaces faces) {
         this.id = id;
         this.worldName = worldName;
-        this.blocks = Collections.unmodifiableSet(new HashSet<>(blocks));
+        // Frozen sets are already immutable and can be shared between Space versions
+        this.voxels = voxels.isFrozen() ? voxels : voxels.copy().freeze();
+        this.blocks = this.voxels.asSet();
         this.temperature = temperature;
         this.totalInfluence = totalInfluence;
         this.airBlocks = airBlocks;
+        this.faces = faces == null || faces.isFrozen() ? faces : faces.copy().freeze();
+        this.bounds = this.voxels.bounds();
     }
 
     public UUID getId() { return id; }
     public String getWorldName() { return worldName; }
     public Set<BlockPos> getBlocks() { return blocks; }
+    public VoxelSet getVoxels() { return voxels; }
     public double getTemperature() { return temperature; }
     public double getTotalInfluence() { return totalInfluence; }
     public int getAirBlocks() { return airBlocks; }
+    public BoundaryFaces getFaces() { return faces; }
+    public Bounds getBounds() { return bounds; }
 
     public boolean contains(String world, int x, int y, int z) {
         if (!Objects.equals(worldName, world)) return false;
-        return blocks.contains(new BlockPos(x, y, z));
+        return voxels.contains(x, y, z);
     }
 
     public boolean contains(World world, int x, int y, int z) {
         return contains(world.getName(), x, y, z);
     }
 
+    // Inclusive axis-aligned block bounds
+    public static final class Bounds {
+        public final int minX, minY, minZ, maxX, maxY, maxZ;
+
+        public Bounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            this.minX = minX; this.minY = minY; this.minZ = minZ;
+            this.maxX = maxX; this.maxY = maxY; this.maxZ = maxZ;
+        }
+
+        public static Bounds ofChunk(int cx, int cz, int minY, int maxY) {
+            return new Bounds(cx << 4, minY, cz << 4, (cx << 4) + 15, maxY, (cz << 4) + 15);
+        }
+
+        public boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+
+        public boolean intersects(Bounds o) {
+            return minX <= o.maxX && maxX >= o.minX && minY <= o.maxY && maxY >= o.minY && minZ <= o.maxZ && maxZ >= o.minZ;
+        }
+
+        // Squared distance from a block position to the nearest block in the box; 0 inside
+        public double distanceSquared(int x, int y, int z) {
+            double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+            double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+            double dz = z < minZ ? minZ - z : (z > maxZ ? z - maxZ : 0);
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Bounds)) return false;
+            Bounds b = (Bounds) o;
+            return minX == b.minX && minY == b.minY && minZ == b.minZ && maxX == b.maxX && maxY == b.maxY && maxZ == b.maxZ;
+        }
+        @Override public int hashCode() { return Objects.hash(minX, minY, minZ, maxX, maxY, maxZ); }
+        @Override public String toString() { return minX + "," + minY + "," + minZ + " -> " + maxX + "," + maxY + "," + maxZ; }
+    }
+
     // 3D integer position
     public static class BlockPos {
         public final int x, y, z;
@@ -57,9 +118,18 @@ public class Space {
         }
         @Override public int hashCode() { return Objects.hash(x, y, z); }
         @Override public String toString() { return x + "," + y + "," + z; }
+        public long pack() { return pack(x, y, z); }
         public static BlockPos parse(String s) {
             String[] parts = s.split(",");
             return new BlockPos(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
         }
+
+        // Packed layout matches vanilla: 26 bits x | 26 bits z | 12 bits y (y covers -2048..2047)
+        public static long pack(int x, int y, int z) {
+            return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFFL);
+        }
+        public static int unpackX(long packed) { return (int) (packed >> 38); }
+        public static int unpackY(long packed) { return (int) (packed << 52 >> 52); }
+        public static int unpackZ(long packed) { return (int) (packed << 26 >> 38); }
     }
 }
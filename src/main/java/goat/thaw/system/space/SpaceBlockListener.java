@@ -1,18 +1,20 @@
 package goat.thaw.system.space;
 
 import goat.thaw.system.space.temperature.TemperatureRegistry;
-import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockFadeEvent;
 import org.bukkit.event.block.BlockFormEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.entity.Player;
 
-import java.util.Optional;
-
-import static goat.thaw.system.space.Space.BlockPos;
+import java.util.List;
 
 public class SpaceBlockListener implements Listener {
     private final SpaceManager manager;
@@ -23,95 +25,91 @@ public class SpaceBlockListener implements Listener {
         this.manager = manager;
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlace(BlockPlaceEvent e) {
         Player p = e.getPlayer();
-        World w = p.getWorld();
-        int x = p.getLocation().getBlockX();
-        int y = p.getLocation().getBlockY() + 1;
-        int z = p.getLocation().getBlockZ();
-
-        Bukkit.getLogger().info("[SpaceDebug] Block placed by " + p.getName() + " at " + x + "," + y + "," + z);
-
-        Optional<Space> opt = manager.findSpaceAt(w, x, y, z);
-        if (!opt.isPresent()) {
-            Bukkit.getLogger().info("[SpaceDebug] No existing space at this location.");
-            org.bukkit.block.Block placed = e.getBlockPlaced();
-            double influence = TemperatureRegistry.influence(placed);
-            Bukkit.getLogger().info("[SpaceDebug] Influence of placed block: " + influence);
-            if (influence > 0.0) {
-                long now = placed.getWorld().getFullTime();
-                long last = autoCreateCooldown.getOrDefault(p.getUniqueId(), 0L);
-                if (now - last >= AUTO_CREATE_COOLDOWN_TICKS) {
-                    org.bukkit.block.Block seed = findNearestAir(placed, 5);
-                    Bukkit.getLogger().info("[SpaceDebug] Nearest air seed: " + (seed == null ? "null" : seed.getX()+","+seed.getY()+","+seed.getZ()));
-                    if (seed != null) {
-                        autoCreateCooldown.put(p.getUniqueId(), now);
-                        manager.createFromFloodFillAt(p, seed, 32, new SpaceManager.FloodFillCallback() {
-                            @Override public void onComplete(Space space) {
-                                Bukkit.getLogger().info("[SpaceDebug] New space created: " + space.getAirBlocks() + " air blocks");
-                                p.sendMessage("New space created: air=" + space.getAirBlocks()
-                                        + ", influence=" + String.format("%.2f", space.getTotalInfluence())
-                                        + ", temp=" + String.format("%.1fF", space.getTemperature()));
-                            }
-                            @Override public void onUnsealed() {
-                                Bukkit.getLogger().info("[SpaceDebug] Space creation failed due to sky exposure.");
-                                p.sendMessage("Could not create space: not sealed (sky exposure).");
-                            }
-                        });
-                    }
-                }
-            }
+        Block placed = e.getBlockPlaced();
+        World w = placed.getWorld();
+
+        // Placing into a space only removes that one cell; the manager splits the space if it was cut in two
+        List<Space> changed = manager.fillVoxel(w, placed.getX(), placed.getY(), placed.getZ());
+        if (!changed.isEmpty()) {
+            Space updated = changed.get(0);
+            p.sendMessage("Space updated: air=" + updated.getAirBlocks()
+                    + ", influence=" + String.format("%.2f", updated.getTotalInfluence())
+                    + ", temp=" + String.format("%.1fF", updated.getTemperature()));
+            if (changed.size() > 1) p.sendMessage("Space split into " + changed.size() + " spaces.");
             return;
         }
 
-        Space current = opt.get();
-        Bukkit.getLogger().info("[SpaceDebug] Found existing space ID=" + current.getId());
-
-        java.util.ArrayDeque<org.bukkit.block.Block> stack = new java.util.ArrayDeque<>();
-        java.util.HashSet<String> visited = new java.util.HashSet<>();
-        java.util.HashSet<BlockPos> collected = new java.util.HashSet<>();
-        org.bukkit.block.Block seed = p.getLocation().getBlock().getRelative(0, 1, 0);
-        Bukkit.getLogger().info("[SpaceDebug] DFS seed = " + seed.getX() + "," + seed.getY() + "," + seed.getZ());
-        pushIfValid(w, stack, visited, seed);
-
-        int minY = w.getMinHeight();
-        int maxY = w.getMaxHeight();
-        int scanBudget = 200000;
+        double influence = TemperatureRegistry.influence(placed);
+        if (influence <= 0.0) return;
+        long now = w.getFullTime();
+        long last = autoCreateCooldown.getOrDefault(p.getUniqueId(), 0L);
+        if (now - last < AUTO_CREATE_COOLDOWN_TICKS) return;
+        Block seed = findNearestAir(placed, 5);
+        if (seed == null) return;
+        autoCreateCooldown.put(p.getUniqueId(), now);
+        manager.createFromFloodFillAt(p, seed, new SpaceManager.FloodFillCallback() {
+            @Override public void onComplete(Space space) {
+                p.sendMessage("New space created: air=" + space.getAirBlocks()
+                        + ", influence=" + String.format("%.2f", space.getTotalInfluence())
+                        + ", temp=" + String.format("%.1fF", space.getTemperature()));
+            }
+            @Override public void onUnsealed() {
+                p.sendMessage("Could not create space: not sealed (sky exposure).");
+            }
+        });
+    }
 
-        while (!stack.isEmpty() && scanBudget-- > 0) {
-            org.bukkit.block.Block b = stack.pop();
-            int bx = b.getX(), by = b.getY(), bz = b.getZ();
-            Bukkit.getLogger().info("[SpaceDebug] Visiting " + bx + "," + by + "," + bz + " type=" + b.getType());
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent e) {
+        Player p = e.getPlayer();
+        // Merges spaces joined by the new opening, or drops them if it lets the sky in
+        manager.openVoxel(e.getBlock(), new SpaceManager.FloodFillCallback() {
+            @Override public void onComplete(Space space) {
+                p.sendMessage("Space updated: air=" + space.getAirBlocks()
+                        + ", influence=" + String.format("%.2f", space.getTotalInfluence())
+                        + ", temp=" + String.format("%.1fF", space.getTemperature()));
+            }
+            @Override public void onUnsealed() {
+                p.sendMessage("Space unsealed (sky exposure) and removed.");
+            }
+        });
+    }
 
-            if (b.getWorld() != w) continue;
-            if (by < minY || by >= maxY) continue;
+    // Snow/ice forming, melting and burning change one block: patch the face histograms around it
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onForm(BlockFormEvent e) {
+        blockChanging(e.getBlock(), e.getNewState().getBlockData());
+    }
 
-            if (!b.getType().isAir()) continue; // skip non-air first!
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFade(BlockFadeEvent e) {
+        blockChanging(e.getBlock(), e.getNewState().getBlockData());
+    }
 
-            if (isSkyExposed(w, bx, by, bz)) {
-                Bukkit.getLogger().info("[SpaceDebug] Sky exposure found at " + bx + "," + by + "," + bz);
-                manager.deleteSpace(current.getId());
-                p.sendMessage("Space " + current.getId() + " unsealed and removed.");
-                return;
-            }
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBurn(BlockBurnEvent e) {
+        blockChanging(e.getBlock(), null);
+    }
 
-            collected.add(new BlockPos(bx, by, bz));
-            pushIfValid(w, stack, visited, b.getRelative(1, 0, 0));
-            pushIfValid(w, stack, visited, b.getRelative(-1, 0, 0));
-            pushIfValid(w, stack, visited, b.getRelative(0, 1, 0));
-            pushIfValid(w, stack, visited, b.getRelative(0, -1, 0));
-            pushIfValid(w, stack, visited, b.getRelative(0, 0, 1));
-            pushIfValid(w, stack, visited, b.getRelative(0, 0, -1));
+    // Called before the change is applied; next == null means the block becomes air
+    private void blockChanging(Block b, BlockData next) {
+        World w = b.getWorld();
+        int x = b.getX(), y = b.getY(), z = b.getZ();
+        boolean nextAir = next == null || next.getMaterial().isAir();
+        if (manager.spaceAt(w, x, y, z) != null) {
+            // e.g. a snow layer forming inside the room takes that cell out of the space
+            if (!nextAir) manager.fillVoxel(w, x, y, z, TemperatureRegistry.kindOf(next));
+            return;
         }
-
-        Bukkit.getLogger().info("[SpaceDebug] DFS complete. Collected air=" + collected.size());
-        SpaceManager.InfluenceResult inf = manager.computeInfluence(w, collected);
-        Space updated = new Space(current.getId(), current.getWorldName(), collected, inf.temperature, inf.totalInfluence, collected.size());
-        manager.overwriteSpace(updated);
-        p.sendMessage("Space updated: air=" + updated.getAirBlocks()
-                + ", influence=" + String.format("%.2f", updated.getTotalInfluence())
-                + ", temp=" + String.format("%.1fF", updated.getTemperature()));
+        if (b.getType().isAir()) return;
+        if (nextAir) {
+            manager.openVoxel(b, null);
+            return;
+        }
+        manager.replaceFace(w, x, y, z, TemperatureRegistry.kindOf(b), TemperatureRegistry.kindOf(next));
     }
 
     private org.bukkit.block.Block findNearestAir(org.bukkit.block.Block origin, int maxRadius) {
@@ -136,45 +134,4 @@ public class SpaceBlockListener implements Listener {
         }
         return null;
     }
-
-    @EventHandler
-    public void onForm(BlockFormEvent e) {
-        World w = e.getBlock().getWorld();
-        int x = e.getBlock().getX();
-        int y = e.getBlock().getY();
-        int z = e.getBlock().getZ();
-        // If this block is inside a space, recompute that space
-        Optional<Space> opt = manager.findSpaceAt(w, x, y, z);
-        if (!opt.isPresent()) return;
-        Space space = opt.get();
-        SpaceManager.InfluenceResult inf = manager.computeInfluence(w, space.getBlocks());
-        Space updated = new Space(space.getId(), space.getWorldName(), space.getBlocks(), inf.temperature, inf.totalInfluence, space.getBlocks().size());
-        manager.overwriteSpace(updated);
-    }
-
-    private void pushIfValid(World world, java.util.Deque<org.bukkit.block.Block> stack, java.util.Set<String> visited, org.bukkit.block.Block n) {
-        if (n.getWorld() != world) return;
-        int y = n.getY();
-        if (y < world.getMinHeight() || y >= world.getMaxHeight()) return;
-        String key = world.getName() + "|" + n.getX() + "," + y + "," + n.getZ();
-        if (visited.add(key)) {
-            stack.push(n);
-            Bukkit.getLogger().info("[SpaceDebug] Pushed neighbor " + n.getX() + "," + y + "," + n.getZ());
-        }
-    }
-
-    private boolean isSkyExposed(World world, int x, int y, int z) {
-        Bukkit.getLogger().info("[SpaceDebug] isSkyExposed check at " + x + "," + y + "," + z);
-        int top = world.getMaxHeight();
-        for (int yy = y + 1; yy < top; yy++) {
-            String type = world.getBlockAt(x, yy, z).getType().toString();
-            Bukkit.getLogger().info("[SpaceDebug]   Scan at Y=" + yy + " type=" + type);
-            if (!world.getBlockAt(x, yy, z).getType().isAir()) {
-                Bukkit.getLogger().info("[SpaceDebug]   Blocked at Y=" + yy);
-                return false;
-            }
-        }
-        Bukkit.getLogger().info("[SpaceDebug]   No blockers, open to sky!");
-        return true;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package goat.thaw.system.space;
+
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/** Keeps only spaces around loaded terrain in memory; see SpaceManager.chunkLoaded/chunkUnloaded. */
+public class SpaceChunkListener implements Listener {
+    private final SpaceManager manager;
+
+    public SpaceChunkListener(SpaceManager manager) {
+        this.manager = manager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent e) {
+        Chunk c = e.getChunk();
+        manager.chunkLoaded(e.getWorld(), c.getX(), c.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        Chunk c = e.getChunk();
+        manager.chunkUnloaded(e.getWorld(), c.getX(), c.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        manager.worldUnloaded(e.getWorld());
+    }
+}
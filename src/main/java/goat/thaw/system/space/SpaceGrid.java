@@ -0,0 +1,149 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.Bounds;
+import goat.thaw.system.util.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Broadphase over space bounding boxes: each world is bucketed into 64x64 block columns, and a space is
+ * listed in every column its box overlaps. Range and chunk queries only visit the columns they cover, and
+ * nearest-space searches walk outward ring by ring and stop once no closer box can exist.
+ * Main thread only, maintained by SpaceManager alongside the voxel index.
+ */
+public final class SpaceGrid {
+    private static final int CELL_SHIFT = 6;
+    private static final int CELL = 1 << CELL_SHIFT;
+
+    private final Map<String, LongObjectHashMap<List<Space>>> worlds = new HashMap<>();
+
+    void add(Space s) {
+        Bounds b = s.getBounds();
+        if (b == null) return;
+        LongObjectHashMap<List<Space>> cells = worlds.computeIfAbsent(s.getWorldName(), w -> new LongObjectHashMap<>());
+        for (int gx = b.minX >> CELL_SHIFT; gx <= b.maxX >> CELL_SHIFT; gx++) {
+            for (int gz = b.minZ >> CELL_SHIFT; gz <= b.maxZ >> CELL_SHIFT; gz++) {
+                long key = cellKey(gx, gz);
+                List<Space> list = cells.get(key);
+                if (list == null) {
+                    list = new ArrayList<>(2);
+                    cells.put(key, list);
+                }
+                list.add(s);
+            }
+        }
+    }
+
+    void remove(Space s) {
+        Bounds b = s.getBounds();
+        if (b == null) return;
+        LongObjectHashMap<List<Space>> cells = worlds.get(s.getWorldName());
+        if (cells == null) return;
+        for (int gx = b.minX >> CELL_SHIFT; gx <= b.maxX >> CELL_SHIFT; gx++) {
+            for (int gz = b.minZ >> CELL_SHIFT; gz <= b.maxZ >> CELL_SHIFT; gz++) {
+                long key = cellKey(gx, gz);
+                List<Space> list = cells.get(key);
+                if (list == null) continue;
+                list.removeIf(o -> o.getId().equals(s.getId()));
+                if (list.isEmpty()) cells.remove(key);
+            }
+        }
+        if (cells.isEmpty()) worlds.remove(s.getWorldName());
+    }
+
+    // Same box: swap the entry in place instead of touching every column twice
+    void replace(Space prev, Space now) {
+        if (prev.getWorldName().equals(now.getWorldName()) && prev.getBounds() != null
+                && prev.getBounds().equals(now.getBounds())) {
+            LongObjectHashMap<List<Space>> cells = worlds.get(now.getWorldName());
+            Bounds b = now.getBounds();
+            for (int gx = b.minX >> CELL_SHIFT; gx <= b.maxX >> CELL_SHIFT; gx++) {
+                for (int gz = b.minZ >> CELL_SHIFT; gz <= b.maxZ >> CELL_SHIFT; gz++) {
+                    List<Space> list = cells == null ? null : cells.get(cellKey(gx, gz));
+                    if (list == null) continue;
+                    for (int i = 0; i < list.size(); i++) {
+                        if (list.get(i).getId().equals(now.getId())) list.set(i, now);
+                    }
+                }
+            }
+            return;
+        }
+        remove(prev);
+        add(now);
+    }
+
+    /** Spaces whose bounding box intersects the query box (boxes only; voxels are not tested). */
+    public List<Space> intersecting(String world, Bounds query) {
+        List<Space> out = new ArrayList<>();
+        LongObjectHashMap<List<Space>> cells = worlds.get(world);
+        if (cells == null) return out;
+        int qgx = query.minX >> CELL_SHIFT, qgz = query.minZ >> CELL_SHIFT;
+        for (int gx = qgx; gx <= query.maxX >> CELL_SHIFT; gx++) {
+            for (int gz = qgz; gz <= query.maxZ >> CELL_SHIFT; gz++) {
+                List<Space> list = cells.get(cellKey(gx, gz));
+                if (list == null) continue;
+                for (Space s : list) {
+                    Bounds b = s.getBounds();
+                    if (!b.intersects(query)) continue;
+                    // A space spans several columns; report it only from the first column the overlap starts in
+                    if (gx != Math.max(qgx, b.minX >> CELL_SHIFT) || gz != Math.max(qgz, b.minZ >> CELL_SHIFT)) continue;
+                    out.add(s);
+                }
+            }
+        }
+        return out;
+    }
+
+    public List<Space> inChunk(String world, int cx, int cz) {
+        return intersecting(world, Bounds.ofChunk(cx, cz, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Space whose box is closest to (x,y,z) among those accepted by the filter, within maxDistance blocks;
+     * null if none. Distance is to the box, so a point inside a box counts as distance 0.
+     */
+    public Space nearest(String world, int x, int y, int z, int maxDistance, Predicate<Space> filter) {
+        LongObjectHashMap<List<Space>> cells = worlds.get(world);
+        if (cells == null) return null;
+        int cgx = x >> CELL_SHIFT, cgz = z >> CELL_SHIFT;
+        int maxRing = (maxDistance >> CELL_SHIFT) + 1;
+        double limit = (double) maxDistance * maxDistance;
+        Space best = null;
+        double bestDist = Double.MAX_VALUE;
+        Set<UUID> seen = new HashSet<>();
+        for (int r = 0; r <= maxRing; r++) {
+            // Every column in ring r is at least (r - 1) columns away horizontally
+            double ringMin = r <= 1 ? 0.0 : (double) (r - 1) * CELL;
+            if (ringMin * ringMin > Math.min(bestDist, limit)) break;
+            for (int gx = cgx - r; gx <= cgx + r; gx++) {
+                boolean edgeX = gx == cgx - r || gx == cgx + r;
+                for (int gz = cgz - r; gz <= cgz + r; gz += edgeX ? 1 : 2 * r) {
+                    List<Space> list = cells.get(cellKey(gx, gz));
+                    if (list != null) {
+                        for (Space s : list) {
+                            if (!seen.add(s.getId())) continue;
+                            double d = s.getBounds().distanceSquared(x, y, z);
+                            if (d < bestDist && d <= limit && (filter == null || filter.test(s))) {
+                                best = s;
+                                bestDist = d;
+                            }
+                        }
+                    }
+                    if (r == 0) break; // the centre column is its own ring
+                }
+            }
+        }
+        return best;
+    }
+
+    private static long cellKey(int gx, int gz) {
+        return ((long) gx << 32) | (gz & 0xFFFFFFFFL);
+    }
+}
@@ -1,7 +1,13 @@
 package goat.thaw.system.space;
 
 import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.flood.SnapshotFloodFill;
+import goat.thaw.system.space.storage.SpaceStore;
 import goat.thaw.system.space.temperature.TemperatureRegistry;
+import goat.thaw.system.util.LongArrayStack;
+import goat.thaw.system.util.LongIntHashMap;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Chunk;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -11,27 +17,249 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class SpaceManager {
     private final Plugin plugin;
     private final Map<UUID, Space> spaces = new HashMap<>();
-    // Fast lookup index: world|x,y,z -> space id
-    private final Map<String, UUID> index = new HashMap<>();
-
-    private File dataFile;
-
-    public SpaceManager(Plugin plugin) {
+    // Fast lookup index: world -> packed x,y,z -> space handle (slot in handleTable)
+    private final Map<String, LongIntHashMap> index = new HashMap<>();
+    private final Map<UUID, Integer> handles = new HashMap<>();
+    private Space[] handleTable = new Space[64];
+    private int[] freeHandles = new int[16];
+    private int freeCount = 0;
+    private int nextHandle = 0;
+
+    private SpaceStore store;
+    private final SkyColumnCache sky; // column heights, the same sky test the other subsystems use
+    private final AirGraph air; // answers "does this air reach the sky?" without flooding, near players
+    // Bounding-box broadphase for region, chunk and nearest-space queries
+    private final SpaceGrid grid = new SpaceGrid();
+
+    // Read-only view for other threads: rebuilt from the ids changed this tick and swapped in at the end of it
+    private volatile SpaceSnapshot snapshot = SpaceSnapshot.EMPTY;
+    private final Map<UUID, Space> unpublished = new HashMap<>(); // id -> current version, null once gone
+    private boolean publishScheduled = false;
+
+    // Residency: a space is paged in when any chunk column it covers loads, and evicted once none are loaded.
+    // The first chunk of a region reads the whole region; after that the coverage index says which stored
+    // spaces touch a chunk, and only the missing ones are read back
+    private final Map<String, LongIntHashMap> regionsRead = new HashMap<>(); // world -> region -> 1
+    private final Map<String, LongObjectHashMap<Set<UUID>>> stored = new HashMap<>(); // world -> chunk -> stored spaces touching it
+    private final Set<UUID> loading = new HashSet<>(); // ids with a read in flight
+    private final Set<UUID> deletedWhileLoading = new HashSet<>();
+    private int pendingLoads = 0;
+
+    // Flood fills run here against chunk snapshots; results are committed on the main thread.
+    // A fill collecting more air than spaces.max-flood-voxels (config.yml) gives up as unsealed
+    private static final int DEFAULT_MAX_FLOOD_VOXELS = 2_000_000;
+    private final int maxFloodVoxels;
+    // Cells the local connectivity search may visit after a placement before labeling the pieces in full
+    private static final int FILL_SEARCH_BUDGET = 50_000;
+    // New air a broken block may open up before the mapping is handed to the async flood fill
+    private static final int OPEN_FLOOD_BUDGET = 8_192;
+    private static final int AIR_KIND = -1;
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory() {
+                private final AtomicInteger n = new AtomicInteger();
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Thaw-SpaceWorker-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    // Section-parallel mode for cavern-sized fills; the worker above coordinates, these flood
+    private final ForkJoinPool floodPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("Thaw-FloodFill-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+
+    public SpaceManager(Plugin plugin, SkyColumnCache sky, AirGraph air) {
         this.plugin = plugin;
+        this.sky = sky;
+        this.air = air;
+        this.maxFloodVoxels = Math.max(1, plugin.getConfig().getInt("spaces.max-flood-voxels", DEFAULT_MAX_FLOOD_VOXELS));
     }
 
+    /**
+     * Opens the store and pages in spaces for chunks that are already loaded (usually none, since the
+     * plugin loads at STARTUP). Everything else arrives through chunkLoaded as terrain loads.
+     */
     public void load() {
         if (!plugin.getDataFolder().exists()) plugin.getDataFolder().mkdirs();
-        dataFile = new File(plugin.getDataFolder(), "spaces.yml");
-        if (!dataFile.exists()) return;
+        store = new SpaceStore(new File(plugin.getDataFolder(), "spaces"), plugin.getLogger());
+        int migrated = migrateLegacyYaml(new File(plugin.getDataFolder(), "spaces.yml"));
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                if (!markRead(world, chunk.getX(), chunk.getZ())) continue;
+                for (Space s : store.loadRegion(world.getName(), chunk.getX() >> 5, chunk.getZ() >> 5).join()) {
+                    if (spaces.containsKey(s.getId())) continue;
+                    cover(s);
+                    addToIndex(s);
+                }
+            }
+        }
+        // Migrated spaces were registered wholesale; keep only those standing in loaded terrain
+        for (Space s : new ArrayList<>(spaces.values())) {
+            if (!isResident(s, Integer.MIN_VALUE, Integer.MIN_VALUE)) evict(s);
+        }
+        if (migrated > 0) plugin.getLogger().info("Migrated " + migrated + " spaces from spaces.yml.");
+        publish();
+        plugin.getLogger().info("Loaded " + spaces.size() + " spaces around loaded terrain.");
+    }
+
+    /** ChunkLoadEvent: pages in the stored spaces touching this chunk that aren't resident yet. */
+    public void chunkLoaded(World world, int cx, int cz) {
+        if (markRead(world, cx, cz)) {
+            // First chunk of the region: read it whole, which also fills the coverage index for its chunks
+            pageIn(world, store.loadRegion(world.getName(), cx >> 5, cz >> 5), null, cx, cz);
+            return;
+        }
+        LongObjectHashMap<Set<UUID>> chunks = stored.get(world.getName());
+        Set<UUID> ids = chunks == null ? null : chunks.get(columnKey(cx, cz));
+        if (ids == null) return;
+        Set<UUID> missing = null;
+        for (UUID id : ids) {
+            if (spaces.containsKey(id) || !loading.add(id)) continue;
+            if (missing == null) missing = new HashSet<>();
+            missing.add(id);
+        }
+        if (missing != null) pageIn(world, store.loadSpaces(world.getName(), cx >> 5, cz >> 5, missing), missing, cx, cz);
+    }
+
+    /** ChunkUnloadEvent: evicts spaces none of whose chunks stay loaded. */
+    public void chunkUnloaded(World world, int cx, int cz) {
+        for (Space s : grid.inChunk(world.getName(), cx, cz)) {
+            // The unloading chunk still reports loaded during the event, so it is skipped explicitly
+            if (!isResident(s, cx, cz)) evict(s);
+        }
+    }
+
+    /** WorldUnloadEvent: drops every resident space of that world. */
+    public void worldUnloaded(World world) {
+        regionsRead.remove(world.getName());
+        stored.remove(world.getName());
+        for (Space s : new ArrayList<>(spaces.values())) {
+            if (s.getWorldName().equals(world.getName())) evict(s);
+        }
+    }
+
+    // True the first time a chunk of this region is seen
+    private boolean markRead(World world, int cx, int cz) {
+        LongIntHashMap regions = regionsRead.computeIfAbsent(world.getName(), w -> new LongIntHashMap());
+        long rk = columnKey(cx >> 5, cz >> 5);
+        if (regions.containsKey(rk)) return false;
+        regions.put(rk, 1, 0);
+        return true;
+    }
 
-        FileConfiguration cfg = YamlConfiguration.loadConfiguration(dataFile);
+    // requested: the ids asked for by loadSpaces (null for a whole region), read from chunk (cx, cz)
+    private void pageIn(World world, CompletableFuture<List<Space>> read, Set<UUID> requested, int cx, int cz) {
+        pendingLoads++;
+        read.whenComplete((loaded, error) -> {
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (requested != null) loading.removeAll(requested);
+                if (error != null) {
+                    plugin.getLogger().warning("Failed to load spaces around chunk " + cx + "," + cz + ": " + error.getMessage());
+                } else {
+                    for (Space s : loaded) {
+                        if (requested != null) requested.remove(s.getId());
+                        // Already resident (its version is newer and already covered), or deleted while the read was queued
+                        if (spaces.containsKey(s.getId()) || deletedWhileLoading.contains(s.getId())) continue;
+                        cover(s);
+                        if (isResident(s, Integer.MIN_VALUE, Integer.MIN_VALUE)) addToIndex(s);
+                        else store.evict(s); // its chunks unloaded again before the read finished
+                    }
+                    // The index promised these but the store no longer has them
+                    if (requested != null && !requested.isEmpty()) {
+                        LongObjectHashMap<Set<UUID>> chunks = stored.get(world.getName());
+                        Set<UUID> ids = chunks == null ? null : chunks.get(columnKey(cx, cz));
+                        if (ids != null) {
+                            ids.removeAll(requested);
+                            if (ids.isEmpty()) chunks.remove(columnKey(cx, cz));
+                        }
+                    }
+                }
+                if (--pendingLoads == 0) deletedWhileLoading.clear();
+            });
+        });
+    }
+
+    // Coverage index upkeep: every stored version of a space is listed under the chunk columns it covers
+    private void cover(Space s) {
+        LongObjectHashMap<Set<UUID>> chunks = stored.computeIfAbsent(s.getWorldName(), w -> new LongObjectHashMap<>());
+        columnsOf(s.getVoxels()).forEach((key, unused) -> {
+            Set<UUID> ids = chunks.get(key);
+            if (ids == null) chunks.put(key, ids = new HashSet<>(4));
+            ids.add(s.getId());
+        });
+    }
+
+    private void uncover(Space s) {
+        LongObjectHashMap<Set<UUID>> chunks = stored.get(s.getWorldName());
+        if (chunks == null) return;
+        columnsOf(s.getVoxels()).forEach((key, unused) -> {
+            Set<UUID> ids = chunks.get(key);
+            if (ids != null && ids.remove(s.getId()) && ids.isEmpty()) chunks.remove(key);
+        });
+    }
+
+    // Evicted spaces stay on disk untouched; their queued writes still land before any later read
+    private void evict(Space s) {
+        spaces.remove(s.getId());
+        Integer handle = handles.remove(s.getId());
+        if (handle != null) {
+            unindex(s, handle);
+            releaseHandle(handle);
+        }
+        grid.remove(s);
+        changed(s.getId(), null);
+        store.evict(s);
+    }
+
+    // True while any chunk column the space covers, other than (skipX, skipZ), is loaded
+    private boolean isResident(Space s, int skipX, int skipZ) {
+        World world = Bukkit.getWorld(s.getWorldName());
+        if (world == null) return false;
+        boolean[] loaded = new boolean[1];
+        columnsOf(s.getVoxels()).forEach((key, unused) -> {
+            if (loaded[0]) return;
+            int cx = (int) (key >> 32), cz = (int) key;
+            if (cx == skipX && cz == skipZ) return;
+            if (world.isChunkLoaded(cx, cz)) loaded[0] = true;
+        });
+        return loaded[0];
+    }
+
+    private static LongIntHashMap columnsOf(VoxelSet voxels) {
+        LongIntHashMap columns = new LongIntHashMap();
+        voxels.forEachSection((sx, sy, sz, bits) -> columns.put(columnKey(sx, sz), 1, 0));
+        return columns;
+    }
+
+    private static long columnKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    // One-time import of the old single-file YAML format into the region store
+    private int migrateLegacyYaml(File legacy) {
+        if (!legacy.exists()) return 0;
+        FileConfiguration cfg = YamlConfiguration.loadConfiguration(legacy);
         int count = 0;
         for (String idStr : cfg.getKeys(false)) {
             try {
@@ -39,82 +267,408 @@ public class SpaceManager {
                 String world = cfg.getString(idStr + ".world");
                 List<String> coords = cfg.getStringList(idStr + ".blocks");
                 if (world == null || coords == null || coords.isEmpty()) continue;
-                Set<BlockPos> set = new HashSet<>();
-                for (String s : coords) set.add(BlockPos.parse(s));
+                VoxelSet set = new VoxelSet();
+                for (String s : coords) {
+                    BlockPos p = BlockPos.parse(s);
+                    set.add(p.x, p.y, p.z);
+                }
                 double temp = cfg.getDouble(idStr + ".temperature", 0.0);
                 double infl = cfg.getDouble(idStr + ".totalInfluence", 0.0);
                 int air = cfg.getInt(idStr + ".airBlocks", set.size());
-                Space space = new Space(id, world, set, temp, infl, air);
-                register(space);
+                register(new Space(id, world, set, temp, infl, air));
                 count++;
             } catch (Exception ignored) { }
         }
-        plugin.getLogger().info("Loaded " + count + " spaces.");
+        store.flush();
+        if (!legacy.renameTo(new File(legacy.getParentFile(), "spaces.yml.migrated"))) {
+            plugin.getLogger().warning("Could not rename " + legacy.getName() + " after migrating spaces.");
+        }
+        return count;
     }
 
+    /**
+     * Every register/overwriteSpace/deleteSpace is journaled asynchronously as it happens;
+     * this only blocks until those writes have reached disk.
+     */
     public void save() {
-        if (dataFile == null) dataFile = new File(plugin.getDataFolder(), "spaces.yml");
-        YamlConfiguration cfg = new YamlConfiguration();
-        for (Space s : spaces.values()) {
-            String id = s.getId().toString();
-            cfg.set(id + ".world", s.getWorldName());
-            List<String> list = new ArrayList<>(s.getBlocks().size());
-            for (BlockPos p : s.getBlocks()) list.add(p.toString());
-            cfg.set(id + ".blocks", list);
-            cfg.set(id + ".temperature", s.getTemperature());
-            cfg.set(id + ".totalInfluence", s.getTotalInfluence());
-            cfg.set(id + ".airBlocks", s.getAirBlocks());
-        }
-        try {
-            cfg.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save spaces: " + e.getMessage());
-        }
+        if (store != null) store.flush();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        floodPool.shutdownNow();
+        if (store != null) store.close();
     }
 
+    // Resident spaces only: those covering at least one loaded chunk
     public Collection<Space> getSpaces() { return Collections.unmodifiableCollection(spaces.values()); }
 
+    /** Spaces whose bounding box intersects the given box. */
+    public List<Space> spacesIntersecting(World world, Space.Bounds box) {
+        return grid.intersecting(world.getName(), box);
+    }
+
+    /** Spaces whose bounding box overlaps the chunk column. */
+    public List<Space> spacesInChunk(World world, int cx, int cz) {
+        return grid.inChunk(world.getName(), cx, cz);
+    }
+
+    /** Closest space (by bounding box) within maxDistance blocks that passes the filter (may be null); null if none. */
+    public Space nearestSpace(World world, int x, int y, int z, int maxDistance, Predicate<Space> filter) {
+        return grid.nearest(world.getName(), x, y, z, maxDistance, filter);
+    }
+
+    /**
+     * Consistent, immutable view of the resident spaces for async readers (no locking needed). It trails the
+     * main-thread state by at most a tick: changes are batched and published at the end of the tick they happen in.
+     */
+    public SpaceSnapshot snapshot() { return snapshot; }
+
+    private void changed(UUID id, Space now) {
+        unpublished.put(id, now);
+        if (publishScheduled || !plugin.isEnabled()) return;
+        publishScheduled = true;
+        Bukkit.getScheduler().runTask(plugin, this::publish);
+    }
+
+    private void publish() {
+        publishScheduled = false;
+        if (unpublished.isEmpty()) return;
+        snapshot = snapshot.with(unpublished);
+        unpublished.clear();
+    }
+
     public Space get(UUID id) { return spaces.get(id); }
 
     public Optional<Space> findSpaceAt(World world, int x, int y, int z) {
-        UUID id = index.get(key(world.getName(), x, y, z));
-        if (id == null) return Optional.empty();
-        return Optional.ofNullable(spaces.get(id));
+        return Optional.ofNullable(spaceAt(world, x, y, z));
+    }
+
+    // Allocation-free variant of findSpaceAt for per-move/per-tick callers; null when outside any space.
+    public Space spaceAt(World world, int x, int y, int z) {
+        LongIntHashMap worldIndex = index.get(world.getName());
+        if (worldIndex == null) return null;
+        int handle = worldIndex.get(BlockPos.pack(x, y, z), -1);
+        return handle < 0 ? null : handleTable[handle];
     }
 
     public void deleteSpace(UUID id) {
         Space s = spaces.remove(id);
         if (s == null) return;
-        // remove from index
-        for (BlockPos p : s.getBlocks()) {
-            index.remove(key(s.getWorldName(), p.x, p.y, p.z));
+        Integer handle = handles.remove(id);
+        if (handle != null) {
+            unindex(s, handle);
+            releaseHandle(handle);
         }
-        save();
+        grid.remove(s);
+        changed(id, null);
+        if (pendingLoads > 0) deletedWhileLoading.add(id);
+        uncover(s);
+        store.delete(s);
     }
 
     public void overwriteSpace(Space updated) {
-        // Replace existing and rebuild index entries for this id
+        // Replace existing and patch index entries for this id, keeping its handle
         Space prev = spaces.put(updated.getId(), updated);
-        if (prev != null) {
-            for (BlockPos p : prev.getBlocks()) {
-                index.remove(key(prev.getWorldName(), p.x, p.y, p.z));
+        int handle = handleFor(updated.getId());
+        handleTable[handle] = updated;
+        if (prev != null && prev.getVoxels() == updated.getVoxels()) {
+            // Only temperature/faces changed; every index entry already points at this handle
+        } else if (prev != null && prev.getWorldName().equals(updated.getWorldName())) {
+            // Versions share untouched sections, so both diffs only cost the sections that changed
+            unindex(updated.getWorldName(), VoxelSet.difference(prev.getVoxels(), updated.getVoxels()), handle);
+            indexAll(updated.getWorldName(), VoxelSet.difference(updated.getVoxels(), prev.getVoxels()), handle);
+        } else {
+            if (prev != null) unindex(prev, handle);
+            indexAll(updated, handle);
+        }
+        if (prev != null) grid.replace(prev, updated);
+        else grid.add(updated);
+        if (prev == null || prev.getVoxels() != updated.getVoxels()) {
+            if (prev != null) uncover(prev);
+            cover(updated);
+        }
+        changed(updated.getId(), updated);
+        store.putChange(prev, updated);
+    }
+
+    /**
+     * A block now fills (x,y,z). If that cell was part of a space it is dropped from the space, any pocket
+     * it sealed off becomes a space of its own, and the face histogram is patched around the cell.
+     * Cost follows the size of the change (and of any pocket), not the size of the room.
+     * Returns the updated space followed by any split-off pockets; empty if no space was affected.
+     */
+    public List<Space> fillVoxel(World world, int x, int y, int z) {
+        return fillVoxel(world, x, y, z, neighborKind(world, x, y, z), false);
+    }
+
+    /** Same, for a block that is about to be set (its kind can't be read from the world yet). */
+    public List<Space> fillVoxel(World world, int x, int y, int z, int placedKind) {
+        return fillVoxel(world, x, y, z, placedKind, true);
+    }
+
+    private List<Space> fillVoxel(World world, int x, int y, int z, int placedKind, boolean pending) {
+        Space current = spaceAt(world, x, y, z);
+        if (current == null) return Collections.emptyList();
+        VoxelSet rest = current.getVoxels().copy();
+        rest.remove(x, y, z);
+        if (rest.isEmpty()) {
+            deleteSpace(current.getId());
+            return Collections.emptyList();
+        }
+
+        // The cell's outer faces stop counting; every space neighbour gains a face onto the new block
+        BoundaryFaces faces = facesOf(world, current);
+        for (int d = 0; d < 6; d++) {
+            int nx = x + DX[d], ny = y + DY[d], nz = z + DZ[d];
+            if (rest.contains(nx, ny, nz)) {
+                if (placedKind != AIR_KIND) faces.add(placedKind, 1);
+                continue;
             }
+            int kind = neighborKind(world, nx, ny, nz);
+            if (kind != AIR_KIND) faces.add(kind, -1);
         }
-        for (BlockPos p : updated.getBlocks()) {
-            index.put(key(updated.getWorldName(), p.x, p.y, p.z), updated.getId());
+
+        List<Space> result = new ArrayList<>();
+        List<Space> pockets = new ArrayList<>();
+        for (VoxelSet pocket : VoxelConnectivity.detach(rest, x, y, z, FILL_SEARCH_BUDGET)) {
+            // Pieces never share a face, so the histogram splits cleanly between them
+            BoundaryFaces pf = computeFaces(world, pocket, pending, x, y, z, placedKind);
+            faces.removeAll(pf);
+            pockets.add(new Space(UUID.randomUUID(), current.getWorldName(), pocket, pf));
         }
-        save();
+
+        Space updated = new Space(current.getId(), current.getWorldName(), rest, faces);
+        overwriteSpace(updated);
+        result.add(updated);
+        for (Space pocket : pockets) result.add(register(pocket));
+        return result;
     }
 
-    public Space register(Space s) {
-        spaces.put(s.getId(), s);
-        for (BlockPos p : s.getBlocks()) {
-            index.put(key(s.getWorldName(), p.x, p.y, p.z), s.getId());
+    /**
+     * A non-air block outside any space turned into another non-air block (water froze, snow got deeper).
+     * Only the faces spaces have onto that block change: O(1) per bordering space.
+     */
+    public void replaceFace(World world, int x, int y, int z, int oldKind, int newKind) {
+        if (oldKind == newKind || spaceAt(world, x, y, z) != null) return;
+        Map<UUID, Integer> touching = null;
+        for (int d = 0; d < 6; d++) {
+            Space s = spaceAt(world, x + DX[d], y + DY[d], z + DZ[d]);
+            if (s == null) continue;
+            if (touching == null) touching = new HashMap<>(4);
+            touching.merge(s.getId(), 1, Integer::sum);
+        }
+        if (touching == null) return;
+        for (Map.Entry<UUID, Integer> e : touching.entrySet()) {
+            Space s = spaces.get(e.getKey());
+            BoundaryFaces faces = facesOf(world, s);
+            if (oldKind != AIR_KIND) faces.add(oldKind, -e.getValue());
+            if (newKind != AIR_KIND) faces.add(newKind, e.getValue());
+            overwriteSpace(new Space(s.getId(), s.getWorldName(), s.getVoxels(), faces));
+        }
+    }
+
+    /**
+     * Call while a block that is about to become air is still in place (BlockBreakEvent). If it borders a
+     * space, the air it opens up is mapped next tick: only the new air is flooded, stopping at cells that
+     * already belong to a space. Reaching sky deletes every space it touched (onUnsealed); otherwise the
+     * touched spaces and the new air are merged into the largest of them (onComplete).
+     */
+    public void openVoxel(Block block, FloodFillCallback callback) {
+        World world = block.getWorld();
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        if (spaceAt(world, x, y, z) != null) return;
+        // Spaces already hold every air cell next to them, so only a block bordering one can change anything
+        if (spaceAt(world, x + 1, y, z) == null && spaceAt(world, x - 1, y, z) == null
+                && spaceAt(world, x, y + 1, z) == null && spaceAt(world, x, y - 1, z) == null
+                && spaceAt(world, x, y, z + 1) == null && spaceAt(world, x, y, z - 1) == null) return;
+        int removedKind = TemperatureRegistry.kindOf(block);
+        Bukkit.getScheduler().runTask(plugin, () -> openVoxel(world, x, y, z, removedKind, callback));
+    }
+
+    private void openVoxel(World world, int x, int y, int z, int removedKind, FloodFillCallback callback) {
+        if (spaceAt(world, x, y, z) != null || !world.getBlockAt(x, y, z).getType().isAir()) return;
+        if (air.reach(world, x, y, z) == AirGraph.Reach.SKY) {
+            Map<UUID, Space> touched = new HashMap<>();
+            collectTouching(world, x, y, z, touched);
+            for (Space s : touched.values()) deleteSpace(s.getId());
+            if (callback != null) callback.onUnsealed();
+            return;
+        }
+
+        int minY = world.getMinHeight(), maxY = world.getMaxHeight();
+        VoxelSet fresh = new VoxelSet();
+        Map<UUID, Space> touched = new HashMap<>();
+        LongArrayStack stack = new LongArrayStack();
+        BoundaryFaces freshFaces = new BoundaryFaces(); // faces of the new air that don't face a space
+        Map<UUID, Integer> facesOntoCell = new HashMap<>(); // per touched space: its faces that looked at the broken block
+
+        long cell = BlockPos.pack(x, y, z);
+        fresh.add(x, y, z);
+        stack.push(cell);
+        while (!stack.isEmpty()) {
+            long p = stack.pop();
+            int px = BlockPos.unpackX(p), py = BlockPos.unpackY(p), pz = BlockPos.unpackZ(p);
+            if (fresh.size() > OPEN_FLOOD_BUDGET) {
+                // Opened into a big volume: map the whole thing off-thread instead
+                remapAsync(world, x, y, z, touched, callback);
+                return;
+            }
+            if (sky.isOpenAbove(world, px, py, pz)) {
+                // The opening reaches sky: everything it connects to is no longer sealed
+                collectTouching(world, x, y, z, touched);
+                for (Space s : touched.values()) deleteSpace(s.getId());
+                if (callback != null) callback.onUnsealed();
+                return;
+            }
+            for (int d = 0; d < 6; d++) {
+                int nx = px + DX[d], ny = py + DY[d], nz = pz + DZ[d];
+                if (ny < minY || ny >= maxY || fresh.contains(nx, ny, nz)) continue;
+                Space owner = spaceAt(world, nx, ny, nz);
+                if (owner != null) {
+                    touched.put(owner.getId(), owner);
+                    if (p == cell) facesOntoCell.merge(owner.getId(), 1, Integer::sum);
+                    continue;
+                }
+                if (!world.isChunkLoaded(nx >> 4, nz >> 4)) {
+                    // Never load chunks from here; the async fill snapshots them properly
+                    remapAsync(world, x, y, z, touched, callback);
+                    return;
+                }
+                Block nb = world.getBlockAt(nx, ny, nz);
+                if (nb.getType().isAir()) {
+                    fresh.add(nx, ny, nz);
+                    stack.push(BlockPos.pack(nx, ny, nz));
+                } else {
+                    freshFaces.add(TemperatureRegistry.kindOf(nb), 1);
+                }
+            }
+        }
+        if (touched.isEmpty()) return;
+
+        // Merge into the largest touched space so the biggest index/store entry stays put
+        Space keep = null;
+        BoundaryFaces faces = freshFaces;
+        for (Space s : touched.values()) {
+            BoundaryFaces f = s.getFaces();
+            if (f != null) {
+                faces.addAll(f);
+                Integer onto = facesOntoCell.get(s.getId());
+                if (onto != null && removedKind != AIR_KIND) faces.add(removedKind, -onto);
+            } else {
+                // Saved before histograms: scanned now, with the cell already air, so the removed block was never counted
+                faces.addAll(computeFaces(world, s.getVoxels()));
+            }
+            if (keep == null || s.getAirBlocks() > keep.getAirBlocks()) keep = s;
+        }
+        VoxelSet merged = keep.getVoxels().copy();
+        for (Space s : touched.values()) {
+            if (s == keep) continue;
+            merged.addAll(s.getVoxels());
+            deleteSpace(s.getId());
+        }
+        merged.addAll(fresh);
+        Space updated = new Space(keep.getId(), keep.getWorldName(), merged, faces);
+        overwriteSpace(updated);
+        if (callback != null) callback.onComplete(updated);
+    }
+
+    private void collectTouching(World world, int x, int y, int z, Map<UUID, Space> out) {
+        for (int d = 0; d < 6; d++) {
+            Space s = spaceAt(world, x + DX[d], y + DY[d], z + DZ[d]);
+            if (s != null) out.put(s.getId(), s);
         }
+    }
+
+    // Fallback for openings too big to flood inline: the async fill replaces every space it touched
+    private void remapAsync(World world, int x, int y, int z, Map<UUID, Space> touched, FloodFillCallback callback) {
+        collectTouching(world, x, y, z, touched);
+        Space keep = null;
+        for (Space s : touched.values()) {
+            if (keep == null || s.getAirBlocks() > keep.getAirBlocks()) keep = s;
+        }
+        UUID id = keep == null ? UUID.randomUUID() : keep.getId();
+        floodAsync(world, x, y, z, true, id, new FloodFillCallback() {
+            @Override public void onComplete(Space space) {
+                for (Space s : touched.values()) {
+                    if (!s.getId().equals(space.getId())) deleteSpace(s.getId());
+                }
+                if (callback != null) callback.onComplete(space);
+            }
+            @Override public void onUnsealed() {
+                for (Space s : touched.values()) deleteSpace(s.getId());
+                if (callback != null) callback.onUnsealed();
+            }
+        });
+    }
+
+    public Space register(Space s) {
+        Space prev = addToIndex(s);
+        if (prev != null) uncover(prev);
+        cover(s);
+        store.putChange(prev, s);
         return s;
     }
 
-    public Optional<Space> createFromFloodFill(Player player, int blocksPerTick, FloodFillCallback callback) {
+    // In-memory registration only; returns the previous version of the space, if any
+    private Space addToIndex(Space s) {
+        Space prev = spaces.put(s.getId(), s);
+        int handle = handleFor(s.getId());
+        if (prev != null) {
+            unindex(prev, handle);
+            grid.remove(prev);
+        }
+        handleTable[handle] = s;
+        indexAll(s, handle);
+        grid.add(s);
+        changed(s.getId(), s);
+        return prev;
+    }
+
+    private void indexAll(Space s, int handle) {
+        indexAll(s.getWorldName(), s.getVoxels(), handle);
+    }
+
+    private void indexAll(String world, VoxelSet voxels, int handle) {
+        if (voxels.isEmpty()) return;
+        LongIntHashMap worldIndex = index.computeIfAbsent(world, w -> new LongIntHashMap());
+        worldIndex.ensureCapacity(voxels.size());
+        voxels.forEach((x, y, z) -> worldIndex.put(BlockPos.pack(x, y, z), handle, -1));
+    }
+
+    private void unindex(Space s, int handle) {
+        unindex(s.getWorldName(), s.getVoxels(), handle);
+    }
+
+    private void unindex(String world, VoxelSet voxels, int handle) {
+        LongIntHashMap worldIndex = index.get(world);
+        if (worldIndex == null) return;
+        // Only drop voxels still owned by this handle; an overlapping newer space keeps its entries
+        voxels.forEach((x, y, z) -> worldIndex.removeIfMapped(BlockPos.pack(x, y, z), handle));
+        if (worldIndex.isEmpty()) index.remove(world);
+    }
+
+    private int handleFor(UUID id) {
+        Integer existing = handles.get(id);
+        if (existing != null) return existing;
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            handle = nextHandle++;
+            if (handle >= handleTable.length) handleTable = Arrays.copyOf(handleTable, handleTable.length << 1);
+        }
+        handles.put(id, handle);
+        return handle;
+    }
+
+    private void releaseHandle(int handle) {
+        handleTable[handle] = null;
+        if (freeCount == freeHandles.length) freeHandles = Arrays.copyOf(freeHandles, freeCount << 1);
+        freeHandles[freeCount++] = handle;
+    }
+
+    public Optional<Space> createFromFloodFill(Player player, FloodFillCallback callback) {
         Block seed = player.getLocation().getBlock().getRelative(0, 1, 0);
         if (!seed.getType().isAir()) {
             player.sendMessage("No air above feet to map space.");
@@ -127,68 +681,12 @@ public class SpaceManager {
             player.sendMessage("Spaces cannot be created in this dimension.");
             return Optional.empty();
         }
-        final Deque<Block> stack = new ArrayDeque<>();
-        final Set<String> visited = new HashSet<>();
-        final Set<BlockPos> collected = new HashSet<>();
-
-        pushIfValid(world, stack, visited, seed);
-
-        final int minY = world.getMinHeight();
-        final int maxY = world.getMaxHeight();
-
-        // Iterate synchronously but with a scan budget per cycle using scheduler to avoid long ticks.
-        // We'll process blocksPerTick per tick similar to the earlier command behavior.
-        final int quota = Math.max(1, blocksPerTick);
-
-        Bukkit.getScheduler().runTaskTimer(plugin, task -> {
-            int placed = 0;
-            int scanBudget = 4096;
-            while (placed < quota && scanBudget-- > 0) {
-                if (stack.isEmpty()) {
-                    task.cancel();
-                    // Completed: create and register space
-                    UUID id = UUID.randomUUID();
-                    // Compute temperature/influence
-                    InfluenceResult inf = computeInfluence(world, collected);
-                    Space space = new Space(id, world.getName(), collected, inf.temperature, inf.totalInfluence, collected.size());
-                    register(space);
-                    save();
-                    if (callback != null) callback.onComplete(space);
-                    return;
-                }
-
-                Block b = stack.pop();
-                if (b.getWorld() != world) continue;
-                int y = b.getY();
-                if (y < minY || y >= maxY) continue;
-
-                int highest = world.getHighestBlockYAt(b.getX(), b.getZ());
-                if (highest <= y) {
-                    task.cancel();
-                    if (callback != null) callback.onUnsealed();
-                    return;
-                }
-
-                if (!b.getType().isAir()) continue;
-
-                // collect
-                collected.add(new BlockPos(b.getX(), y, b.getZ()));
-                placed++;
-
-                // neighbors
-                pushIfValid(world, stack, visited, b.getRelative(1, 0, 0));
-                pushIfValid(world, stack, visited, b.getRelative(-1, 0, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, 1, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, -1, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, 0, 1));
-                pushIfValid(world, stack, visited, b.getRelative(0, 0, -1));
-            }
-        }, 0L, 1L);
-
+        // Unsealed once the column's highest block is at or below the voxel
+        floodAsync(world, seed.getX(), seed.getY(), seed.getZ(), false, UUID.randomUUID(), callback);
         return Optional.empty();
     }
 
-    public Optional<Space> createFromFloodFillAt(Player player, Block seed, int blocksPerTick, FloodFillCallback callback) {
+    public Optional<Space> createFromFloodFillAt(Player player, Block seed, FloodFillCallback callback) {
         if (seed == null || seed.getWorld() == null) return Optional.empty();
         if (!seed.getType().isAir()) {
             // try neighbors as seed fallback
@@ -212,74 +710,32 @@ public class SpaceManager {
             player.sendMessage("Spaces cannot be created in this dimension.");
             return Optional.empty();
         }
-        final Deque<Block> stack = new ArrayDeque<>();
-        final Set<String> visited = new HashSet<>();
-        final Set<BlockPos> collected = new HashSet<>();
-
-        pushIfValid(world, stack, visited, seed);
-
-        final int minY = world.getMinHeight();
-        final int maxY = world.getMaxHeight();
-        final int quota = Math.max(1, blocksPerTick);
-
-        Bukkit.getScheduler().runTaskTimer(plugin, task -> {
-            int placed = 0;
-            int scanBudget = 40960;
-            while (placed < quota && scanBudget-- > 0) {
-                if (stack.isEmpty()) {
-                    task.cancel();
-                    UUID id = UUID.randomUUID();
-                    InfluenceResult inf = computeInfluence(world, collected);
-                    Space space = new Space(id, world.getName(), collected, inf.temperature, inf.totalInfluence, collected.size());
-                    register(space);
-                    save();
-                    if (callback != null) callback.onComplete(space);
-                    return;
-                }
-
-                Block b = stack.pop();
-                if (b.getWorld() != world) continue;
-                int y = b.getY();
-                if (y < minY || y >= maxY) continue;
+        // Only unsealed if the air block is ABOVE the highest solid, not equal
+        floodAsync(world, seed.getX(), seed.getY(), seed.getZ(), true, UUID.randomUUID(), callback);
+        return Optional.empty();
+    }
 
-                int highest = world.getHighestBlockYAt(b.getX(), b.getZ());
-// Only unsealed if the air block is ABOVE the highest solid, not equal
-                if (y > highest) {
-                    Bukkit.getLogger().info("[SpaceDebug] → Marked unsealed because y > highest");
-                    task.cancel();
+    // Maps the space on a worker against chunk snapshots, then registers it back on the main thread
+    private void floodAsync(World world, int x, int y, int z, boolean strictSky, UUID id, FloodFillCallback callback) {
+        if (air.reach(world, x, y, z) == AirGraph.Reach.SKY) {
+            // Known to be open already; no need to snapshot and flood it
+            if (callback != null) callback.onUnsealed();
+            return;
+        }
+        SnapshotFloodFill fill = new SnapshotFloodFill(plugin, world, workers, floodPool, strictSky, maxFloodVoxels);
+        fill.start(x, y, z).whenComplete((result, error) -> {
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (error != null || result.unsealed) {
+                    if (error != null) plugin.getLogger().warning("Space flood fill failed: " + error.getMessage());
                     if (callback != null) callback.onUnsealed();
                     return;
                 }
-
-
-
-                if (!b.getType().isAir()) continue;
-
-                collected.add(new BlockPos(b.getX(), y, b.getZ()));
-                placed++;
-
-                pushIfValid(world, stack, visited, b.getRelative(1, 0, 0));
-                pushIfValid(world, stack, visited, b.getRelative(-1, 0, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, 1, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, -1, 0));
-                pushIfValid(world, stack, visited, b.getRelative(0, 0, 1));
-                pushIfValid(world, stack, visited, b.getRelative(0, 0, -1));
-            }
-        }, 0L, 1L);
-
-        return Optional.empty();
-    }
-
-    private void pushIfValid(World world, Deque<Block> stack, Set<String> visited, Block n) {
-        if (n.getWorld() != world) return;
-        int y = n.getY();
-        if (y < world.getMinHeight() || y >= world.getMaxHeight()) return;
-        String key = key(world.getName(), n.getX(), y, n.getZ());
-        if (visited.add(key)) stack.push(n);
-    }
-
-    private String key(String world, int x, int y, int z) {
-        return world + "|" + x + "," + y + "," + z;
+                Space space = new Space(id, world.getName(), result.voxels, result.faces);
+                register(space);
+                if (callback != null) callback.onComplete(space);
+            });
+        });
     }
 
     public interface FloodFillCallback {
@@ -290,40 +746,72 @@ public class SpaceManager {
     public static class InfluenceResult {
         public final double totalInfluence;
         public final double temperature;
+        public final BoundaryFaces faces;
         public InfluenceResult(double totalInfluence, double temperature) {
+            this(totalInfluence, temperature, null);
+        }
+        public InfluenceResult(double totalInfluence, double temperature, BoundaryFaces faces) {
             this.totalInfluence = totalInfluence;
             this.temperature = temperature;
+            this.faces = faces;
         }
     }
 
     // Compute total influence from neighboring non-air blocks and derive a simple temperature proxy.
     public InfluenceResult computeInfluence(World world, Set<BlockPos> airCells) {
-        double total = 0.0;
+        return computeInfluence(world, VoxelSet.of(airCells));
+    }
+
+    public InfluenceResult computeInfluence(World world, VoxelSet airCells) {
         int air = airCells.size();
-        if (air == 0) return new InfluenceResult(0.0, 0.0);
+        if (air == 0) return new InfluenceResult(0.0, 0.0, new BoundaryFaces());
+        BoundaryFaces faces = computeFaces(world, airCells);
+        return new InfluenceResult(faces.total(), temperatureFor(faces.total(), air), faces);
+    }
 
-        for (BlockPos p : airCells) {
-            total += neighborInfluence(world, p.x + 1, p.y, p.z);
-            total += neighborInfluence(world, p.x - 1, p.y, p.z);
-            total += neighborInfluence(world, p.x, p.y + 1, p.z);
-            total += neighborInfluence(world, p.x, p.y - 1, p.z);
-            total += neighborInfluence(world, p.x, p.y, p.z + 1);
-            total += neighborInfluence(world, p.x, p.y, p.z - 1);
-        }
+    /** Full scan of a space's boundary; only needed for new pieces and spaces saved without a histogram. */
+    public BoundaryFaces computeFaces(World world, VoxelSet airCells) {
+        return computeFaces(world, airCells, false, 0, 0, 0, 0);
+    }
+
+    // The override cell is read as overrideKind instead of the world (a block that is about to be set)
+    private BoundaryFaces computeFaces(World world, VoxelSet airCells, boolean override, int ox, int oy, int oz, int overrideKind) {
+        BoundaryFaces faces = new BoundaryFaces();
+        airCells.forEach((x, y, z) -> {
+            for (int d = 0; d < 6; d++) {
+                int nx = x + DX[d], ny = y + DY[d], nz = z + DZ[d];
+                // Faces shared with another cell of the space are air-to-air and contribute nothing
+                if (airCells.contains(nx, ny, nz)) continue;
+                int kind = override && nx == ox && ny == oy && nz == oz ? overrideKind : neighborKind(world, nx, ny, nz);
+                if (kind != AIR_KIND) faces.add(kind, 1);
+            }
+        });
+        return faces;
+    }
+
+    // Mutable histogram for editing a space; spaces saved before histograms existed are scanned once.
+    // The running total is re-derived from the counts first, so rounding from +/- updates can't pile up edit after edit.
+    private BoundaryFaces facesOf(World world, Space s) {
+        BoundaryFaces faces = s.getFaces();
+        if (faces == null) return computeFaces(world, s.getVoxels());
+        BoundaryFaces copy = faces.copy();
+        copy.recomputeTotal();
+        return copy;
+    }
 
-        // Influence density scaled exponentially to reduce air resistance as influence rises
-        double density = total / Math.max(1, air);
+    // Influence density scaled exponentially to reduce air resistance as influence rises
+    public static double temperatureFor(double totalInfluence, int air) {
+        double density = totalInfluence / Math.max(1, air);
         double k = 0.08; // tuning factor for exponential amplification
         double magnitude = Math.abs(density);
         double amplified = magnitude * Math.exp(k * magnitude);
         double adjusted = Math.copySign(amplified, density);
-        double temperature = 65.0 + adjusted;
-        return new InfluenceResult(total, temperature);
+        return 65.0 + adjusted;
     }
 
-    private double neighborInfluence(World world, int x, int y, int z) {
+    private int neighborKind(World world, int x, int y, int z) {
         Block b = world.getBlockAt(x, y, z);
-        if (b.getType().isAir()) return 0.0;
-        return TemperatureRegistry.influence(b);
+        if (b.getType().isAir()) return AIR_KIND;
+        return TemperatureRegistry.kindOf(b);
     }
 }
@@ -13,7 +13,6 @@ import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
 
 public class SpacePresenceListener implements Listener {
@@ -49,23 +48,23 @@ public class SpacePresenceListener implements Listener {
         int y = loc.getBlockY() + 1; // one block above feet
         int z = loc.getBlockZ();
 
-        Optional<Space> space = manager.findSpaceAt(player.getWorld(), x, y, z);
+        Space space = manager.spaceAt(player.getWorld(), x, y, z);
         UUID current = playerInSpace.get(player.getUniqueId());
-        UUID now = space.map(Space::getId).orElse(null);
+        UUID now = space == null ? null : space.getId();
 
         if (current == null && now != null) {
             // Entered
             playerInSpace.put(player.getUniqueId(), now);
-            Bukkit.getPluginManager().callEvent(new SpaceEnterEvent(player, space.get()));
+            Bukkit.getPluginManager().callEvent(new SpaceEnterEvent(player, space));
         } else if (current != null && (now == null || !current.equals(now))) {
             // Left previous
             Space prev = manager.get(current);
             playerInSpace.remove(player.getUniqueId());
             if (prev != null) Bukkit.getPluginManager().callEvent(new SpaceLeaveEvent(player, prev));
             // Entered new (switch)
-            if (now != null && space.isPresent()) {
+            if (now != null) {
                 playerInSpace.put(player.getUniqueId(), now);
-                Bukkit.getPluginManager().callEvent(new SpaceEnterEvent(player, space.get()));
+                Bukkit.getPluginManager().callEvent(new SpaceEnterEvent(player, space));
             }
         }
     }
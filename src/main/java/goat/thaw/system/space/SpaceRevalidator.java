@@ -0,0 +1,284 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import goat.thaw.system.util.LongArrayStack;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Re-floods spaces whose surroundings changed in ways the place/break handlers don't patch
+ * (explosions, pistons, flowing fluids). Single-block forming, melting and burning are patched
+ * in place by SpaceBlockListener.
+ *
+ * Changes only mark a space dirty and queue it once; entering a space just moves it to the front
+ * if it is dirty. Work runs on the main thread inside a per-tick microsecond budget, and a job
+ * picks up where it left off next tick. A space changed again mid-job restarts its job.
+ */
+public class SpaceRevalidator implements BlockChangeDispatcher.Subscriber {
+    private static final long TICK_BUDGET_MICROS = 2_000L;
+    private static final int MAX_VOXELS = 2_000_000;
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+
+    private final Plugin plugin;
+    private final SpaceManager manager;
+    private final SkyColumnCache sky;
+    private final Set<UUID> dirty = new HashSet<>();
+    private final ArrayDeque<UUID> queue = new ArrayDeque<>(); // may hold stale copies, see pushFront
+    private final Set<UUID> queued = new HashSet<>();          // ids with a live entry in queue
+    private Job active;
+    private BukkitTask task;
+
+    // Metrics
+    private long nanosTotal;
+    private long nanosLastTick;
+    private long completed;
+    private long restarted;
+    private long coalesced;
+    private long deferred;
+
+    public SpaceRevalidator(Plugin plugin, SpaceManager manager, SkyColumnCache sky) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.sky = sky;
+    }
+
+    public void start() {
+        if (task == null) task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) task.cancel();
+        task = null;
+        active = null;
+    }
+
+    /** Something around this space changed; revalidate it when the budget allows. */
+    public void markDirty(UUID id) {
+        dirty.add(id);
+        if (active != null && active.id.equals(id)) {
+            // The job has been reading a world that just changed under it
+            active = null;
+            restarted++;
+            pushFront(id);
+            return;
+        }
+        if (!queued.add(id)) {
+            coalesced++;
+            return;
+        }
+        queue.addLast(id);
+    }
+
+    /** A player is in this space: if it's dirty, do it next. Clean spaces cost nothing. */
+    public void request(UUID id) {
+        if (!dirty.contains(id)) return;
+        if (active != null && active.id.equals(id)) return;
+        if (queued.contains(id)) coalesced++;
+        pushFront(id);
+    }
+
+    // The old entry stays where it is (removing it would be a linear scan); it is skipped when polled
+    private void pushFront(UUID id) {
+        if (queued.contains(id) && id.equals(queue.peekFirst())) return; // already next; repeated requests add nothing
+        queue.addFirst(id);
+        queued.add(id);
+    }
+
+    public boolean isDirty(UUID id) { return dirty.contains(id); }
+    public int getQueueDepth() { return queued.size() + (active != null ? 1 : 0); }
+    public long getMicrosTotal() { return nanosTotal / 1_000L; }
+    public long getMicrosLastTick() { return nanosLastTick / 1_000L; }
+    public long getCompleted() { return completed; }
+    public long getRestarted() { return restarted; }
+    public long getCoalesced() { return coalesced; }
+    public long getDeferred() { return deferred; }
+    public long getTickBudgetMicros() { return TICK_BUDGET_MICROS; }
+
+    private void tick() {
+        if (active == null && queue.isEmpty()) {
+            nanosLastTick = 0L;
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TICK_BUDGET_MICROS * 1_000L;
+        while (System.nanoTime() < deadline) {
+            if (active == null) {
+                active = nextJob();
+                if (active == null) break;
+            }
+            if (active.step(deadline)) active = null;
+        }
+        nanosLastTick = System.nanoTime() - start;
+        nanosTotal += nanosLastTick;
+    }
+
+    private Job nextJob() {
+        while (!queue.isEmpty()) {
+            UUID id = queue.pollFirst();
+            if (!queued.remove(id)) continue; // stale copy of an entry pushFront already moved up
+            if (!dirty.remove(id)) continue;
+            Space space = manager.get(id);
+            if (space == null) continue;
+            World world = Bukkit.getWorld(space.getWorldName());
+            if (world == null) continue;
+            return new Job(space, world);
+        }
+        return null;
+    }
+
+    // Dirty-marking: the changed block and its faces may belong to (or border) a space
+    private void touch(Block b) {
+        World w = b.getWorld();
+        int x = b.getX(), y = b.getY(), z = b.getZ();
+        UUID last = null;
+        for (int d = -1; d < 6; d++) {
+            Space s = d < 0 ? manager.spaceAt(w, x, y, z) : manager.spaceAt(w, x + DX[d], y + DY[d], z + DZ[d]);
+            if (s == null || s.getId().equals(last)) continue;
+            last = s.getId();
+            markDirty(last);
+        }
+    }
+
+    // Place/break and single-block forming, melting and burning are patched in place by SpaceBlockListener
+    @Override
+    public void blockChanged(Block b, BlockChangeDispatcher.Becomes becomes) {
+        if (becomes == BlockChangeDispatcher.Becomes.UNKNOWN || becomes == BlockChangeDispatcher.Becomes.FLUID) touch(b);
+    }
+
+    /**
+     * Resumable re-flood of one space. Every old voxel that is still air seeds a piece (usually all of
+     * them land in the first); the largest piece keeps the id, the rest become new spaces. Influence is
+     * counted face by face during the flood, and the sky check asks SkyColumnCache.
+     */
+    private final class Job {
+        final UUID id;
+        final Space base;
+        final World world;
+        final int minY, maxY;
+        final VoxelSet.Cursor seeds;
+        final VoxelSet visited = new VoxelSet();
+        final LongArrayStack stack = new LongArrayStack();
+        final List<VoxelSet> pieces = new ArrayList<>();
+        final List<BoundaryFaces> pieceFaces = new ArrayList<>();
+        final Map<UUID, Space> absorbed = new HashMap<>();
+        VoxelSet piece;
+        BoundaryFaces faces;
+        int cells;
+
+        Job(Space base, World world) {
+            this.id = base.getId();
+            this.base = base;
+            this.world = world;
+            this.minY = world.getMinHeight();
+            this.maxY = world.getMaxHeight();
+            this.seeds = base.getVoxels().cursor();
+        }
+
+        // Returns true once the job is finished (applied, dropped or deferred)
+        boolean step(long deadline) {
+            if (manager.get(id) != base) {
+                // Patched by the place/break handlers meanwhile; start over from the new version
+                restarted++;
+                dirty.add(id);
+                pushFront(id);
+                return true;
+            }
+            int work = 0;
+            while (true) {
+                if ((++work & 63) == 0 && System.nanoTime() >= deadline) return false;
+
+                if (stack.isEmpty()) {
+                    if (piece != null) {
+                        pieces.add(piece);
+                        pieceFaces.add(faces);
+                        piece = null;
+                    }
+                    if (!seeds.hasNext()) return finish();
+                    long s = seeds.next();
+                    int sx = BlockPos.unpackX(s), sy = BlockPos.unpackY(s), sz = BlockPos.unpackZ(s);
+                    if (visited.contains(sx, sy, sz)) continue;
+                    if (!world.isChunkLoaded(sx >> 4, sz >> 4)) return defer();
+                    if (!world.getBlockAt(sx, sy, sz).getType().isAir()) continue;
+                    visited.add(sx, sy, sz);
+                    piece = new VoxelSet();
+                    faces = new BoundaryFaces();
+                    stack.push(s);
+                    continue;
+                }
+
+                long p = stack.pop();
+                int x = BlockPos.unpackX(p), y = BlockPos.unpackY(p), z = BlockPos.unpackZ(p);
+                if (sky.isOpenAbove(world, x, y, z)) return unsealed();
+                piece.add(x, y, z);
+                if (++cells > MAX_VOXELS) return unsealed();
+                Space owner = manager.spaceAt(world, x, y, z);
+                if (owner != null && owner != base) absorbed.put(owner.getId(), owner);
+
+                for (int d = 0; d < 6; d++) {
+                    int nx = x + DX[d], ny = y + DY[d], nz = z + DZ[d];
+                    if (ny < minY || ny >= maxY || visited.contains(nx, ny, nz)) continue;
+                    if (!world.isChunkLoaded(nx >> 4, nz >> 4)) return defer();
+                    Block nb = world.getBlockAt(nx, ny, nz);
+                    if (nb.getType().isAir()) {
+                        visited.add(nx, ny, nz);
+                        stack.push(BlockPos.pack(nx, ny, nz));
+                    } else {
+                        faces.add(TemperatureRegistry.kindOf(nb), 1);
+                    }
+                }
+            }
+        }
+
+        private boolean unsealed() {
+            manager.deleteSpace(id);
+            for (Space s : absorbed.values()) manager.deleteSpace(s.getId());
+            completed++;
+            return true;
+        }
+
+        // Part of the space isn't loaded; leave it dirty for the next request instead of loading chunks
+        private boolean defer() {
+            dirty.add(id);
+            deferred++;
+            return true;
+        }
+
+        private boolean finish() {
+            completed++;
+            if (pieces.isEmpty()) {
+                manager.deleteSpace(id);
+                return true;
+            }
+            int largest = 0;
+            for (int i = 1; i < pieces.size(); i++) {
+                if (pieces.get(i).size() > pieces.get(largest).size()) largest = i;
+            }
+            // Spaces the flood ran into are now part of this one
+            for (Space s : absorbed.values()) manager.deleteSpace(s.getId());
+            for (int i = 0; i < pieces.size(); i++) {
+                VoxelSet v = pieces.get(i);
+                if (i == largest) {
+                    manager.overwriteSpace(new Space(id, base.getWorldName(), v, pieceFaces.get(i)));
+                } else {
+                    manager.register(new Space(UUID.randomUUID(), base.getWorldName(), v, pieceFaces.get(i)));
+                }
+            }
+            return true;
+        }
+    }
+}
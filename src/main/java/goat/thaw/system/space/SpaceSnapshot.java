@@ -0,0 +1,203 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.World;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable view of the resident spaces, published by SpaceManager once per tick in which spaces changed.
+ * Safe to read from any thread without locking; a reader holding one keeps a consistent picture even while
+ * the main thread builds the next version.
+ *
+ * The index maps each 16³ section to the spaces with voxels in it, so a lookup is one hash probe plus a
+ * bitset test per candidate (usually one). Both the spaces and each world's section table are split into
+ * SHARDS hash shards. A new version copies the shard arrays (SHARDS references each) and only the shards
+ * it edits; every other shard, and every untouched world, is shared with the previous version.
+ */
+public final class SpaceSnapshot {
+    private static final int SHARD_BITS = 6;
+    private static final int SHARDS = 1 << SHARD_BITS;
+
+    static final SpaceSnapshot EMPTY = new SpaceSnapshot(0L, emptySpaceShards(), Collections.emptyMap(), 0);
+
+    private static final Space[] NONE = new Space[0];
+
+    private final long version;
+    private final Map<UUID, Space>[] spaces;                         // by spaceShard(id)
+    private final Map<String, LongObjectHashMap<Space[]>[]> sections; // world -> by sectionShard(key) -> spaces, oldest first
+    private final int size;
+    private final Collection<Space> view = new AbstractCollection<Space>() {
+        @Override
+        public Iterator<Space> iterator() {
+            return Arrays.stream(spaces).flatMap(shard -> shard.values().stream()).iterator();
+        }
+
+        @Override
+        public int size() { return size; }
+    };
+
+    private SpaceSnapshot(long version, Map<UUID, Space>[] spaces, Map<String, LongObjectHashMap<Space[]>[]> sections, int size) {
+        this.version = version;
+        this.spaces = spaces;
+        this.sections = sections;
+        this.size = size;
+    }
+
+    public long version() { return version; }
+
+    public Collection<Space> getSpaces() { return view; }
+
+    public Space get(UUID id) { return spaces[spaceShard(id)].get(id); }
+
+    public Space spaceAt(World world, int x, int y, int z) {
+        return spaceAt(world.getName(), x, y, z);
+    }
+
+    // Null when outside any space. Overlaps resolve to the most recently indexed space, like the live index
+    public Space spaceAt(String world, int x, int y, int z) {
+        LongObjectHashMap<Space[]>[] worldSections = sections.get(world);
+        if (worldSections == null) return null;
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Space[] candidates = worldSections[sectionShard(key)].get(key);
+        if (candidates == null) return null;
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            if (candidates[i].getVoxels().contains(x, y, z)) return candidates[i];
+        }
+        return null;
+    }
+
+    /**
+     * Next version with the given spaces replaced: {@code changed} maps each touched id to its current
+     * version, or to null if it is gone. Only the shards holding those ids and the sections they cover are
+     * copied, each once per call.
+     */
+    SpaceSnapshot with(Map<UUID, Space> changed) {
+        Map<UUID, Space>[] nextSpaces = spaces.clone();
+        boolean[] spacesCopied = new boolean[SHARDS];
+        Map<String, LongObjectHashMap<Space[]>[]> nextSections = new HashMap<>(sections);
+        Map<String, Shards> copied = new HashMap<>();
+        int nextSize = size;
+        for (Map.Entry<UUID, Space> e : changed.entrySet()) {
+            int shard = spaceShard(e.getKey());
+            Space prev = spaces[shard].get(e.getKey());
+            Space now = e.getValue();
+            if (prev == now) continue;
+            if (!spacesCopied[shard]) {
+                nextSpaces[shard] = new HashMap<>(nextSpaces[shard]);
+                spacesCopied[shard] = true;
+            }
+            if (prev != null) {
+                Shards worldSections = writable(prev.getWorldName(), nextSections, copied);
+                prev.getVoxels().forEachSection((sx, sy, sz, bits) -> {
+                    long key = sectionKey(sx, sy, sz);
+                    LongObjectHashMap<Space[]> table = worldSections.writable(key);
+                    Space[] rest = without(table.get(key), prev.getId());
+                    if (rest.length == 0) table.remove(key);
+                    else table.put(key, rest);
+                });
+                nextSpaces[shard].remove(prev.getId());
+                nextSize--;
+            }
+            if (now != null) {
+                Shards worldSections = writable(now.getWorldName(), nextSections, copied);
+                now.getVoxels().forEachSection((sx, sy, sz, bits) -> {
+                    long key = sectionKey(sx, sy, sz);
+                    LongObjectHashMap<Space[]> table = worldSections.writable(key);
+                    Space[] current = table.get(key);
+                    Space[] grown = current == null ? new Space[1] : Arrays.copyOf(current, current.length + 1);
+                    grown[grown.length - 1] = now;
+                    table.put(key, grown);
+                });
+                nextSpaces[shard].put(now.getId(), now);
+                nextSize++;
+            }
+        }
+        copied.forEach((world, worldSections) -> {
+            if (worldSections.isEmpty()) nextSections.remove(world);
+        });
+        return new SpaceSnapshot(version + 1, nextSpaces, Collections.unmodifiableMap(nextSections), nextSize);
+    }
+
+    // One world's shard array while a batch edits it; a shard is copied the first time the batch touches it
+    private static final class Shards {
+        final LongObjectHashMap<Space[]>[] tables;
+        final boolean[] copied = new boolean[SHARDS];
+
+        Shards(LongObjectHashMap<Space[]>[] tables) {
+            this.tables = tables;
+        }
+
+        LongObjectHashMap<Space[]> writable(long key) {
+            int shard = sectionShard(key);
+            if (!copied[shard]) {
+                tables[shard] = tables[shard].copy();
+                copied[shard] = true;
+            }
+            return tables[shard];
+        }
+
+        boolean isEmpty() {
+            for (LongObjectHashMap<Space[]> table : tables) if (!table.isEmpty()) return false;
+            return true;
+        }
+    }
+
+    // The published arrays may be shared with readers, so each world's array is cloned once per batch
+    private static Shards writable(String world, Map<String, LongObjectHashMap<Space[]>[]> next, Map<String, Shards> copied) {
+        Shards mine = copied.get(world);
+        if (mine != null) return mine;
+        LongObjectHashMap<Space[]>[] published = next.get(world);
+        mine = new Shards(published == null ? emptySectionShards() : published.clone());
+        copied.put(world, mine);
+        next.put(world, mine.tables);
+        return mine;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<UUID, Space>[] emptySpaceShards() {
+        Map<UUID, Space>[] shards = new Map[SHARDS];
+        Arrays.fill(shards, Collections.emptyMap());
+        return shards;
+    }
+
+    // Every shard can share one empty table: a batch copies a shard before its first edit
+    @SuppressWarnings("unchecked")
+    private static LongObjectHashMap<Space[]>[] emptySectionShards() {
+        LongObjectHashMap<Space[]>[] shards = new LongObjectHashMap[SHARDS];
+        LongObjectHashMap<Space[]> empty = new LongObjectHashMap<>();
+        Arrays.fill(shards, empty);
+        return shards;
+    }
+
+    private static int spaceShard(UUID id) {
+        return (id.hashCode() * 0x9E3779B9) >>> (32 - SHARD_BITS);
+    }
+
+    private static int sectionShard(long key) {
+        return Long.hashCode(key * 0x9E3779B97F4A7C15L) >>> (32 - SHARD_BITS);
+    }
+
+    private static Space[] without(Space[] spaces, UUID id) {
+        if (spaces == null) return NONE;
+        int keep = 0;
+        for (Space s : spaces) if (!s.getId().equals(id)) keep++;
+        if (keep == spaces.length) return spaces;
+        Space[] out = new Space[keep];
+        int i = 0;
+        for (Space s : spaces) if (!s.getId().equals(id)) out[i++] = s;
+        return out;
+    }
+
+    private static long sectionKey(int sx, int sy, int sz) {
+        return BlockPos.pack(sx, sy, sz);
+    }
+}
@@ -0,0 +1,156 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.util.LongArrayStack;
+import goat.thaw.system.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local connectivity check for a space that just lost one voxel.
+ *
+ * One search is started from each remaining face neighbour of the filled cell and the searches are
+ * stepped round-robin. Searches that touch are merged; a search that runs dry before touching the
+ * others has walked a pocket that is now sealed off. Stepping stops as soon as a single search is
+ * left, so the work is bounded by the size of the smaller pieces, not the room.
+ */
+final class VoxelConnectivity {
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+
+    private VoxelConnectivity() {}
+
+    /**
+     * {@code rest} is a space's voxels with (x,y,z) already removed. Pockets that are no longer
+     * connected to the main body are removed from {@code rest} and returned. The piece still growing
+     * when the others ran dry stays in {@code rest}; in practice that is the biggest one.
+     *
+     * Two big halves can exhaust the budget. The pieces are then labelled in full instead, which is
+     * still in-memory bit work and never touches the world.
+     */
+    static List<VoxelSet> detach(VoxelSet rest, int x, int y, int z, int budget) {
+        long[] seeds = new long[6];
+        int n = 0;
+        for (int d = 0; d < 6; d++) {
+            int nx = x + DX[d], ny = y + DY[d], nz = z + DZ[d];
+            if (rest.contains(nx, ny, nz)) seeds[n++] = BlockPos.pack(nx, ny, nz);
+        }
+        List<VoxelSet> pockets = new ArrayList<>();
+        if (n < 2) return pockets; // a single neighbour can't have been cut off from anything
+
+        if (!race(rest, seeds, n, budget, pockets)) {
+            pockets.clear();
+            labelAll(rest, seeds, n, pockets);
+        }
+        for (VoxelSet pocket : pockets) rest.removeAll(pocket);
+        return pockets;
+    }
+
+    private static boolean race(VoxelSet rest, long[] seeds, int n, int budget, List<VoxelSet> pockets) {
+        LongIntHashMap label = new LongIntHashMap();
+        LongArrayStack[] frontier = new LongArrayStack[n];
+        int[] parent = new int[n];
+        boolean[] sealed = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            frontier[i] = new LongArrayStack(64);
+            label.put(seeds[i], i, -1);
+            frontier[i].push(seeds[i]);
+        }
+
+        int open = n;
+        int steps = 0;
+        while (open > 1) {
+            if (steps >= budget) return false;
+            for (int i = 0; i < n && open > 1; i++) {
+                if (frontier[i].isEmpty() || sealed[find(parent, i)]) continue;
+                long p = frontier[i].pop();
+                steps++;
+                int px = BlockPos.unpackX(p), py = BlockPos.unpackY(p), pz = BlockPos.unpackZ(p);
+                for (int d = 0; d < 6; d++) {
+                    int nx = px + DX[d], ny = py + DY[d], nz = pz + DZ[d];
+                    if (!rest.contains(nx, ny, nz)) continue;
+                    long q = BlockPos.pack(nx, ny, nz);
+                    int other = label.get(q, -1);
+                    if (other < 0) {
+                        label.put(q, i, -1);
+                        frontier[i].push(q);
+                        continue;
+                    }
+                    int a = find(parent, i), b = find(parent, other);
+                    if (a != b) {
+                        parent[b] = a;
+                        open--;
+                    }
+                }
+            }
+            // A group whose every frontier is empty has seen all of its piece
+            for (int r = 0; r < n && open > 1; r++) {
+                if (find(parent, r) != r || sealed[r] || !exhausted(parent, frontier, r)) continue;
+                sealed[r] = true;
+                open--;
+                pockets.add(collect(label, parent, r));
+            }
+        }
+        return true;
+    }
+
+    private static boolean exhausted(int[] parent, LongArrayStack[] frontier, int root) {
+        for (int i = 0; i < frontier.length; i++) {
+            if (find(parent, i) == root && !frontier[i].isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static VoxelSet collect(LongIntHashMap label, int[] parent, int root) {
+        VoxelSet pocket = new VoxelSet();
+        label.forEach((packed, l) -> {
+            if (find(parent, l) == root) {
+                pocket.add(BlockPos.unpackX(packed), BlockPos.unpackY(packed), BlockPos.unpackZ(packed));
+            }
+        });
+        return pocket;
+    }
+
+    // Fallback: flood every seed's piece completely and keep the biggest one in place
+    private static void labelAll(VoxelSet rest, long[] seeds, int n, List<VoxelSet> pockets) {
+        VoxelSet seen = new VoxelSet();
+        List<VoxelSet> pieces = new ArrayList<>();
+        LongArrayStack stack = new LongArrayStack();
+        for (int i = 0; i < n; i++) {
+            long seed = seeds[i];
+            if (seen.contains(BlockPos.unpackX(seed), BlockPos.unpackY(seed), BlockPos.unpackZ(seed))) continue;
+            VoxelSet piece = new VoxelSet();
+            stack.push(seed);
+            piece.add(BlockPos.unpackX(seed), BlockPos.unpackY(seed), BlockPos.unpackZ(seed));
+            while (!stack.isEmpty()) {
+                long p = stack.pop();
+                int px = BlockPos.unpackX(p), py = BlockPos.unpackY(p), pz = BlockPos.unpackZ(p);
+                for (int d = 0; d < 6; d++) {
+                    int nx = px + DX[d], ny = py + DY[d], nz = pz + DZ[d];
+                    if (rest.contains(nx, ny, nz) && piece.add(nx, ny, nz)) stack.push(BlockPos.pack(nx, ny, nz));
+                }
+            }
+            seen.addAll(piece);
+            pieces.add(piece);
+        }
+        if (pieces.size() < 2) return;
+        int largest = 0;
+        for (int i = 1; i < pieces.size(); i++) {
+            if (pieces.get(i).size() > pieces.get(largest).size()) largest = i;
+        }
+        for (int i = 0; i < pieces.size(); i++) {
+            if (i != largest) pockets.add(pieces.get(i));
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
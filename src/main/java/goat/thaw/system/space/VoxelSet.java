@@ -0,0 +1,377 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.util.LongObjectHashMap;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Sparse voxel membership set: a map of 16x16x16 chunk sections, each a 4096-bit bitset.
+ * contains/add/remove are O(1) and allocation-free; union and difference work a whole
+ * 64-bit word at a time. Once frozen (as every Space's set is) the set rejects mutation.
+ * Copies of a frozen set share its sections and only clone the ones they write to, so
+ * deriving a slightly edited Space costs O(sections touched) rather than O(voxels).
+ */
+public final class VoxelSet {
+    private static final int WORDS = 64; // 4096 bits per section
+
+    private final LongObjectHashMap<Section> sections;
+    private int size;
+    private boolean frozen;
+
+    public VoxelSet() {
+        this.sections = new LongObjectHashMap<>();
+    }
+
+    private VoxelSet(LongObjectHashMap<Section> sections, int size) {
+        this.sections = sections;
+        this.size = size;
+    }
+
+    public static VoxelSet of(Collection<BlockPos> blocks) {
+        VoxelSet set = new VoxelSet();
+        for (BlockPos p : blocks) set.add(p.x, p.y, p.z);
+        return set;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int sectionCount() { return sections.size(); }
+    public boolean isFrozen() { return frozen; }
+
+    /** Marks this set read-only; returns this for chaining. */
+    public VoxelSet freeze() {
+        if (frozen) return this;
+        frozen = true;
+        sections.forEach((k, s) -> s.shared = true);
+        return this;
+    }
+
+    /** Empties a mutable set, keeping its table capacity for reuse. */
+    public void clear() {
+        checkMutable();
+        sections.clear();
+        size = 0;
+    }
+
+    /** Mutable copy. Sections of a frozen set are shared until first written. */
+    public VoxelSet copy() {
+        LongObjectHashMap<Section> out = new LongObjectHashMap<>(sections.size());
+        sections.forEach((k, s) -> out.put(k, s.shared ? s : s.copy()));
+        return new VoxelSet(out, size);
+    }
+
+    public boolean contains(int x, int y, int z) {
+        Section s = sections.get(sectionKey(x >> 4, y >> 4, z >> 4));
+        if (s == null) return false;
+        int i = indexOf(x, y, z);
+        return (s.bits[i >>> 6] & (1L << i)) != 0L;
+    }
+
+    public boolean add(int x, int y, int z) {
+        checkMutable();
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Section s = sections.get(key);
+        if (s == null) {
+            s = new Section();
+            sections.put(key, s);
+        }
+        int i = indexOf(x, y, z);
+        long bit = 1L << i;
+        long word = s.bits[i >>> 6];
+        if ((word & bit) != 0L) return false;
+        s = writable(key, s);
+        s.bits[i >>> 6] = word | bit;
+        s.count++;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int x, int y, int z) {
+        checkMutable();
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Section s = sections.get(key);
+        if (s == null) return false;
+        int i = indexOf(x, y, z);
+        long bit = 1L << i;
+        long word = s.bits[i >>> 6];
+        if ((word & bit) == 0L) return false;
+        s = writable(key, s);
+        s.bits[i >>> 6] = word & ~bit;
+        size--;
+        if (--s.count == 0) sections.remove(key);
+        return true;
+    }
+
+    /** In-place union; returns the number of voxels added. */
+    public int addAll(VoxelSet other) {
+        checkMutable();
+        int before = size;
+        other.sections.forEach((key, theirs) -> {
+            Section mine = sections.get(key);
+            if (mine == null) {
+                sections.put(key, theirs.shared ? theirs : theirs.copy());
+                size += theirs.count;
+                return;
+            }
+            if (mine == theirs) return; // same shared section, nothing to add
+            mine = writable(key, mine);
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                mine.bits[w] |= theirs.bits[w];
+                count += Long.bitCount(mine.bits[w]);
+            }
+            size += count - mine.count;
+            mine.count = count;
+        });
+        return size - before;
+    }
+
+    /** In-place difference; returns the number of voxels removed. */
+    public int removeAll(VoxelSet other) {
+        checkMutable();
+        int before = size;
+        other.sections.forEach((key, theirs) -> {
+            Section mine = sections.get(key);
+            if (mine == null) return;
+            if (mine == theirs) {
+                // Same shared section: everything goes, no need to clone it first
+                size -= mine.count;
+                sections.remove(key);
+                return;
+            }
+            mine = writable(key, mine);
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                mine.bits[w] &= ~theirs.bits[w];
+                count += Long.bitCount(mine.bits[w]);
+            }
+            size -= mine.count - count;
+            mine.count = count;
+            if (count == 0) sections.remove(key);
+        });
+        return before - size;
+    }
+
+    /** ORs a raw 64-word section bitset into this set (used when decoding stored spaces). */
+    public void addSection(int sx, int sy, int sz, long[] bits) {
+        checkMutable();
+        long key = sectionKey(sx, sy, sz);
+        Section mine = sections.get(key);
+        mine = mine == null ? new Section() : writable(key, mine);
+        int count = 0;
+        for (int w = 0; w < WORDS; w++) {
+            mine.bits[w] |= bits[w];
+            count += Long.bitCount(mine.bits[w]);
+        }
+        size += count - mine.count;
+        mine.count = count;
+        if (count > 0) sections.put(key, mine);
+    }
+
+    /** Clears every bit of a raw 64-word section bitset from this set. */
+    public void removeSection(int sx, int sy, int sz, long[] bits) {
+        checkMutable();
+        long key = sectionKey(sx, sy, sz);
+        Section mine = sections.get(key);
+        if (mine == null) return;
+        mine = writable(key, mine);
+        int count = 0;
+        for (int w = 0; w < WORDS; w++) {
+            mine.bits[w] &= ~bits[w];
+            count += Long.bitCount(mine.bits[w]);
+        }
+        size -= mine.count - count;
+        mine.count = count;
+        if (count == 0) sections.remove(key);
+    }
+
+    public static VoxelSet union(VoxelSet a, VoxelSet b) {
+        VoxelSet out = a.copy();
+        out.addAll(b);
+        return out;
+    }
+
+    public static VoxelSet difference(VoxelSet a, VoxelSet b) {
+        VoxelSet out = a.copy();
+        out.removeAll(b);
+        return out;
+    }
+
+    public void forEach(VoxelConsumer action) {
+        sections.forEach((key, s) -> {
+            int bx = BlockPos.unpackX(key) << 4;
+            int by = BlockPos.unpackY(key) << 4;
+            int bz = BlockPos.unpackZ(key) << 4;
+            long[] bits = s.bits;
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0L) {
+                    int i = (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    action.accept(bx + (i & 15), by + (i >>> 8), bz + ((i >>> 4) & 15));
+                }
+            }
+        });
+    }
+
+    /** Visits each non-empty section with its section coordinates and read-only bitset. */
+    public void forEachSection(SectionConsumer action) {
+        sections.forEach((key, s) -> action.accept(
+                BlockPos.unpackX(key), BlockPos.unpackY(key), BlockPos.unpackZ(key), s.bits));
+    }
+
+    /** Tight axis-aligned bounds, or null when empty. Works a word at a time: O(sections), not O(voxels). */
+    public Space.Bounds bounds() {
+        if (size == 0) return null;
+        int[] b = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        sections.forEach((key, s) -> {
+            if (s.count == 0) return;
+            long[] bits = s.bits;
+            long xs = 0L;
+            int zs = 0, loY = -1, hiY = -1;
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                if (word == 0L) continue;
+                if (loY < 0) loY = w >> 2;
+                hiY = w >> 2;
+                xs |= word;
+                // Each word holds four z rows of 16 x bits
+                int zBase = (w & 3) << 2;
+                for (int lane = 0; lane < 4; lane++) {
+                    if (((word >>> (lane << 4)) & 0xFFFFL) != 0L) zs |= 1 << (zBase + lane);
+                }
+            }
+            int xMask = (int) ((xs | xs >>> 16 | xs >>> 32 | xs >>> 48) & 0xFFFFL);
+            int bx = BlockPos.unpackX(key) << 4, by = BlockPos.unpackY(key) << 4, bz = BlockPos.unpackZ(key) << 4;
+            b[0] = Math.min(b[0], bx + Integer.numberOfTrailingZeros(xMask));
+            b[1] = Math.min(b[1], by + loY);
+            b[2] = Math.min(b[2], bz + Integer.numberOfTrailingZeros(zs));
+            b[3] = Math.max(b[3], bx + 31 - Integer.numberOfLeadingZeros(xMask));
+            b[4] = Math.max(b[4], by + hiY);
+            b[5] = Math.max(b[5], bz + 31 - Integer.numberOfLeadingZeros(zs));
+        });
+        return new Space.Bounds(b[0], b[1], b[2], b[3], b[4], b[5]);
+    }
+
+    /** Walks the voxels as packed BlockPos longs, a word of bits at a time, without allocating per voxel. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Unmodifiable java.util.Set view; membership checks stay O(1). */
+    public Set<BlockPos> asSet() {
+        return new BlockPosView();
+    }
+
+    @FunctionalInterface
+    public interface VoxelConsumer {
+        void accept(int x, int y, int z);
+    }
+
+    @FunctionalInterface
+    public interface SectionConsumer {
+        void accept(int sectionX, int sectionY, int sectionZ, long[] bits);
+    }
+
+    static long sectionKey(int sx, int sy, int sz) {
+        return BlockPos.pack(sx, sy, sz);
+    }
+
+    // Bit layout inside a section: y-major, then z, then x (matches vanilla section indexing)
+    static int indexOf(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    // Sections borrowed from a frozen set are cloned before their first write
+    private Section writable(long key, Section s) {
+        if (!s.shared) return s;
+        Section own = s.copy();
+        sections.put(key, own);
+        return own;
+    }
+
+    private void checkMutable() {
+        if (frozen) throw new IllegalStateException("VoxelSet is frozen");
+    }
+
+    private static final class Section {
+        final long[] bits = new long[WORDS];
+        int count;
+        boolean shared; // owned by a frozen set: read-only from here on
+
+        Section copy() {
+            Section s = new Section();
+            System.arraycopy(bits, 0, s.bits, 0, WORDS);
+            s.count = count;
+            return s;
+        }
+    }
+
+    // Can be paused and resumed across ticks; don't mutate the set while one is open (frozen sets never are)
+    public final class Cursor {
+        private final long[] keys = sections.keys();
+        private int sectionIdx = -1;
+        private long[] bits;
+        private int word = WORDS;
+        private long remaining;
+        private int bx, by, bz;
+
+        private Cursor() {}
+
+        public boolean hasNext() {
+            while (remaining == 0L) {
+                if (bits != null && ++word < WORDS) {
+                    remaining = bits[word];
+                    continue;
+                }
+                if (++sectionIdx >= keys.length) return false;
+                long key = keys[sectionIdx];
+                Section s = sections.get(key);
+                if (s == null) { bits = null; continue; }
+                bits = s.bits;
+                bx = BlockPos.unpackX(key) << 4;
+                by = BlockPos.unpackY(key) << 4;
+                bz = BlockPos.unpackZ(key) << 4;
+                word = 0;
+                remaining = bits[0];
+            }
+            return true;
+        }
+
+        /** Next voxel, packed with BlockPos.pack. */
+        public long next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = (word << 6) | Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return BlockPos.pack(bx + (i & 15), by + (i >>> 8), bz + ((i >>> 4) & 15));
+        }
+    }
+
+    private final class BlockPosView extends AbstractSet<BlockPos> {
+        @Override public int size() { return size; }
+
+        @Override public boolean contains(Object o) {
+            if (!(o instanceof BlockPos)) return false;
+            BlockPos p = (BlockPos) o;
+            return VoxelSet.this.contains(p.x, p.y, p.z);
+        }
+
+        @Override public Iterator<BlockPos> iterator() {
+            return new Iterator<>() {
+                private final Cursor cursor = new Cursor();
+
+                @Override public boolean hasNext() { return cursor.hasNext(); }
+
+                @Override public BlockPos next() {
+                    long p = cursor.next();
+                    return new BlockPos(BlockPos.unpackX(p), BlockPos.unpackY(p), BlockPos.unpackZ(p));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package goat.thaw.system.space.flood;
+
+import goat.thaw.system.space.BoundaryFaces;
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.VoxelSet;
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import goat.thaw.system.util.LongArrayStack;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Space flood fill that runs on a worker thread against captured ChunkSnapshots.
+ *
+ * The main thread only snapshots chunks: the 3x3 around the seed up front, then any further chunks the
+ * frontier reaches, batched into one main-thread hop whenever the worker runs out of captured terrain.
+ * The fill, the sky check and the boundary influence sum all read snapshots, never the live world.
+ * Chunks are never loaded for a fill: air that runs into an unloaded chunk can't be shown to be sealed,
+ * so the fill gives up as unsealed.
+ *
+ * Given a ForkJoinPool, a fill that grows past PARALLEL_THRESHOLD voxels (a cavern rather than a room) switches
+ * to a section-parallel mode: the frontier is split by 16³ section, each section is flooded by one task against
+ * its own visited/air bitsets, and cells that cross into a neighbouring section are merged into the next round's
+ * frontier by the coordinating worker. No bitset is shared between tasks, so nothing needs to be atomic.
+ */
+public final class SnapshotFloodFill {
+    private static final long CAPTURE_TIMEOUT_SECONDS = 10L;
+    private static final int PARALLEL_THRESHOLD = 32_768;
+    private static final int WORDS = 64; // 4096 bits per section
+
+    private final Plugin plugin;
+    private final World world;
+    private final Executor workers;
+    private final int minY;
+    private final int maxY;
+    private final boolean strictSky;
+    private final int maxVoxels;
+    private final ForkJoinPool pool; // null: always sequential
+    private volatile boolean aborted; // set by the first parallel task that finds sky; the others stop early
+
+    // Owned by the main thread until start() hands it to the worker; afterwards only the worker touches it
+    private final LongObjectHashMap<ChunkSnapshot> snapshots = new LongObjectHashMap<>();
+
+    /**
+     * @param strictSky true: a voxel is open to the sky only when strictly above the column's highest block;
+     *                  false: also when level with it (the player-seeded fill's historical behaviour)
+     * @param maxVoxels give up (as unsealed) once this many air voxels have been collected
+     */
+    public SnapshotFloodFill(Plugin plugin, World world, Executor workers, boolean strictSky, int maxVoxels) {
+        this(plugin, world, workers, null, strictSky, maxVoxels);
+    }
+
+    /** @param pool runs the section-parallel mode for fills larger than PARALLEL_THRESHOLD voxels */
+    public SnapshotFloodFill(Plugin plugin, World world, Executor workers, ForkJoinPool pool, boolean strictSky, int maxVoxels) {
+        this.plugin = plugin;
+        this.pool = pool;
+        this.world = world;
+        this.workers = workers;
+        this.minY = world.getMinHeight();
+        this.maxY = world.getMaxHeight();
+        this.strictSky = strictSky;
+        this.maxVoxels = maxVoxels;
+    }
+
+    public static final class Result {
+        public final boolean unsealed;
+        public final VoxelSet voxels;
+        public final BoundaryFaces faces;
+        public final double totalInfluence;
+        public final int chunksCaptured;
+
+        Result(boolean unsealed, VoxelSet voxels, BoundaryFaces faces, int chunksCaptured) {
+            this.unsealed = unsealed;
+            this.voxels = voxels;
+            this.faces = faces;
+            this.totalInfluence = faces == null ? 0.0 : faces.total();
+            this.chunksCaptured = chunksCaptured;
+        }
+    }
+
+    /** Call on the main thread. The returned future completes on a worker thread. */
+    public CompletableFuture<Result> start(int sx, int sy, int sz) {
+        int cx = sx >> 4, cz = sz >> 4;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) capture(cx + dx, cz + dz);
+        }
+        return CompletableFuture.supplyAsync(() -> run(sx, sy, sz), workers);
+    }
+
+    private Result run(int sx, int sy, int sz) {
+        LongArrayStack stack = new LongArrayStack();
+        LongArrayStack deferred = new LongArrayStack(64); // voxels waiting for their chunk to be captured
+        LongObjectHashMap<Boolean> missing = new LongObjectHashMap<>();
+        VoxelSet visited = new VoxelSet();
+        VoxelSet collected = new VoxelSet();
+
+        pushIfValid(stack, visited, sx, sy, sz);
+        while (true) {
+            while (!stack.isEmpty()) {
+                long packed = stack.pop();
+                int x = BlockPos.unpackX(packed), y = BlockPos.unpackY(packed), z = BlockPos.unpackZ(packed);
+                ChunkSnapshot snap = snapshots.get(chunkKey(x >> 4, z >> 4));
+                if (snap == null) {
+                    deferred.push(packed);
+                    missing.put(chunkKey(x >> 4, z >> 4), Boolean.TRUE);
+                    continue;
+                }
+
+                int lx = x & 15, lz = z & 15;
+                int highest = snap.getHighestBlockYAt(lx, lz);
+                if (strictSky ? y > highest : highest <= y) return unsealed();
+
+                if (!snap.getBlockType(lx, y, lz).isAir()) continue; // boundary
+
+                collected.add(x, y, z);
+                if (collected.size() > maxVoxels) return unsealed();
+                if (pool != null && collected.size() >= PARALLEL_THRESHOLD) {
+                    pushNeighbours(stack, visited, x, y, z);
+                    while (!deferred.isEmpty()) stack.push(deferred.pop());
+                    return runParallel(stack, visited, collected);
+                }
+
+                pushNeighbours(stack, visited, x, y, z);
+            }
+            if (deferred.isEmpty()) break;
+            if (!captureOnMainThread(missing.keys())) return unsealed();
+            missing.clear();
+            while (!deferred.isEmpty()) stack.push(deferred.pop());
+        }
+
+        return new Result(false, collected, boundaryFaces(collected), snapshots.size());
+    }
+
+    // Every non-air neighbour was pushed and popped during the fill, so its chunk is already captured
+    private BoundaryFaces boundaryFaces(VoxelSet air) {
+        BoundaryFaces faces = new BoundaryFaces();
+        air.forEach((x, y, z) -> {
+            if (!air.contains(x + 1, y, z)) countFace(faces, x + 1, y, z);
+            if (!air.contains(x - 1, y, z)) countFace(faces, x - 1, y, z);
+            if (!air.contains(x, y + 1, z)) countFace(faces, x, y + 1, z);
+            if (!air.contains(x, y - 1, z)) countFace(faces, x, y - 1, z);
+            if (!air.contains(x, y, z + 1)) countFace(faces, x, y, z + 1);
+            if (!air.contains(x, y, z - 1)) countFace(faces, x, y, z - 1);
+        });
+        return faces;
+    }
+
+    private void countFace(BoundaryFaces faces, int x, int y, int z) {
+        if (y < minY || y >= maxY) return;
+        ChunkSnapshot snap = snapshots.get(chunkKey(x >> 4, z >> 4));
+        if (snap == null) return;
+        BlockData data = snap.getBlockData(x & 15, y, z & 15);
+        if (data.getMaterial().isAir()) return;
+        faces.add(TemperatureRegistry.kindOf(data), 1);
+    }
+
+    private void pushNeighbours(LongArrayStack stack, VoxelSet visited, int x, int y, int z) {
+        pushIfValid(stack, visited, x + 1, y, z);
+        pushIfValid(stack, visited, x - 1, y, z);
+        pushIfValid(stack, visited, x, y + 1, z);
+        pushIfValid(stack, visited, x, y - 1, z);
+        pushIfValid(stack, visited, x, y, z + 1);
+        pushIfValid(stack, visited, x, y, z - 1);
+    }
+
+    // ---- Section-parallel mode ----
+
+    // One 16³ section of the fill. Only the task flooding it in a round writes its bitsets and stacks;
+    // between rounds only the coordinating worker touches it.
+    private static final class Section {
+        final int sx, sy, sz;
+        final long[] visited = new long[WORDS]; // claimed cells, air or not
+        final long[] air = new long[WORDS];
+        int[] frontier = new int[16]; // local indices claimed but not yet flooded
+        int frontierSize;
+        LongArrayStack out; // packed cells this round's flood reached in other sections
+        ChunkSnapshot snap;
+
+        Section(int sx, int sy, int sz) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+        }
+
+        boolean claim(int i) {
+            long bit = 1L << i;
+            if ((visited[i >>> 6] & bit) != 0L) return false;
+            visited[i >>> 6] |= bit;
+            return true;
+        }
+
+        void enqueue(int i) {
+            if (frontierSize == frontier.length) frontier = Arrays.copyOf(frontier, frontierSize << 1);
+            frontier[frontierSize++] = i;
+        }
+    }
+
+    // Continues a fill that outgrew the sequential loop; the stack holds claimed, unflooded cells
+    private Result runParallel(LongArrayStack stack, VoxelSet visited, VoxelSet collected) {
+        LongObjectHashMap<Section> sections = new LongObjectHashMap<>();
+        visited.forEachSection((sx, sy, sz, bits) ->
+                System.arraycopy(bits, 0, section(sections, sx, sy, sz).visited, 0, WORDS));
+        collected.forEachSection((sx, sy, sz, bits) ->
+                System.arraycopy(bits, 0, section(sections, sx, sy, sz).air, 0, WORDS));
+        List<Section> round = new ArrayList<>();
+        while (!stack.isEmpty()) {
+            long p = stack.pop();
+            int x = BlockPos.unpackX(p), y = BlockPos.unpackY(p), z = BlockPos.unpackZ(p);
+            Section sec = section(sections, x >> 4, y >> 4, z >> 4);
+            if (sec.frontierSize == 0) round.add(sec);
+            sec.enqueue(localIndex(x, y, z));
+        }
+
+        AtomicInteger airCount = new AtomicInteger(collected.size());
+        while (!round.isEmpty()) {
+            if (!attachSnapshots(round)) return unsealed();
+            FloodRound task = new FloodRound(round.toArray(new Section[0]), 0, round.size(), airCount);
+            pool.invoke(task);
+            if (task.unsealed() || airCount.get() > maxVoxels) return unsealed();
+
+            // Border merge: cells that crossed into another section seed that section's next round
+            List<Section> next = new ArrayList<>();
+            for (Section sec : round) {
+                LongArrayStack out = sec.out;
+                while (out != null && !out.isEmpty()) {
+                    long p = out.pop();
+                    int x = BlockPos.unpackX(p), y = BlockPos.unpackY(p), z = BlockPos.unpackZ(p);
+                    Section target = section(sections, x >> 4, y >> 4, z >> 4);
+                    int i = localIndex(x, y, z);
+                    if (!target.claim(i)) continue;
+                    if (target.frontierSize == 0) next.add(target);
+                    target.enqueue(i);
+                }
+            }
+            round = next;
+        }
+
+        VoxelSet air = new VoxelSet();
+        List<Section> filled = new ArrayList<>();
+        sections.forEach((key, sec) -> {
+            boolean any = false;
+            for (long w : sec.air) any |= w != 0L;
+            if (!any) return;
+            air.addSection(sec.sx, sec.sy, sec.sz, sec.air);
+            filled.add(sec);
+        });
+        FaceRound faces = new FaceRound(filled.toArray(new Section[0]), 0, filled.size(), air);
+        pool.invoke(faces);
+        return new Result(false, air, faces.faces, snapshots.size());
+    }
+
+    // Captures any chunk this round's sections lie in that hasn't been snapshotted yet, in one main-thread hop
+    private boolean attachSnapshots(List<Section> round) {
+        LongObjectHashMap<Boolean> missing = new LongObjectHashMap<>();
+        for (Section sec : round) {
+            if (!snapshots.containsKey(chunkKey(sec.sx, sec.sz))) missing.put(chunkKey(sec.sx, sec.sz), Boolean.TRUE);
+        }
+        if (!missing.isEmpty() && !captureOnMainThread(missing.keys())) return false;
+        for (Section sec : round) sec.snap = snapshots.get(chunkKey(sec.sx, sec.sz));
+        return true;
+    }
+
+    private static Section section(LongObjectHashMap<Section> sections, int sx, int sy, int sz) {
+        long key = BlockPos.pack(sx, sy, sz);
+        Section sec = sections.get(key);
+        if (sec == null) {
+            sec = new Section(sx, sy, sz);
+            sections.put(key, sec);
+        }
+        return sec;
+    }
+
+    // Same layout as VoxelSet: y-major, then z, then x
+    private static int localIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    // Floods a slice of the round's sections, splitting in halves until one section per task
+    private final class FloodRound extends RecursiveAction {
+        private final Section[] round;
+        private final int lo, hi;
+        private final AtomicInteger airCount;
+        private boolean unsealed;
+
+        FloodRound(Section[] round, int lo, int hi, AtomicInteger airCount) {
+            this.round = round;
+            this.lo = lo;
+            this.hi = hi;
+            this.airCount = airCount;
+        }
+
+        boolean unsealed() { return unsealed; }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                FloodRound left = new FloodRound(round, lo, mid, airCount);
+                FloodRound right = new FloodRound(round, mid, hi, airCount);
+                invokeAll(left, right);
+                unsealed = left.unsealed || right.unsealed;
+                return;
+            }
+            unsealed = !flood(round[lo]);
+            if (unsealed) aborted = true;
+        }
+
+        // Returns false on sky exposure or once the voxel cap is passed
+        private boolean flood(Section sec) {
+            int bx = sec.sx << 4, by = sec.sy << 4, bz = sec.sz << 4;
+            ChunkSnapshot snap = sec.snap;
+            int[] stack = sec.frontier;
+            int size = sec.frontierSize;
+            sec.frontier = new int[16];
+            sec.frontierSize = 0;
+            int local = 0;
+            while (size > 0) {
+                int i = stack[--size];
+                int lx = i & 15, ly = i >>> 8, lz = (i >>> 4) & 15;
+                int y = by + ly;
+                int highest = snap.getHighestBlockYAt(lx, lz);
+                if (strictSky ? y > highest : highest <= y) return false;
+                if (!snap.getBlockType(lx, y, lz).isAir()) continue;
+                sec.air[i >>> 6] |= 1L << i;
+                // Check in with the other tasks every 1024 cells: stop once any of them saw sky or the cap is passed
+                if ((++local & 1023) == 0 && (aborted || airCount.addAndGet(1024) > maxVoxels)) return false;
+
+                for (int d = 0; d < 6; d++) {
+                    int nlx = lx, nly = ly, nlz = lz;
+                    switch (d) {
+                        case 0: nlx++; break;
+                        case 1: nlx--; break;
+                        case 2: nly++; break;
+                        case 3: nly--; break;
+                        case 4: nlz++; break;
+                        default: nlz--; break;
+                    }
+                    if (((nlx | nly | nlz) & ~15) != 0) {
+                        int ny = by + nly;
+                        if (ny < minY || ny >= maxY) continue;
+                        if (sec.out == null) sec.out = new LongArrayStack(64);
+                        sec.out.push(BlockPos.pack(bx + nlx, ny, bz + nlz));
+                        continue;
+                    }
+                    int n = (nly << 8) | (nlz << 4) | nlx;
+                    if (!sec.claim(n)) continue;
+                    if (size == stack.length) stack = Arrays.copyOf(stack, size << 1);
+                    stack[size++] = n;
+                }
+            }
+            airCount.addAndGet(local & 1023);
+            return true;
+        }
+    }
+
+    // Boundary faces per section in parallel, merged pairwise on the way back up
+    private final class FaceRound extends RecursiveAction {
+        private final Section[] filled;
+        private final int lo, hi;
+        private final VoxelSet air;
+        BoundaryFaces faces;
+
+        FaceRound(Section[] filled, int lo, int hi, VoxelSet air) {
+            this.filled = filled;
+            this.lo = lo;
+            this.hi = hi;
+            this.air = air;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 8) {
+                int mid = (lo + hi) >>> 1;
+                FaceRound left = new FaceRound(filled, lo, mid, air);
+                FaceRound right = new FaceRound(filled, mid, hi, air);
+                invokeAll(left, right);
+                left.faces.addAll(right.faces);
+                faces = left.faces;
+                return;
+            }
+            faces = new BoundaryFaces();
+            for (int s = lo; s < hi; s++) {
+                Section sec = filled[s];
+                int bx = sec.sx << 4, by = sec.sy << 4, bz = sec.sz << 4;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = sec.air[w];
+                    while (word != 0L) {
+                        int i = (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        int x = bx + (i & 15), y = by + (i >>> 8), z = bz + ((i >>> 4) & 15);
+                        if (!air.contains(x + 1, y, z)) countFace(faces, x + 1, y, z);
+                        if (!air.contains(x - 1, y, z)) countFace(faces, x - 1, y, z);
+                        if (!air.contains(x, y + 1, z)) countFace(faces, x, y + 1, z);
+                        if (!air.contains(x, y - 1, z)) countFace(faces, x, y - 1, z);
+                        if (!air.contains(x, y, z + 1)) countFace(faces, x, y, z + 1);
+                        if (!air.contains(x, y, z - 1)) countFace(faces, x, y, z - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void pushIfValid(LongArrayStack stack, VoxelSet visited, int x, int y, int z) {
+        if (y < minY || y >= maxY) return;
+        if (visited.add(x, y, z)) stack.push(BlockPos.pack(x, y, z));
+    }
+
+    // Worker thread: hop to the main thread once for the whole batch and wait for the snapshots
+    private boolean captureOnMainThread(long[] chunkKeys) {
+        CompletableFuture<ChunkSnapshot[]> future = new CompletableFuture<>();
+        try {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    ChunkSnapshot[] out = new ChunkSnapshot[chunkKeys.length];
+                    for (int i = 0; i < chunkKeys.length; i++) {
+                        out[i] = snapshotOf(chunkX(chunkKeys[i]), chunkZ(chunkKeys[i]));
+                        if (out[i] == null) { future.complete(null); return; } // unloaded; no need to capture the rest
+                    }
+                    future.complete(out);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+            ChunkSnapshot[] captured = future.get(CAPTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (captured == null) return false;
+            for (int i = 0; i < chunkKeys.length; i++) snapshots.put(chunkKeys[i], captured[i]);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            // Plugin disabled or the server stalled; the caller reports the fill as unsealed
+            return false;
+        }
+    }
+
+    // An unloaded neighbour is left out; the fill asks again (and gives up) only if it actually gets there
+    private void capture(int cx, int cz) {
+        ChunkSnapshot snap = snapshotOf(cx, cz);
+        if (snap != null) snapshots.put(chunkKey(cx, cz), snap);
+    }
+
+    // Null when the chunk isn't loaded: getChunkAt would load or even generate it on the main thread
+    private ChunkSnapshot snapshotOf(int cx, int cz) {
+        if (!world.isChunkLoaded(cx, cz)) return null;
+        // Heightmap included for the sky check; biome and temperature data are not needed
+        return world.getChunkAt(cx, cz).getChunkSnapshot(true, false, false);
+    }
+
+    private Result unsealed() {
+        return new Result(true, null, null, snapshots.size());
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private static int chunkX(long key) { return (int) (key >> 32); }
+    private static int chunkZ(long key) { return (int) key; }
+}
@@ -0,0 +1,116 @@
+package goat.thaw.system.space.flood;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.VoxelSet;
+import goat.thaw.system.util.LongArrayStack;
+import org.bukkit.World;
+
+/**
+ * Reusable 6-connected depth-first traversal over block coordinates, for the world-reading fills outside
+ * the space system (oxygen sky checks, DICE sampling, the dev mapping command).
+ *
+ * Cells are packed longs on a primitive stack and visited cells live in a bitset VoxelSet, so a run
+ * allocates nothing per cell. Like the space flood fills, neighbours are claimed when pushed and the
+ * caller decides on pop whether a cell is passable. A run stops on the visitor's request, or pauses
+ * when the step or time budget is spent and picks up where it left off on the next run() call.
+ *
+ * Not thread-safe; keep one per thread (or per caller on the main thread) and reset() between uses.
+ */
+public final class VoxelTraversal {
+    public enum Step {
+        EXPAND, // passable: push its unvisited neighbours
+        SKIP,   // boundary: don't expand from here
+        STOP    // end the traversal now
+    }
+
+    public enum Result {
+        COMPLETE, // every reachable cell was visited
+        STOPPED,  // the visitor returned STOP
+        PAUSED    // step or time budget spent; run() again to continue
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        Step visit(int x, int y, int z);
+    }
+
+    private final LongArrayStack stack = new LongArrayStack();
+    private final VoxelSet visited = new VoxelSet();
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+    private int steps;
+
+    /** Clears all state and limits the traversal to the world's build height. */
+    public VoxelTraversal reset(World world) {
+        return reset(world.getMinHeight(), world.getMaxHeight());
+    }
+
+    /** Clears all state; y must stay in [minY, maxY). */
+    public VoxelTraversal reset(int minY, int maxY) {
+        stack.clear();
+        visited.clear();
+        steps = 0;
+        this.minX = Integer.MIN_VALUE;
+        this.minZ = Integer.MIN_VALUE;
+        this.maxX = Integer.MAX_VALUE;
+        this.maxZ = Integer.MAX_VALUE;
+        this.minY = minY;
+        this.maxY = maxY - 1;
+        return this;
+    }
+
+    /** Additionally confines the traversal to a box (inclusive), e.g. a sampling radius. Call after reset. */
+    public VoxelTraversal clip(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = Math.max(this.minX, minX);
+        this.minY = Math.max(this.minY, minY);
+        this.minZ = Math.max(this.minZ, minZ);
+        this.maxX = Math.min(this.maxX, maxX);
+        this.maxY = Math.min(this.maxY, maxY);
+        this.maxZ = Math.min(this.maxZ, maxZ);
+        return this;
+    }
+
+    public VoxelTraversal seed(int x, int y, int z) {
+        push(x, y, z);
+        return this;
+    }
+
+    /**
+     * Pops and visits cells until the visitor stops, nothing is left, maxSteps cells have been visited in
+     * this call, or System.nanoTime() passes deadlineNanos (pass Long.MAX_VALUE for no deadline).
+     */
+    public Result run(Visitor visitor, int maxSteps, long deadlineNanos) {
+        int done = 0;
+        while (!stack.isEmpty()) {
+            if (done >= maxSteps) return Result.PAUSED;
+            if ((done & 63) == 63 && System.nanoTime() >= deadlineNanos) return Result.PAUSED;
+            long p = stack.pop();
+            int x = BlockPos.unpackX(p), y = BlockPos.unpackY(p), z = BlockPos.unpackZ(p);
+            done++;
+            steps++;
+            Step step = visitor.visit(x, y, z);
+            if (step == Step.STOP) return Result.STOPPED;
+            if (step == Step.SKIP) continue;
+            push(x + 1, y, z);
+            push(x - 1, y, z);
+            push(x, y + 1, z);
+            push(x, y - 1, z);
+            push(x, y, z + 1);
+            push(x, y, z - 1);
+        }
+        return Result.COMPLETE;
+    }
+
+    public Result run(Visitor visitor, int maxSteps) {
+        return run(visitor, maxSteps, Long.MAX_VALUE);
+    }
+
+    /** Cells visited since the last reset. */
+    public int steps() { return steps; }
+
+    public boolean isDone() { return stack.isEmpty(); }
+
+    private void push(int x, int y, int z) {
+        if (y < minY || y > maxY || x < minX || x > maxX || z < minZ || z > maxZ) return;
+        if (visited.add(x, y, z)) stack.push(BlockPos.pack(x, y, z));
+    }
+}
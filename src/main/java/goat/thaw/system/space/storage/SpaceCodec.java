@@ -0,0 +1,189 @@
+package goat.thaw.system.space.storage;
+
+import goat.thaw.system.space.BoundaryFaces;
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.VoxelSet;
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import org.bukkit.Material;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Binary encoding for space records. Voxels are written per 16x16x16 section:
+ * sparse sections as a delta/varint list of bit indices, dense ones as the raw 64-word bitset,
+ * whichever is smaller. A typical room section costs tens of bytes instead of "x,y,z" per voxel.
+ */
+final class SpaceCodec {
+    private static final int MODE_LIST = 0;
+    private static final int MODE_BITSET = 1;
+    // Above this many voxels a 512-byte raw bitset beats the varint index list
+    private static final int LIST_MAX = 320;
+
+    private SpaceCodec() {}
+
+    static void writeSpace(DataOutput out, Space s) throws IOException {
+        writeUuid(out, s.getId());
+        out.writeUTF(s.getWorldName());
+        out.writeDouble(s.getTemperature());
+        out.writeDouble(s.getTotalInfluence());
+        writeVarInt(out, s.getAirBlocks());
+        writeVoxels(out, s.getVoxels());
+        writeFacesTrailer(out, s.getFaces());
+    }
+
+    static SpaceRecord readSpace(DataInputStream in) throws IOException {
+        UUID id = readUuid(in);
+        String world = in.readUTF();
+        double temperature = in.readDouble();
+        double influence = in.readDouble();
+        int air = readVarInt(in);
+        VoxelSet voxels = new VoxelSet();
+        readVoxels(in, voxels, false);
+        SpaceRecord rec = new SpaceRecord(id, world, voxels, temperature, influence, air);
+        rec.faces = readFacesTrailer(in);
+        return rec;
+    }
+
+    /**
+     * The face histogram rides at the end of a record's payload. Payloads are length-framed, so records
+     * written before histograms existed simply end early and read back as "no histogram".
+     */
+    static void writeFacesTrailer(DataOutput out, BoundaryFaces faces) throws IOException {
+        if (faces == null) return;
+        out.writeByte(1);
+        writeVarInt(out, faces.kinds());
+        IOException[] failure = new IOException[1];
+        faces.forEach((kind, count) -> {
+            if (failure[0] != null) return;
+            try {
+                // By name, not ordinal: ordinals shift between server versions
+                out.writeUTF(TemperatureRegistry.materialOf(kind).name());
+                out.writeByte(TemperatureRegistry.snowLayersOf(kind));
+                writeZigZag(out, count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    static BoundaryFaces readFacesTrailer(DataInputStream in) throws IOException {
+        if (in.available() <= 0 || in.readUnsignedByte() != 1) return null;
+        int kinds = readVarInt(in);
+        BoundaryFaces faces = new BoundaryFaces();
+        for (int i = 0; i < kinds; i++) {
+            String name = in.readUTF();
+            int layers = in.readUnsignedByte();
+            int count = readZigZag(in);
+            Material m = Material.getMaterial(name);
+            if (m == null) continue; // material no longer exists; its faces read as neutral
+            faces.add(TemperatureRegistry.kindOf(m) | (layers & 15), count);
+        }
+        faces.recomputeTotal(); // one clean sum with this server's registry values
+        return faces;
+    }
+
+    static void writeVoxels(DataOutput out, VoxelSet voxels) throws IOException {
+        writeVarInt(out, voxels.sectionCount());
+        IOException[] failure = new IOException[1];
+        voxels.forEachSection((sx, sy, sz, bits) -> {
+            if (failure[0] != null) return;
+            try {
+                writeSection(out, sx, sy, sz, bits);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /** Reads a voxel block written by {@link #writeVoxels}, adding (or removing) it into {@code target}. */
+    static void readVoxels(DataInput in, VoxelSet target, boolean remove) throws IOException {
+        int sections = readVarInt(in);
+        long[] bits = new long[64];
+        for (int i = 0; i < sections; i++) {
+            int sx = readZigZag(in);
+            int sy = readZigZag(in);
+            int sz = readZigZag(in);
+            java.util.Arrays.fill(bits, 0L);
+            int mode = in.readUnsignedByte();
+            if (mode == MODE_BITSET) {
+                for (int w = 0; w < 64; w++) bits[w] = in.readLong();
+            } else {
+                int count = readVarInt(in);
+                int idx = -1;
+                for (int n = 0; n < count; n++) {
+                    idx += readVarInt(in) + 1;
+                    bits[idx >>> 6] |= 1L << idx;
+                }
+            }
+            if (remove) target.removeSection(sx, sy, sz, bits);
+            else target.addSection(sx, sy, sz, bits);
+        }
+    }
+
+    private static void writeSection(DataOutput out, int sx, int sy, int sz, long[] bits) throws IOException {
+        writeZigZag(out, sx);
+        writeZigZag(out, sy);
+        writeZigZag(out, sz);
+        int count = 0;
+        for (long w : bits) count += Long.bitCount(w);
+        if (count > LIST_MAX) {
+            out.writeByte(MODE_BITSET);
+            for (long w : bits) out.writeLong(w);
+            return;
+        }
+        out.writeByte(MODE_LIST);
+        writeVarInt(out, count);
+        int prev = -1;
+        for (int w = 0; w < 64; w++) {
+            long word = bits[w];
+            while (word != 0L) {
+                int idx = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                writeVarInt(out, idx - prev - 1); // gaps between set bits, mostly 0 in a solid room
+                prev = idx;
+            }
+        }
+    }
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    static void writeZigZag(DataOutput out, int v) throws IOException {
+        writeVarInt(out, (v << 1) ^ (v >> 31));
+    }
+
+    static int readZigZag(DataInput in) throws IOException {
+        int v = readVarInt(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
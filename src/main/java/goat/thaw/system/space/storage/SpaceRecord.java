@@ -0,0 +1,32 @@
+package goat.thaw.system.space.storage;
+
+import goat.thaw.system.space.BoundaryFaces;
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.VoxelSet;
+
+import java.util.UUID;
+
+// Mutable replay state for one space while a region's snapshot and journal are applied.
+final class SpaceRecord {
+    final UUID id;
+    final String world;
+    final VoxelSet voxels;
+    double temperature;
+    double totalInfluence;
+    int airBlocks;
+    BoundaryFaces faces; // null for records saved before face histograms
+
+    SpaceRecord(UUID id, String world, VoxelSet voxels, double temperature, double totalInfluence, int airBlocks) {
+        this.id = id;
+        this.world = world;
+        this.voxels = voxels;
+        this.temperature = temperature;
+        this.totalInfluence = totalInfluence;
+        this.airBlocks = airBlocks;
+    }
+
+    Space toSpace() {
+        if (faces != null) return new Space(id, world, voxels, faces);
+        return new Space(id, world, voxels, temperature, totalInfluence, airBlocks);
+    }
+}
@@ -0,0 +1,435 @@
+package goat.thaw.system.space.storage;
+
+import goat.thaw.system.space.BoundaryFaces;
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.VoxelSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Region-sharded, journaled persistence for spaces.
+ *
+ * Layout: spaces/<world>/r.<rx>.<rz>.dat (compacted snapshot) and r.<rx>.<rz>.log (append-only journal),
+ * with regions of 512x512 blocks like vanilla. A space's full record lives in its home region; every other
+ * region it covers carries a small REF entry pointing home. Each edit appends one framed record to the
+ * journal on a dedicated I/O thread; once a journal outgrows its snapshot the region is compacted in the
+ * background by replaying both into a fresh snapshot and atomically swapping it in.
+ *
+ * Spaces are read a region at a time as terrain loads ({@link #loadRegion}), or a few ids at a time once
+ * the caller knows which ones a chunk needs ({@link #loadSpaces}); nothing reads every region.
+ * All methods except {@link #flush()} and {@link #close()} return immediately.
+ * Spaces are immutable, so they are handed to the I/O thread as-is and encoded there.
+ */
+public class SpaceStore {
+    private static final int MAGIC = 0x54485350; // "THSP"
+    private static final int VERSION = 1;
+
+    private static final int OP_PUT = 1;    // full record
+    private static final int OP_DELTA = 2;  // metadata + added/removed voxels
+    private static final int OP_DELETE = 3;
+    private static final int OP_REF = 4;    // space covers this region, record lives in home region
+    private static final int OP_UNREF = 5;
+
+    private static final long COMPACT_MIN_BYTES = 64L * 1024L;
+
+    private final File root;
+    private final Logger logger;
+    private final ExecutorService io;
+
+    // I/O-thread state only; homes/coverage hold resident spaces and anything written this session
+    private final Map<UUID, RegionKey> homes = new HashMap<>();
+    private final Map<UUID, Set<RegionKey>> coverage = new HashMap<>();
+    private final Map<RegionKey, Long> journalBytes = new HashMap<>();
+    private final Map<RegionKey, Long> snapshotBytes = new HashMap<>();
+
+    public SpaceStore(File root, Logger logger) {
+        this.root = root;
+        this.logger = logger;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Thaw-SpaceIO");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public File getRoot() { return root; }
+
+    /**
+     * Reads the spaces covering one region: those whose record lives there, plus those that only REF it
+     * (read from their home regions). Runs on the I/O thread behind any writes already queued, so a space
+     * evicted with pending changes reads back with them applied.
+     */
+    public CompletableFuture<List<Space>> loadRegion(String world, int rx, int rz) {
+        return CompletableFuture.supplyAsync(() -> read(new RegionKey(world, rx, rz), null), io);
+    }
+
+    /**
+     * Same as loadRegion, limited to the given ids. Every region a space covers holds its record or a REF,
+     * so any one of them finds it; ids the region no longer knows are simply missing from the result.
+     */
+    public CompletableFuture<List<Space>> loadSpaces(String world, int rx, int rz, Set<UUID> ids) {
+        return CompletableFuture.supplyAsync(() -> read(new RegionKey(world, rx, rz), ids), io);
+    }
+
+    // I/O thread; only: ids to keep, or null for all
+    private List<Space> read(RegionKey region, Set<UUID> only) {
+        List<Space> out = new ArrayList<>();
+        RegionState state = replay(region);
+        for (SpaceRecord rec : state.spaces.values()) {
+            if (only == null || only.contains(rec.id)) out.add(track(rec.toSpace(), region));
+        }
+
+        Map<RegionKey, List<UUID>> remote = new HashMap<>();
+        for (Map.Entry<UUID, RegionKey> ref : state.refs.entrySet()) {
+            if (only != null && !only.contains(ref.getKey())) continue;
+            remote.computeIfAbsent(ref.getValue(), k -> new ArrayList<>()).add(ref.getKey());
+        }
+        for (Map.Entry<RegionKey, List<UUID>> e : remote.entrySet()) {
+            RegionState home = replay(e.getKey());
+            for (UUID id : e.getValue()) {
+                SpaceRecord rec = home.spaces.get(id);
+                if (rec != null) out.add(track(rec.toSpace(), e.getKey()));
+            }
+        }
+        return out;
+    }
+
+    /** The space is no longer resident; drop its I/O bookkeeping once its queued writes are done. */
+    public void evict(Space s) {
+        io.execute(() -> {
+            homes.remove(s.getId());
+            coverage.remove(s.getId());
+        });
+    }
+
+    private Space track(Space s, RegionKey home) {
+        homes.put(s.getId(), home);
+        coverage.put(s.getId(), regionsOf(s));
+        return s;
+    }
+
+    public void put(Space s) {
+        io.execute(() -> writePut(s));
+    }
+
+    /** Journals only what changed between two versions of the same space. */
+    public void putChange(Space prev, Space updated) {
+        if (prev == null) {
+            put(updated);
+            return;
+        }
+        io.execute(() -> {
+            RegionKey home = homes.get(updated.getId());
+            VoxelSet added = VoxelSet.difference(updated.getVoxels(), prev.getVoxels());
+            VoxelSet removed = VoxelSet.difference(prev.getVoxels(), updated.getVoxels());
+            // A rewrite is smaller than a delta that touches most of the space
+            if (home == null || added.size() + removed.size() > updated.getVoxels().size() / 2) {
+                writePut(updated);
+                return;
+            }
+            byte[] payload = encode(out -> {
+                SpaceCodec.writeUuid(out, updated.getId());
+                out.writeDouble(updated.getTemperature());
+                out.writeDouble(updated.getTotalInfluence());
+                SpaceCodec.writeVarInt(out, updated.getAirBlocks());
+                SpaceCodec.writeVoxels(out, added);
+                SpaceCodec.writeVoxels(out, removed);
+                SpaceCodec.writeFacesTrailer(out, updated.getFaces());
+            });
+            append(home, OP_DELTA, payload);
+            updateRefs(updated.getId(), home, regionsOf(updated));
+            maybeCompact(home);
+        });
+    }
+
+    public void delete(Space s) {
+        io.execute(() -> {
+            RegionKey home = homes.remove(s.getId());
+            if (home == null) home = homeFor(s);
+            byte[] payload = encode(out -> SpaceCodec.writeUuid(out, s.getId()));
+            append(home, OP_DELETE, payload);
+            Set<RegionKey> refs = coverage.remove(s.getId());
+            if (refs != null) {
+                for (RegionKey r : refs) if (!r.equals(home)) append(r, OP_UNREF, payload);
+            }
+            maybeCompact(home);
+        });
+    }
+
+    /** Blocks until every write queued so far has reached disk. */
+    public void flush() {
+        try {
+            io.submit(() -> {}).get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warning("Timed out flushing spaces: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        flush();
+        io.shutdown();
+        try {
+            io.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePut(Space s) {
+        RegionKey home = homes.get(s.getId());
+        if (home == null) {
+            home = homeFor(s);
+            homes.put(s.getId(), home);
+        }
+        append(home, OP_PUT, encode(out -> SpaceCodec.writeSpace(out, s)));
+        updateRefs(s.getId(), home, regionsOf(s));
+        maybeCompact(home);
+    }
+
+    private void updateRefs(UUID id, RegionKey home, Set<RegionKey> now) {
+        Set<RegionKey> before = coverage.getOrDefault(id, Collections.emptySet());
+        if (before.equals(now)) return;
+        byte[] ref = encode(out -> {
+            SpaceCodec.writeUuid(out, id);
+            SpaceCodec.writeZigZag(out, home.rx);
+            SpaceCodec.writeZigZag(out, home.rz);
+        });
+        byte[] unref = encode(out -> SpaceCodec.writeUuid(out, id));
+        for (RegionKey r : now) if (!r.equals(home) && !before.contains(r)) append(r, OP_REF, ref);
+        for (RegionKey r : before) if (!r.equals(home) && !now.contains(r)) append(r, OP_UNREF, unref);
+        coverage.put(id, now);
+    }
+
+    private void append(RegionKey region, int op, byte[] payload) {
+        File log = journalFile(region);
+        log.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(log, true))) {
+            writeFrame(out, op, payload);
+            journalBytes.merge(region, (long) out.size(), Long::sum);
+        } catch (IOException e) {
+            logger.warning("Failed to save space change to " + log.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void maybeCompact(RegionKey region) {
+        long journal = journalBytes.getOrDefault(region, 0L);
+        long snapshot = snapshotBytes.getOrDefault(region, 0L);
+        if (journal < Math.max(COMPACT_MIN_BYTES, snapshot)) return;
+        compact(region);
+    }
+
+    private void compact(RegionKey region) {
+        RegionState state = replay(region);
+        File snap = snapshotFile(region);
+        File tmp = new File(snap.getParentFile(), snap.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (SpaceRecord rec : state.spaces.values()) {
+                writeFrame(out, OP_PUT, encode(o -> SpaceCodec.writeSpace(o, rec.toSpace())));
+            }
+            for (Map.Entry<UUID, RegionKey> ref : state.refs.entrySet()) {
+                writeFrame(out, OP_REF, encode(o -> {
+                    SpaceCodec.writeUuid(o, ref.getKey());
+                    SpaceCodec.writeZigZag(o, ref.getValue().rx);
+                    SpaceCodec.writeZigZag(o, ref.getValue().rz);
+                }));
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to compact spaces region " + snap.getName() + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), snap.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Replaying a journal over the snapshot it produced is idempotent, so a crash here loses nothing
+            Files.deleteIfExists(journalFile(region).toPath());
+        } catch (IOException e) {
+            logger.warning("Failed to swap spaces region " + snap.getName() + ": " + e.getMessage());
+            return;
+        }
+        if (state.spaces.isEmpty() && state.refs.isEmpty()) snap.delete();
+        journalBytes.put(region, 0L);
+        snapshotBytes.put(region, snap.length());
+    }
+
+    private RegionState replay(RegionKey region) {
+        RegionState state = new RegionState();
+        File snap = snapshotFile(region);
+        if (snap.exists()) {
+            try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(Files.newInputStream(snap.toPath())))) {
+                if (in.readInt() != MAGIC) throw new IOException("bad magic");
+                int version = in.readUnsignedByte();
+                if (version > VERSION) throw new IOException("unsupported version " + version);
+                while (readFrame(in, region, state)) { }
+            } catch (IOException e) {
+                logger.warning("Failed to read spaces region " + snap.getName() + ": " + e.getMessage());
+            }
+            snapshotBytes.put(region, snap.length());
+        }
+        File log = journalFile(region);
+        if (log.exists()) {
+            long good = 0;
+            try {
+                byte[] data = Files.readAllBytes(log.toPath());
+                ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+                DataInputStream in = new DataInputStream(bytes);
+                try {
+                    while (readFrame(in, region, state)) good = data.length - bytes.available();
+                } catch (IOException corrupt) {
+                    logger.warning("Truncating damaged spaces journal " + log.getName() + ": " + corrupt.getMessage());
+                }
+                // Drop a torn tail left by a crash mid-append so later appends stay readable
+                if (good < data.length) {
+                    try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+                        raf.setLength(good);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warning("Failed to read spaces journal " + log.getName() + ": " + e.getMessage());
+            }
+            journalBytes.put(region, good);
+        }
+        return state;
+    }
+
+    // Returns false at a clean or torn end of stream
+    private boolean readFrame(DataInputStream in, RegionKey region, RegionState state) throws IOException {
+        int op;
+        byte[] payload;
+        try {
+            op = in.read();
+            if (op < 0) return false;
+            int len = SpaceCodec.readVarInt(in);
+            payload = new byte[len];
+            in.readFully(payload);
+        } catch (EOFException torn) {
+            return false;
+        }
+        DataInputStream p = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (op) {
+            case OP_PUT: {
+                SpaceRecord rec = SpaceCodec.readSpace(p);
+                state.spaces.put(rec.id, rec);
+                break;
+            }
+            case OP_DELTA: {
+                UUID id = SpaceCodec.readUuid(p);
+                double temperature = p.readDouble();
+                double influence = p.readDouble();
+                int air = SpaceCodec.readVarInt(p);
+                SpaceRecord rec = state.spaces.get(id);
+                if (rec == null) break; // delta for a space deleted later in the log
+                SpaceCodec.readVoxels(p, rec.voxels, false);
+                SpaceCodec.readVoxels(p, rec.voxels, true);
+                BoundaryFaces faces = SpaceCodec.readFacesTrailer(p);
+                if (faces != null) rec.faces = faces;
+                rec.temperature = temperature;
+                rec.totalInfluence = influence;
+                rec.airBlocks = air;
+                break;
+            }
+            case OP_DELETE:
+                state.spaces.remove(SpaceCodec.readUuid(p));
+                break;
+            case OP_REF: {
+                UUID id = SpaceCodec.readUuid(p);
+                int rx = SpaceCodec.readZigZag(p);
+                int rz = SpaceCodec.readZigZag(p);
+                state.refs.put(id, new RegionKey(region.world, rx, rz));
+                break;
+            }
+            case OP_UNREF:
+                state.refs.remove(SpaceCodec.readUuid(p));
+                break;
+            default:
+                throw new IOException("unknown op " + op);
+        }
+        return true;
+    }
+
+    private static void writeFrame(DataOutputStream out, int op, byte[] payload) throws IOException {
+        out.writeByte(op);
+        SpaceCodec.writeVarInt(out, payload.length);
+        out.write(payload);
+    }
+
+    private static RegionKey homeFor(Space s) {
+        Iterator<RegionKey> it = regionsOf(s).iterator();
+        if (it.hasNext()) return it.next();
+        return new RegionKey(s.getWorldName(), 0, 0);
+    }
+
+    private static Set<RegionKey> regionsOf(Space s) {
+        Set<RegionKey> out = new TreeSet<>();
+        s.getVoxels().forEachSection((sx, sy, sz, bits) -> out.add(new RegionKey(s.getWorldName(), sx >> 5, sz >> 5)));
+        return out;
+    }
+
+    private File snapshotFile(RegionKey r) {
+        return new File(new File(root, r.world), "r." + r.rx + "." + r.rz + ".dat");
+    }
+
+    private File journalFile(RegionKey r) {
+        return new File(new File(root, r.world), "r." + r.rx + "." + r.rz + ".log");
+    }
+
+    private interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encoder.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class RegionState {
+        final Map<UUID, SpaceRecord> spaces = new LinkedHashMap<>();
+        final Map<UUID, RegionKey> refs = new LinkedHashMap<>();
+    }
+
+    static final class RegionKey implements Comparable<RegionKey> {
+        final String world;
+        final int rx, rz;
+
+        RegionKey(String world, int rx, int rz) {
+            this.world = world;
+            this.rx = rx;
+            this.rz = rz;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RegionKey)) return false;
+            RegionKey k = (RegionKey) o;
+            return rx == k.rx && rz == k.rz && world.equals(k.world);
+        }
+        @Override public int hashCode() { return Objects.hash(world, rx, rz); }
+        @Override public int compareTo(RegionKey o) {
+            int c = world.compareTo(o.world);
+            if (c != 0) return c;
+            c = Integer.compare(rx, o.rx);
+            return c != 0 ? c : Integer.compare(rz, o.rz);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package goat.thaw.system.space.temperature;
+
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.VoxelSet;
+import goat.thaw.system.util.LongIntHashMap;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+
+/**
+ * Coarse thermal grid for one space: its voxels binned into 4x4x4 cells, each with a temperature.
+ *
+ * Cells exchange heat through the voxel faces they actually share (so a doorway-sized opening conducts
+ * like a doorway), sources and sinks heat the cells whose walls touch them, and every wall face leaks
+ * toward the neutral 65F. The leak is calibrated per space so that a well-mixed space settles on the
+ * same temperature the static model gives; what the simulation adds is where and how fast it gets there.
+ *
+ * Built and stepped on the HeatSolver thread. Readers only use sample(), which reads a published copy.
+ */
+final class HeatModel {
+    private static final double NEUTRAL = 65.0;
+    private static final double CAPACITY = 30.0;    // per air voxel; sets how many seconds a change takes to settle
+    private static final double CONDUCTANCE = 2.0;  // per shared voxel face between cells
+    private static final double DEFAULT_LEAK = 0.05; // per wall face, when the space has no net source
+    private static final int SWEEPS = 4;            // Gauss-Seidel sweeps per implicit step
+
+    final Space source; // the space version this was built from
+    private final LongIntHashMap cellIndex; // packed cell coords -> index; read-only after build
+    private final int[] air;
+    private final double[] heat; // source influence entering each cell, per second
+    private final double[] leak; // wall conductance of each cell toward NEUTRAL
+    private final int[] adjStart;
+    private final int[] adjCell;
+    private final double[] adjConductance;
+    private final double[] temps; // working values, solver thread only
+    private volatile double[] published;
+    private volatile double mean;
+
+    private HeatModel(Space source, LongIntHashMap cellIndex, int[] air, double[] heat, double[] leak,
+                      int[] adjStart, int[] adjCell, double[] adjConductance, double[] temps) {
+        this.source = source;
+        this.cellIndex = cellIndex;
+        this.air = air;
+        this.heat = heat;
+        this.leak = leak;
+        this.adjStart = adjStart;
+        this.adjCell = adjCell;
+        this.adjConductance = adjConductance;
+        this.temps = temps;
+        publish();
+    }
+
+    /**
+     * Bins the space into cells and reads its wall blocks from the snapshots (chunk key -> snapshot).
+     * Cells that existed in {@code previous} keep their temperature, so an edit doesn't reset the room;
+     * new cells start at the previous mean, or at the static temperature for a space seen for the first time.
+     */
+    static HeatModel build(Space space, LongObjectHashMap<ChunkSnapshot> snapshots, int minY, int maxY, HeatModel previous) {
+        VoxelSet voxels = space.getVoxels();
+        LongIntHashMap cellIndex = new LongIntHashMap();
+        int[] count = {0};
+        voxels.forEach((x, y, z) -> {
+            long key = cellKey(x, y, z);
+            if (cellIndex.get(key, -1) < 0) cellIndex.put(key, count[0]++, -1);
+        });
+        int n = count[0];
+        int[] air = new int[n];
+        double[] heat = new double[n];
+        int[] walls = new int[n];
+        LongIntHashMap links = new LongIntHashMap(); // (lower cell, higher cell) -> shared faces
+
+        voxels.forEach((x, y, z) -> {
+            int c = cellIndex.get(cellKey(x, y, z), -1);
+            air[c]++;
+            for (int d = 0; d < 6; d++) {
+                int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int ny = y + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                int nz = z + (d == 4 ? 1 : d == 5 ? -1 : 0);
+                if (voxels.contains(nx, ny, nz)) {
+                    int o = cellIndex.get(cellKey(nx, ny, nz), -1);
+                    if (o > c) {
+                        long key = ((long) c << 32) | o;
+                        links.put(key, links.get(key, 0) + 1, 0);
+                    }
+                    continue;
+                }
+                if (ny < minY || ny >= maxY) continue;
+                ChunkSnapshot snap = snapshots.get(chunkKey(nx >> 4, nz >> 4));
+                if (snap == null) continue;
+                BlockData data = snap.getBlockData(nx & 15, ny, nz & 15);
+                if (data.getMaterial().isAir()) continue;
+                heat[c] += TemperatureRegistry.influenceOfKind(TemperatureRegistry.kindOf(data));
+                walls[c]++;
+            }
+        });
+
+        // Adjacency in CSR form, both directions
+        int[] degree = new int[n];
+        links.forEach((key, faces) -> {
+            degree[(int) (key >>> 32)]++;
+            degree[(int) key]++;
+        });
+        int[] adjStart = new int[n + 1];
+        for (int i = 0; i < n; i++) adjStart[i + 1] = adjStart[i] + degree[i];
+        int[] fill = Arrays.copyOf(adjStart, n);
+        int[] adjCell = new int[adjStart[n]];
+        double[] adjConductance = new double[adjStart[n]];
+        links.forEach((key, faces) -> {
+            int a = (int) (key >>> 32), b = (int) key;
+            adjCell[fill[a]] = b;
+            adjConductance[fill[a]++] = CONDUCTANCE * faces;
+            adjCell[fill[b]] = a;
+            adjConductance[fill[b]++] = CONDUCTANCE * faces;
+        });
+
+        // Leak per wall face chosen so the well-mixed steady state (65 + Q / (h * W)) matches the static model
+        double totalHeat = 0.0;
+        int totalWalls = 0;
+        for (int i = 0; i < n; i++) {
+            totalHeat += heat[i];
+            totalWalls += walls[i];
+        }
+        double offset = space.getTemperature() - NEUTRAL;
+        double h = DEFAULT_LEAK;
+        if (totalWalls > 0 && Math.abs(offset) > 1e-6 && totalHeat * offset > 0.0) h = totalHeat / (totalWalls * offset);
+        double[] leak = new double[n];
+        for (int i = 0; i < n; i++) leak[i] = h * walls[i];
+
+        double[] temps = new double[n];
+        double start = previous != null ? previous.mean : space.getTemperature();
+        for (int i = 0; i < n; i++) temps[i] = start;
+        if (previous != null) {
+            cellIndex.forEach((key, i) -> {
+                int old = previous.cellIndex.get(key, -1);
+                if (old >= 0) temps[i] = previous.temps[old];
+            });
+        }
+        return new HeatModel(space, cellIndex, air, heat, leak, adjStart, adjCell, adjConductance, temps);
+    }
+
+    /** Advances by dt seconds with backward Euler (stable for any dt), solved by a few Gauss-Seidel sweeps. */
+    void step(double dt) {
+        int n = air.length;
+        double[] before = temps.clone();
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            for (int i = 0; i < n; i++) {
+                double mass = CAPACITY * air[i] / dt;
+                double diag = mass + leak[i];
+                double rhs = mass * before[i] + heat[i] + leak[i] * NEUTRAL;
+                for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                    diag += adjConductance[a];
+                    rhs += adjConductance[a] * temps[adjCell[a]];
+                }
+                temps[i] = rhs / diag;
+            }
+        }
+        publish();
+    }
+
+    /** Temperature of the cell holding (x,y,z); the space mean if that voxel isn't part of this version. */
+    double sample(int x, int y, int z) {
+        int i = cellIndex.get(cellKey(x, y, z), -1);
+        return i < 0 ? mean : published[i];
+    }
+
+    double mean() { return mean; }
+    int cells() { return air.length; }
+
+    private void publish() {
+        double sum = 0.0;
+        long total = 0L;
+        for (int i = 0; i < air.length; i++) {
+            sum += temps[i] * air[i];
+            total += air[i];
+        }
+        published = temps.clone();
+        mean = total == 0L ? NEUTRAL : sum / total;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return BlockPos.pack(x >> 2, y >> 2, z >> 2);
+    }
+
+    static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,258 @@
+package goat.thaw.system.space.temperature;
+
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.SpaceManager;
+import goat.thaw.system.util.LongObjectHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional thermal simulation: heat diffuses through each space over time instead of the whole space
+ * jumping to its static temperature (see HeatModel). Models are built and stepped on one solver thread
+ * in fixed one-second steps, inside a per-pass time budget shared by all spaces.
+ *
+ * The main thread only notices changed spaces (through the space snapshot) and captures the chunk
+ * snapshots a rebuild needs, a few chunks per tick; a space spanning more chunks than that is captured
+ * over several ticks. sample() can be called from anywhere.
+ */
+public class HeatSolver {
+    private static final double STEP_SECONDS = 1.0;
+    private static final int MAX_CATCH_UP_STEPS = 5;
+    private static final long PASS_INTERVAL_MILLIS = 50L;
+    private static final long PASS_BUDGET_MICROS = 4_000L;
+    private static final int CAPTURE_CHUNKS_PER_TICK = 16;
+    private static final long SYNC_INTERVAL_TICKS = 20L;
+
+    private final Plugin plugin;
+    private final SpaceManager spaces;
+    private volatile boolean enabled;
+
+    // Main thread
+    private final ArrayDeque<Space> rebuildQueue = new ArrayDeque<>();
+    private final Set<UUID> rebuildPending = new HashSet<>();
+    private Capture capturing; // space whose chunks are part-way captured, resumed next tick
+    private BukkitTask syncTask;
+    private BukkitTask captureTask;
+
+    // Solver thread; readers see the published copy
+    private ScheduledExecutorService solver;
+    private final Map<UUID, HeatModel> models = new HashMap<>();
+    private final List<UUID> order = new ArrayList<>();
+    private final Map<UUID, Long> lastStep = new HashMap<>();
+    private int cursor = 0;
+    private volatile Map<UUID, HeatModel> published = Collections.emptyMap();
+
+    // Metrics
+    private volatile long microsLastPass;
+    private volatile long steps;
+    private volatile long rebuilds;
+    private volatile long stepsDropped;
+
+    public HeatSolver(Plugin plugin, SpaceManager spaces) {
+        this.plugin = plugin;
+        this.spaces = spaces;
+        this.enabled = plugin.getConfig().getBoolean("spaces.heat-solver", false);
+    }
+
+    public void start() {
+        if (solver != null) return;
+        solver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Thaw-HeatSolver");
+            t.setDaemon(true);
+            return t;
+        });
+        solver.scheduleAtFixedRate(this::pass, PASS_INTERVAL_MILLIS, PASS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        syncTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sync, SYNC_INTERVAL_TICKS, SYNC_INTERVAL_TICKS);
+        captureTask = Bukkit.getScheduler().runTaskTimer(plugin, this::captureSome, 1L, 1L);
+    }
+
+    public void stop() {
+        if (syncTask != null) syncTask.cancel();
+        if (captureTask != null) captureTask.cancel();
+        syncTask = null;
+        captureTask = null;
+        if (solver != null) solver.shutdownNow();
+        solver = null;
+        rebuildQueue.clear();
+        rebuildPending.clear();
+        capturing = null;
+        published = Collections.emptyMap();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /** Off: sample() returns each space's static temperature and the solver idles. Models are kept. */
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * Temperature at (x,y,z) inside the space: the simulated cell temperature when a model exists,
+     * otherwise the space's static temperature. Safe from any thread.
+     */
+    public double sample(Space space, int x, int y, int z) {
+        if (!enabled) return space.getTemperature();
+        HeatModel model = published.get(space.getId());
+        return model == null ? space.getTemperature() : model.sample(x, y, z);
+    }
+
+    public int getModelCount() { return published.size(); }
+    public int getCellCount() {
+        int cells = 0;
+        for (HeatModel m : published.values()) cells += m.cells();
+        return cells;
+    }
+    public long getMicrosLastPass() { return microsLastPass; }
+    public long getPassBudgetMicros() { return PASS_BUDGET_MICROS; }
+    public long getSteps() { return steps; }
+    public long getRebuilds() { return rebuilds; }
+    public long getStepsDropped() { return stepsDropped; }
+    public int getRebuildQueueDepth() { return rebuildQueue.size(); }
+
+    // Main thread: queue spaces whose model is missing or built from an older version; drop models of gone spaces
+    private void sync() {
+        if (!enabled) return;
+        Map<UUID, HeatModel> current = published;
+        Set<UUID> live = new HashSet<>();
+        for (Space s : spaces.snapshot().getSpaces()) {
+            live.add(s.getId());
+            HeatModel m = current.get(s.getId());
+            if (m != null && m.source == s) continue;
+            if (rebuildPending.add(s.getId())) rebuildQueue.addLast(s);
+        }
+        List<UUID> gone = new ArrayList<>();
+        for (UUID id : current.keySet()) if (!live.contains(id)) gone.add(id);
+        if (!gone.isEmpty()) solver.execute(() -> {
+            for (UUID id : gone) forget(id);
+            republish();
+        });
+    }
+
+    // Chunks under one space, captured column by column across as many ticks as the budget needs
+    private static final class Capture {
+        final Space space;
+        final World world;
+        final int minCx, maxCx, minCz, maxCz;
+        final LongObjectHashMap<ChunkSnapshot> snaps = new LongObjectHashMap<>();
+        int cx, cz;
+
+        Capture(Space space, World world) {
+            this.space = space;
+            this.world = world;
+            // Wall blocks sit one past the voxels, possibly in the next chunk over
+            this.minCx = (space.getBounds().minX - 1) >> 4;
+            this.maxCx = (space.getBounds().maxX + 1) >> 4;
+            this.minCz = (space.getBounds().minZ - 1) >> 4;
+            this.maxCz = (space.getBounds().maxZ + 1) >> 4;
+            this.cx = minCx;
+            this.cz = minCz;
+        }
+
+        boolean done() { return cx > maxCx; }
+    }
+
+    // Main thread: snapshot the chunks under the queued spaces, then hand each finished build to the solver
+    private void captureSome() {
+        int budget = CAPTURE_CHUNKS_PER_TICK;
+        while (budget > 0) {
+            if (capturing == null) {
+                if (rebuildQueue.isEmpty()) return;
+                Space queued = rebuildQueue.pollFirst();
+                Space s = spaces.get(queued.getId()); // latest version, if still resident
+                World world = s == null ? null : Bukkit.getWorld(s.getWorldName());
+                if (world == null || s.getBounds() == null) {
+                    rebuildPending.remove(queued.getId());
+                    continue;
+                }
+                capturing = new Capture(s, world);
+            }
+            Capture c = capturing;
+            while (budget > 0 && !c.done()) {
+                // Chunks unloaded meanwhile are left out: their walls read as missing, not as air
+                if (c.world.isChunkLoaded(c.cx, c.cz)) {
+                    c.snaps.put(HeatModel.chunkKey(c.cx, c.cz), c.world.getChunkAt(c.cx, c.cz).getChunkSnapshot(false, false, false));
+                    budget--;
+                }
+                if (++c.cz > c.maxCz) {
+                    c.cz = c.minCz;
+                    c.cx++;
+                }
+            }
+            if (!c.done()) return; // budget spent; carry on next tick
+            capturing = null;
+            rebuildPending.remove(c.space.getId());
+            if (spaces.get(c.space.getId()) == null) continue; // evicted while we were capturing
+            buildLater(c.space, c.snaps, c.world.getMinHeight(), c.world.getMaxHeight());
+        }
+    }
+
+    private void buildLater(Space s, LongObjectHashMap<ChunkSnapshot> snaps, int minY, int maxY) {
+        solver.execute(() -> {
+            HeatModel model = HeatModel.build(s, snaps, minY, maxY, models.get(s.getId()));
+            if (!models.containsKey(s.getId())) order.add(s.getId());
+            models.put(s.getId(), model);
+            lastStep.putIfAbsent(s.getId(), System.nanoTime());
+            rebuilds++;
+            republish();
+        });
+    }
+
+    // Solver thread: step models round-robin until the pass budget runs out; the next pass resumes there
+    private void pass() {
+        if (!enabled || order.isEmpty()) {
+            microsLastPass = 0L;
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + PASS_BUDGET_MICROS * 1_000L;
+        long stepNanos = (long) (STEP_SECONDS * 1_000_000_000L);
+        for (int visited = 0; visited < order.size() && System.nanoTime() < deadline; visited++) {
+            if (cursor >= order.size()) cursor = 0;
+            UUID id = order.get(cursor++);
+            HeatModel model = models.get(id);
+            long last = lastStep.get(id);
+            long behind = (start - last) / stepNanos;
+            if (behind <= 0) continue;
+            if (behind > MAX_CATCH_UP_STEPS) {
+                // Simulated time slows down rather than the solver falling further behind
+                stepsDropped += behind - MAX_CATCH_UP_STEPS;
+                behind = MAX_CATCH_UP_STEPS;
+                last = start - behind * stepNanos;
+            }
+            for (int i = 0; i < behind; i++) model.step(STEP_SECONDS);
+            steps += behind;
+            lastStep.put(id, last + behind * stepNanos);
+        }
+        microsLastPass = (System.nanoTime() - start) / 1_000L;
+    }
+
+    private void forget(UUID id) {
+        if (models.remove(id) == null) return;
+        lastStep.remove(id);
+        for (Iterator<UUID> it = order.iterator(); it.hasNext(); ) {
+            if (it.next().equals(id)) {
+                it.remove();
+                break;
+            }
+        }
+    }
+
+    private void republish() {
+        published = Collections.unmodifiableMap(new HashMap<>(models));
+    }
+}
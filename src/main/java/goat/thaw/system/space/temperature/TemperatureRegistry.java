@@ -54,15 +54,58 @@ public final class TemperatureRegistry {
     public static double influence(Block block) {
         Material m = block.getType();
         if (m == Material.SNOW) {
-            // Layered snow: scale by number of layers (1..8)
             BlockData data = block.getBlockData();
-            if (data instanceof Snow) {
-                int layers = ((Snow) data).getLayers();
-                double base = -1.0; // cooling per face at 8 layers
-                double scaled = base * (Math.max(1, layers) / 8.0);
-                return MULTIPLIER * scaled;
-            }
+            if (data instanceof Snow) return snowInfluence(((Snow) data).getLayers());
         }
         return influence(m) * MULTIPLIER;
     }
+
+    // Same rules as influence(Block), for block data read from a ChunkSnapshot off the main thread
+    public static double influence(BlockData data) {
+        Material m = data.getMaterial();
+        if (m == Material.SNOW && data instanceof Snow) return snowInfluence(((Snow) data).getLayers());
+        return influence(m) * MULTIPLIER;
+    }
+
+    // Layered snow: scale by number of layers (1..8)
+    private static double snowInfluence(int layers) {
+        double base = -1.0; // cooling per face at 8 layers
+        return MULTIPLIER * base * (Math.max(1, layers) / 8.0);
+    }
+
+    // Face kinds: what a boundary face touches, as far as influence cares.
+    // Packed as material ordinal << 4 | snow layers (layers only for layered snow, else 0).
+    private static final Material[] MATERIALS = Material.values();
+
+    public static int kindOf(Material m) {
+        return m.ordinal() << 4;
+    }
+
+    public static int kindOf(BlockData data) {
+        Material m = data.getMaterial();
+        if (m == Material.SNOW && data instanceof Snow) return kindOf(m) | (((Snow) data).getLayers() & 15);
+        return kindOf(m);
+    }
+
+    public static int kindOf(Block block) {
+        Material m = block.getType();
+        if (m == Material.SNOW) return kindOf(block.getBlockData());
+        return kindOf(m);
+    }
+
+    public static Material materialOf(int kind) {
+        return MATERIALS[kind >>> 4];
+    }
+
+    public static int snowLayersOf(int kind) {
+        return kind & 15;
+    }
+
+    /** Same value influence(Block) gives for a block of this kind. */
+    public static double influenceOfKind(int kind) {
+        Material m = materialOf(kind);
+        int layers = snowLayersOf(kind);
+        if (m == Material.SNOW && layers > 0) return snowInfluence(layers);
+        return influence(m) * MULTIPLIER;
+    }
 }
@@ -0,0 +1,34 @@
+package goat.thaw.system.stats;
+
+import java.util.Arrays;
+
+/** One player's stat values, indexed by StatKey ordinal. Main thread only. */
+public final class PlayerStats {
+    double[] values;
+    boolean dirty; // changed since StatsManager last wrote it out
+
+    PlayerStats(double[] values) {
+        this.values = values;
+    }
+
+    public double get(StatKey key) { return values[key.ordinal()]; }
+
+    public void set(StatKey key, double v) {
+        double clamped = key.clamp(v);
+        if (clamped == values[key.ordinal()]) return;
+        values[key.ordinal()] = clamped;
+        dirty = true;
+    }
+
+    public void add(StatKey key, double delta) { set(key, get(key) + delta); }
+
+    public void subtract(StatKey key, double delta) { set(key, get(key) - delta); }
+
+    // A stat registered after this player was loaded starts at its initial value
+    void grow(int length, double initial) {
+        int old = values.length;
+        values = Arrays.copyOf(values, length);
+        Arrays.fill(values, old, length, initial);
+        dirty = true;
+    }
+}
@@ -1,28 +1,22 @@
 package goat.thaw.system.stats;
 
+/** One player's value of one stat, for the name-based API; it reads and writes the player's PlayerStats. */
 public class StatInstance {
-    private final StatDefinition definition;
-    private double value;
+    private final PlayerStats stats;
+    private final StatKey key;
 
-    public StatInstance(StatDefinition definition, double value) {
-        this.definition = definition;
-        this.value = clamp(value);
+    StatInstance(PlayerStats stats, StatKey key) {
+        this.stats = stats;
+        this.key = key;
     }
 
-    public StatDefinition getDefinition() { return definition; }
+    public StatDefinition getDefinition() { return key.getDefinition(); }
 
-    public double get() { return value; }
+    public double get() { return stats.get(key); }
 
-    public void set(double v) { value = clamp(v); }
+    public void set(double v) { stats.set(key, v); }
 
-    public void add(double delta) { set(value + delta); }
+    public void add(double delta) { stats.add(key, delta); }
 
-    public void subtract(double delta) { set(value - delta); }
-
-    private double clamp(double v) {
-        if (v < definition.getMin()) return definition.getMin();
-        if (v > definition.getMax()) return definition.getMax();
-        return v;
-    }
+    public void subtract(double delta) { stats.subtract(key, delta); }
 }
-
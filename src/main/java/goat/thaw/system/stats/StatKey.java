@@ -0,0 +1,25 @@
+package goat.thaw.system.stats;
+
+/**
+ * Handle for a registered stat, returned by StatsManager.registerDefinition / key. Its ordinal indexes
+ * every player's value array, so hot paths look the stat up by name once and keep the key.
+ */
+public final class StatKey {
+    private final int ordinal;
+    private final StatDefinition definition;
+
+    StatKey(int ordinal, StatDefinition definition) {
+        this.ordinal = ordinal;
+        this.definition = definition;
+    }
+
+    public int ordinal() { return ordinal; }
+
+    public StatDefinition getDefinition() { return definition; }
+
+    double clamp(double v) {
+        if (v < definition.getMin()) return definition.getMin();
+        if (v > definition.getMax()) return definition.getMax();
+        return v;
+    }
+}
@@ -3,26 +3,52 @@ package goat.thaw.system.stats;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Stat definitions and the stats of online players. A player's file is read while they log in (on the
+ * login thread, behind any write still queued for them) and written back and dropped when they quit;
+ * nobody else stays resident. Offline players can be read on demand with read(uuid).
+ */
 public class StatsManager implements Listener {
 
     private final JavaPlugin plugin;
-    private final Map<String, StatDefinition> definitions = new HashMap<>(); // key: lower-case name
-    private final Map<UUID, Map<String, StatInstance>> playerStats = new HashMap<>();
+    private final Map<String, StatKey> definitions = new HashMap<>(); // key: lower-case name
+    private final List<StatKey> keys = new ArrayList<>();              // by ordinal
+    private final Map<UUID, PlayerStats> playerStats = new HashMap<>();           // resident players
+    private final Map<UUID, YamlConfiguration> preloaded = new ConcurrentHashMap<>(); // read at login, taken on join
     private BukkitTask saveTask;
     private File statsDir;
+    private volatile ExecutorService io; // file reads and writes, in submission order
 
     public StatsManager(JavaPlugin plugin) {
         this.plugin = plugin;
+
+        // Register default stats (here rather than in start() so subsystems can look their keys up any time)
+        registerDefinition(new StatDefinition("Temperature", 72.0, 200.0, -200.0));
+        registerDefinition(new StatDefinition("ExternalTemperature", 65.0, 200.0, -200.0));
+        registerDefinition(new StatDefinition("Calories", 3000.0, 3400.0, 0.0));
+        registerDefinition(new StatDefinition("Oxygen", 500.0, 1000.0, 0.0));
+        registerDefinition(new StatDefinition("DayCount", 0.0, 1000000.0, 0.0));
     }
 
     // Lifecycle
@@ -31,169 +57,237 @@ public class StatsManager implements Listener {
         if (!plugin.getDataFolder().exists()) plugin.getDataFolder().mkdirs();
         statsDir = new File(plugin.getDataFolder(), "stats");
         if (!statsDir.exists()) statsDir.mkdirs();
+        io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Thaw-StatsIO");
+            t.setDaemon(true);
+            return t;
+        });
 
-        // Register default stats
-        registerDefinition(new StatDefinition("Temperature", 72.0, 200.0, -200.0));
-        registerDefinition(new StatDefinition("ExternalTemperature", 65.0, 200.0, -200.0));
-        registerDefinition(new StatDefinition("Calories", 3000.0, 3400.0, 0.0));
-        registerDefinition(new StatDefinition("Oxygen", 500.0, 1000.0, 0.0));
-        registerDefinition(new StatDefinition("DayCount", 0.0, 1000000.0, 0.0));
-
-        // Load all existing stats from disk
-        loadAllFromDisk();
-
-        // Ensure currently online players have entries
-        for (Player p : Bukkit.getOnlinePlayers()) ensurePlayerLoaded(p.getUniqueId());
+        // Players already online (plugin reload) are read right away; everyone else as they log in
+        for (Player p : Bukkit.getOnlinePlayers()) of(p.getUniqueId());
 
-        // Listen for joins to initialize missing files
         Bukkit.getPluginManager().registerEvents(this, plugin);
 
-        // Save every 10 seconds (200 ticks); refresh from disk after saving
-        saveTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            saveAllToDisk();
-            reloadAllFromDisk();
-        }, 200L, 200L);
+        // Every 10 seconds (200 ticks) write out the players whose stats changed
+        saveTask = Bukkit.getScheduler().runTaskTimer(plugin, this::saveDirtyToDisk, 200L, 200L);
     }
 
     public void stop() {
         if (saveTask != null) { saveTask.cancel(); saveTask = null; }
-        saveAllToDisk();
+        ExecutorService pool = io;
+        if (pool == null) return;
+        saveDirtyToDisk();
+        io = null;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) plugin.getLogger().warning("Timed out writing stats");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        playerStats.clear();
+        preloaded.clear();
     }
 
     // Definitions
-    public void registerDefinition(StatDefinition def) {
-        definitions.put(def.getName().toLowerCase(Locale.ROOT), def);
+    /** Registers (or redefines) a stat; the returned key is what hot paths should hold on to. */
+    public StatKey registerDefinition(StatDefinition def) {
+        String name = def.getName().toLowerCase(Locale.ROOT);
+        StatKey prev = definitions.get(name);
+        StatKey key = new StatKey(prev != null ? prev.ordinal() : keys.size(), def);
+        definitions.put(name, key);
+        if (prev != null) {
+            keys.set(key.ordinal(), key);
+            return key;
+        }
+        keys.add(key);
+        for (PlayerStats ps : playerStats.values()) ps.grow(keys.size(), def.getInitial());
+        return key;
     }
 
-    public StatDefinition getDefinition(String name) {
+    /** Key for a stat name (any case), or null if no such stat is registered. */
+    public StatKey key(String name) {
         if (name == null) return null;
         return definitions.get(name.toLowerCase(Locale.ROOT));
     }
 
+    public StatDefinition getDefinition(String name) {
+        StatKey key = key(name);
+        return key == null ? null : key.getDefinition();
+    }
+
     public Set<String> getDefinedNames() { return Collections.unmodifiableSet(definitions.keySet()); }
 
     // Player access
-    public Map<String, StatInstance> getAll(UUID uuid) {
-        return playerStats.computeIfAbsent(uuid, id -> new HashMap<>());
+    /**
+     * The player's values. Online players are always resident; anyone else is read from disk on the spot
+     * (blocking) and dropped again at the next save, so prefer read(uuid) for offline players.
+     * Throws IllegalStateException if that read fails; nothing is made resident then.
+     */
+    public PlayerStats of(UUID uuid) {
+        PlayerStats ps = playerStats.get(uuid);
+        if (ps == null) ps = load(uuid, readNow(uuid));
+        return ps;
+    }
+
+    /**
+     * Reads a player's stats without making them resident. The result is a detached copy: changing it
+     * changes nothing. Completes on the stats I/O thread (after any write queued for the player), so hop
+     * back to the main thread before touching Bukkit.
+     */
+    public CompletableFuture<PlayerStats> read(UUID uuid) {
+        PlayerStats live = playerStats.get(uuid);
+        if (live != null) return CompletableFuture.completedFuture(new PlayerStats(live.values.clone()));
+        ExecutorService pool = io;
+        if (pool == null) return CompletableFuture.failedFuture(new IllegalStateException("Stats are not running"));
+        List<StatKey> known = new ArrayList<>(keys);
+        return CompletableFuture.supplyAsync(() -> new PlayerStats(values(known, readFile(uuid))), pool);
     }
 
+    // Name-based access, for commands and other cold paths
     public StatInstance get(UUID uuid, String statName) {
-        StatDefinition def = getDefinition(statName);
-        if (def == null) return null;
-        Map<String, StatInstance> map = getAll(uuid);
-        return map.computeIfAbsent(def.getName().toLowerCase(Locale.ROOT), k -> new StatInstance(def, def.getInitial()));
+        StatKey key = key(statName);
+        if (key == null) return null;
+        return new StatInstance(of(uuid), key);
     }
 
     public boolean set(UUID uuid, String statName, double value) {
-        StatInstance inst = get(uuid, statName);
-        if (inst == null) return false;
-        inst.set(value);
+        StatKey key = key(statName);
+        if (key == null) return false;
+        of(uuid).set(key, value);
         return true;
     }
 
     public boolean add(UUID uuid, String statName, double delta) {
-        StatInstance inst = get(uuid, statName);
-        if (inst == null) return false;
-        inst.add(delta);
+        StatKey key = key(statName);
+        if (key == null) return false;
+        of(uuid).add(key, delta);
         return true;
     }
 
     public boolean subtract(UUID uuid, String statName, double delta) {
-        StatInstance inst = get(uuid, statName);
-        if (inst == null) return false;
-        inst.subtract(delta);
+        StatKey key = key(statName);
+        if (key == null) return false;
+        of(uuid).subtract(key, delta);
         return true;
     }
 
     // Events
-    @EventHandler
+    // Runs on the login thread; waiting here delays only this player's login, never the server
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        ExecutorService pool = io;
+        if (pool == null) return;
+        UUID id = e.getUniqueId();
+        try {
+            preloaded.put(id, pool.submit(() -> readFile(id)).get(10, TimeUnit.SECONDS));
+        } catch (Exception ex) {
+            // Letting them in would start them at defaults and overwrite the real file at the next save
+            plugin.getLogger().warning("Failed to preload stats for " + id + ": " + ex.getMessage());
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "Could not load your stats, please try again.");
+        }
+    }
+
+    // A later plugin (whitelist, ban, full server) can still refuse the login; forget what we read for them
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent e) {
+        if (e.getResult() != PlayerLoginEvent.Result.ALLOWED) preloaded.remove(e.getPlayer().getUniqueId());
+    }
+
+    // Early, so other join handlers already see the player's stats
+    @EventHandler(priority = EventPriority.LOWEST)
     public void onJoin(PlayerJoinEvent e) {
-        ensurePlayerLoaded(e.getPlayer().getUniqueId());
-        // If no file exists, create with defaults immediately
-        File f = fileFor(e.getPlayer().getUniqueId());
-        if (!f.exists()) {
-            initDefaults(e.getPlayer().getUniqueId());
-            saveToDisk(e.getPlayer().getUniqueId());
+        UUID id = e.getPlayer().getUniqueId();
+        YamlConfiguration yml = preloaded.remove(id);
+        if (playerStats.containsKey(id)) return; // read on demand before the join completed; memory is newer
+        try {
+            load(id, yml != null ? yml : readNow(id));
+        } catch (IllegalStateException ex) {
+            e.getPlayer().kickPlayer("Could not load your stats, please try again.");
         }
     }
 
+    // Late, so other quit handlers can still change stats before they are written
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        preloaded.remove(id);
+        PlayerStats ps = playerStats.remove(id);
+        if (ps != null && ps.dirty) saveToDisk(id, ps);
+    }
+
     // Persistence
     private File fileFor(UUID uuid) { return new File(statsDir, uuid.toString() + ".yml"); }
 
-    private void loadAllFromDisk() {
-        File[] files = statsDir.listFiles((dir, name) -> name.endsWith(".yml"));
-        if (files == null) return;
-        for (File f : files) {
-            try {
-                YamlConfiguration yml = YamlConfiguration.loadConfiguration(f);
-                String uuidStr = f.getName().substring(0, f.getName().length() - 4);
-                UUID uuid = UUID.fromString(uuidStr);
-                Map<String, StatInstance> map = getAll(uuid);
-                for (String key : definitions.keySet()) {
-                    StatDefinition def = definitions.get(key);
-                    double val = yml.getDouble("stats." + def.getName(), def.getInitial());
-                    map.put(def.getName().toLowerCase(Locale.ROOT), new StatInstance(def, val));
-                }
-            } catch (Exception ignore) {}
-        }
+    // Any thread; a missing file reads as an empty configuration (every stat at its initial value)
+    private YamlConfiguration readFile(UUID uuid) {
+        File f = fileFor(uuid);
+        return f.exists() ? YamlConfiguration.loadConfiguration(f) : new YamlConfiguration();
     }
 
-    private void reloadAllFromDisk() {
-        // Reload only for players we have in memory
-        for (UUID uuid : new ArrayList<>(playerStats.keySet())) {
-            loadFromDisk(uuid);
+    // Main thread; still queued behind pending writes so a quick rejoin never reads a stale file.
+    // Throws rather than returning an empty configuration: that would go live at defaults and be saved over the real file.
+    private YamlConfiguration readNow(UUID uuid) {
+        ExecutorService pool = io;
+        if (pool == null) return readFile(uuid);
+        try {
+            return pool.submit(() -> readFile(uuid)).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted reading stats for " + uuid, e);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to read stats for " + uuid + ": " + e.getMessage());
+            throw new IllegalStateException("Could not read stats for " + uuid, e);
         }
     }
 
-    private void loadFromDisk(UUID uuid) {
-        File f = fileFor(uuid);
-        if (!f.exists()) return;
-        try {
-            YamlConfiguration yml = YamlConfiguration.loadConfiguration(f);
-            Map<String, StatInstance> map = getAll(uuid);
-            for (String key : definitions.keySet()) {
-                StatDefinition def = definitions.get(key);
-                double val = yml.getDouble("stats." + def.getName(), def.getInitial());
-                map.put(def.getName().toLowerCase(Locale.ROOT), new StatInstance(def, val));
-            }
-        } catch (Exception ignore) {}
-    }
-
-    private void saveAllToDisk() {
-        // Save stats for known players (both online and loaded offline)
-        for (UUID uuid : new ArrayList<>(playerStats.keySet())) {
-            saveToDisk(uuid);
+    private PlayerStats load(UUID uuid, YamlConfiguration yml) {
+        PlayerStats ps = new PlayerStats(values(keys, yml));
+        if (!fileFor(uuid).exists()) ps.dirty = true; // new player: write their file at the next save
+        playerStats.put(uuid, ps);
+        return ps;
+    }
+
+    private static double[] values(List<StatKey> known, YamlConfiguration yml) {
+        double[] values = new double[known.size()];
+        for (StatKey key : known) {
+            StatDefinition def = key.getDefinition();
+            values[key.ordinal()] = key.clamp(yml.getDouble("stats." + def.getName(), def.getInitial()));
         }
+        return values;
     }
 
-    private void saveToDisk(UUID uuid) {
-        File f = fileFor(uuid);
-        YamlConfiguration yml = new YamlConfiguration();
-        Map<String, StatInstance> map = playerStats.get(uuid);
-        if (map == null) return;
-        for (Map.Entry<String, StatInstance> e : map.entrySet()) {
-            String properName = e.getValue().getDefinition().getName();
-            yml.set("stats." + properName, e.getValue().get());
+    private void saveDirtyToDisk() {
+        Iterator<Map.Entry<UUID, PlayerStats>> it = playerStats.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, PlayerStats> e = it.next();
+            if (e.getValue().dirty) saveToDisk(e.getKey(), e.getValue());
+            // Offline players read through of() only stay until their changes are written
+            if (Bukkit.getPlayer(e.getKey()) == null) it.remove();
         }
-        try {
-            yml.save(f);
-        } catch (IOException ignore) {}
     }
 
-    private void ensurePlayerLoaded(UUID uuid) {
-        Map<String, StatInstance> map = getAll(uuid);
+    // Values are copied here on the main thread; the YAML is built and written on the I/O thread
+    private void saveToDisk(UUID uuid, PlayerStats ps) {
+        ExecutorService pool = io;
+        if (pool == null) return;
+        ps.dirty = false;
+        List<StatKey> names = new ArrayList<>(keys);
+        double[] values = ps.values.clone();
         File f = fileFor(uuid);
-        if (f.exists()) {
-            loadFromDisk(uuid);
-        } else {
-            initDefaults(uuid);
-        }
+        pool.execute(() -> write(f, names, values));
     }
 
-    private void initDefaults(UUID uuid) {
-        Map<String, StatInstance> map = getAll(uuid);
-        for (StatDefinition def : definitions.values()) {
-            map.put(def.getName().toLowerCase(Locale.ROOT), new StatInstance(def, def.getInitial()));
+    private void write(File f, List<StatKey> names, double[] values) {
+        YamlConfiguration yml = new YamlConfiguration();
+        for (StatKey key : names) yml.set("stats." + key.getDefinition().getName(), values[key.ordinal()]);
+        File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+        try {
+            yml.save(tmp);
+            // Readers only ever see the old file or the new one, never a half-written one
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save stats " + f.getName() + ": " + e.getMessage());
         }
     }
 }
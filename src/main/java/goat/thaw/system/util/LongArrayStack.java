@@ -0,0 +1,30 @@
+package goat.thaw.system.util;
+
+import java.util.Arrays;
+
+/** Growable LIFO stack of primitive longs (packed coordinates in flood fills). */
+public final class LongArrayStack {
+    private long[] data;
+    private int size;
+
+    public LongArrayStack() {
+        this(256);
+    }
+
+    public LongArrayStack(int initialCapacity) {
+        data = new long[Math.max(4, initialCapacity)];
+    }
+
+    public void push(long v) {
+        if (size == data.length) data = Arrays.copyOf(data, size << 1);
+        data[size++] = v;
+    }
+
+    public long pop() {
+        return data[--size];
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+    public void clear() { size = 0; }
+}
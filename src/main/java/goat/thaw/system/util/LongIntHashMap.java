@@ -0,0 +1,201 @@
+package goat.thaw.system.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive int values.
+ * Linear probing with backward-shift deletion, so there are no tombstones and
+ * lookups never allocate. Key 0 is stored out of band because 0 marks a free slot.
+ */
+public final class LongIntHashMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size; // entries in the table (excludes the zero key)
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    public int size() { return size + (hasZeroKey ? 1 : 0); }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    public boolean containsKey(long key) {
+        if (key == 0L) return hasZeroKey;
+        int slot = mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int get(long key, int missing) {
+        if (key == 0L) return hasZeroKey ? zeroValue : missing;
+        int slot = mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    /** Inserts or replaces; returns the previous value or {@code missing}. */
+    public int put(long key, int value, int missing) {
+        if (key == 0L) {
+            int prev = hasZeroKey ? zeroValue : missing;
+            hasZeroKey = true;
+            zeroValue = value;
+            return prev;
+        }
+        int slot = mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) {
+                int prev = values[slot];
+                values[slot] = value;
+                return prev;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return missing;
+    }
+
+    /** Removes the mapping; returns the removed value or {@code missing}. */
+    public int remove(long key, int missing) {
+        if (key == 0L) {
+            if (!hasZeroKey) return missing;
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int slot = mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) {
+                int prev = values[slot];
+                shiftConflictingKeys(slot);
+                size--;
+                return prev;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    /** Removes the mapping only if it currently maps to {@code value}. */
+    public boolean removeIfMapped(long key, int value) {
+        if (key == 0L) {
+            if (!hasZeroKey || zeroValue != value) return false;
+            hasZeroKey = false;
+            return true;
+        }
+        int slot = mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) {
+                if (values[slot] != value) return false;
+                shiftConflictingKeys(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Grows the table up front so a bulk insert of {@code additional} keys never rehashes midway. */
+    public void ensureCapacity(int additional) {
+        int needed = capacityFor(size + additional);
+        if (needed > keys.length) rehash(needed);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    public void forEach(LongIntConsumer action) {
+        if (hasZeroKey) action.accept(0L, zeroValue);
+        long[] ks = keys;
+        int[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0L) action.accept(ks[i], vs[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    private void shiftConflictingKeys(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long k = keys[slot];
+            if (k == 0L) break;
+            int ideal = mix(k) & mask;
+            // Move k into the gap if its probe path passes through the gap
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0L;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k == 0L) continue;
+            int slot = mix(k) & mask;
+            while (keys[slot] != 0L) slot = (slot + 1) & mask;
+            keys[slot] = k;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expected) {
+        long needed = (long) Math.ceil(Math.max(4, expected) / LOAD_FACTOR) + 1;
+        int cap = Integer.highestOneBit((int) Math.min(1 << 30, needed - 1)) << 1;
+        return Math.max(8, cap);
+    }
+
+    // fmix64 from MurmurHash3; packed coordinates are highly structured so a full avalanche matters
+    static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53a87ebL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
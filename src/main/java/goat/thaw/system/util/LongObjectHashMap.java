@@ -0,0 +1,193 @@
+package goat.thaw.system.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to object values.
+ * Same probing scheme as {@link LongIntHashMap}; a null value is never stored,
+ * so {@code get} returning null always means "absent".
+ */
+public final class LongObjectHashMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private Object zeroValue;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    public LongObjectHashMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    private LongObjectHashMap(LongObjectHashMap<V> other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.mask = other.mask;
+        this.size = other.size;
+        this.resizeAt = other.resizeAt;
+        this.hasZeroKey = other.hasZeroKey;
+        this.zeroValue = other.zeroValue;
+    }
+
+    /** Shallow copy: the table is duplicated, values are shared. */
+    public LongObjectHashMap<V> copy() {
+        return new LongObjectHashMap<>(this);
+    }
+
+    public int size() { return size + (hasZeroKey ? 1 : 0); }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0L) return (V) zeroValue;
+        int slot = LongIntHashMap.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) return (V) values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /** Inserts or replaces; returns the previous value or null. */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("null values are not supported");
+        if (key == 0L) {
+            Object prev = zeroValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return (V) prev;
+        }
+        int slot = LongIntHashMap.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) {
+                Object prev = values[slot];
+                values[slot] = value;
+                return (V) prev;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0L) {
+            Object prev = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            return (V) prev;
+        }
+        int slot = LongIntHashMap.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0L) {
+            if (k == key) {
+                Object prev = values[slot];
+                shiftConflictingKeys(slot);
+                size--;
+                return (V) prev;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public void ensureCapacity(int additional) {
+        int needed = capacityFor(size + additional);
+        if (needed > keys.length) rehash(needed);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, null);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjectConsumer<? super V> action) {
+        if (hasZeroKey) action.accept(0L, (V) zeroValue);
+        long[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != 0L) action.accept(ks[i], (V) vs[i]);
+        }
+    }
+
+    /** Snapshot of the keys, for callers that mutate the map while walking it. */
+    public long[] keys() {
+        long[] out = new long[size()];
+        int n = 0;
+        if (hasZeroKey) out[n++] = 0L;
+        for (long k : keys) if (k != 0L) out[n++] = k;
+        return out;
+    }
+
+    @FunctionalInterface
+    public interface LongObjectConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private void shiftConflictingKeys(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long k = keys[slot];
+            if (k == 0L) break;
+            int ideal = LongIntHashMap.mix(k) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0L;
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k == 0L) continue;
+            int slot = LongIntHashMap.mix(k) & mask;
+            while (keys[slot] != 0L) slot = (slot + 1) & mask;
+            keys[slot] = k;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expected) {
+        long needed = (long) Math.ceil(Math.max(4, expected) / LOAD_FACTOR) + 1;
+        int cap = Integer.highestOneBit((int) Math.min(1 << 30, needed - 1)) << 1;
+        return Math.max(8, cap);
+    }
+}
@@ -0,0 +1,85 @@
+package goat.thaw.subsystems.temperature;
+
+import goat.thaw.system.space.Space.BlockPos;
+import goat.thaw.system.space.temperature.TemperatureRegistry;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ThermalIndexTest {
+    private static final int MIN_HEIGHT = -64, MAX_HEIGHT = 320;
+    private static final double TORCH = TemperatureRegistry.influenceOfKind(TemperatureRegistry.kindOf(Material.TORCH));
+
+    @Test
+    void shellCountsMatchABruteForceCount() {
+        for (int salt = 0; salt < 4; salt++) {
+            ThermalIndex index = new ThermalIndex(null);
+            World world = world(salt);
+            check(index, world, salt, 5, 70, 9, 3);      // inside one section
+            check(index, world, salt, 16, 0, -16, 6);    // on a corner shared by eight sections
+            check(index, world, salt, -1, 47, 31, 9);    // straddles sections on every axis, negative x
+            check(index, world, salt, 40, 100, 40, 0);   // a single voxel
+            check(index, world, salt, 3, -62, 3, 7);     // clipped at the bottom of the world
+            check(index, world, salt, 8, 318, 8, 5);     // clipped at the top
+        }
+    }
+
+    private static void check(ThermalIndex index, World world, int salt, int cx, int cy, int cz, int r) {
+        int[] air = new int[r + 1], water = new int[r + 1];
+        Map<Long, Double> sources = new HashMap<>();
+        index.sample(world, cx, cy, cz, r, air, water, (x, y, z, influence) -> sources.put(BlockPos.pack(x, y, z), influence));
+
+        int[] expectedAir = new int[r + 1], expectedWater = new int[r + 1];
+        Map<Long, Double> expectedSources = new HashMap<>();
+        for (int x = cx - r; x <= cx + r; x++) {
+            for (int y = Math.max(MIN_HEIGHT, cy - r); y <= Math.min(MAX_HEIGHT - 1, cy + r); y++) {
+                for (int z = cz - r; z <= cz + r; z++) {
+                    int d = Math.max(Math.abs(x - cx), Math.max(Math.abs(y - cy), Math.abs(z - cz)));
+                    Material m = type(salt, x, y, z);
+                    if (m == Material.AIR) expectedAir[d]++;
+                    else if (m == Material.WATER) expectedWater[d]++;
+                    else if (m == Material.TORCH) expectedSources.put(BlockPos.pack(x, y, z), TORCH);
+                }
+            }
+        }
+        String at = "salt " + salt + " at " + cx + "," + cy + "," + cz + " r " + r;
+        assertArrayEquals(expectedAir, air, "air shells, " + at);
+        assertArrayEquals(expectedWater, water, "water shells, " + at);
+        assertEquals(expectedSources, sources, "sources, " + at);
+    }
+
+    // Roughly half air, a fifth water, a few torches, stone elsewhere
+    private static Material type(int salt, int x, int y, int z) {
+        int h = x * 73856093 ^ y * 19349663 ^ z * 83492791 ^ salt * 0x9E3779B9;
+        h = (h ^ (h >>> 15)) * 0x2C1B3C6D;
+        h = (h ^ (h >>> 12)) & 0x7FFFFFFF;
+        int v = h % 100;
+        if (v < 50) return Material.AIR;
+        if (v < 70) return Material.WATER;
+        if (v < 73) return Material.TORCH;
+        return Material.STONE;
+    }
+
+    private static World world(int salt) {
+        Object p = Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "getMinHeight": return MIN_HEIGHT;
+                case "getMaxHeight": return MAX_HEIGHT;
+                case "isChunkLoaded": return true;
+                case "getName": return "test";
+                case "getType": return type(salt, (Integer) args[0], (Integer) args[1], (Integer) args[2]);
+                case "hashCode": return System.identityHashCode(self);
+                case "equals": return self == args[0];
+                default: return null;
+            }
+        });
+        return (World) p;
+    }
+}
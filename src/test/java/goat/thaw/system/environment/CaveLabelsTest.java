@@ -0,0 +1,129 @@
+package goat.thaw.system.environment;
+
+import goat.thaw.system.environment.CaveLabels.Label;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.generator.ChunkGenerator.ChunkData;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CaveLabelsTest {
+
+    @Test
+    void labelsSealedBorderAndSkyComponents() {
+        byte[] layer = CaveLabels.compute(data(-64, 128, CaveLabelsTest::caves));
+        assertNotNull(layer);
+        CaveLabels labels = new CaveLabels(plugin());
+        World world = world(layer, null);
+
+        assertEquals(Label.SEALED, labels.at(world, 6, 11, 6));
+        assertEquals(Label.BORDER, labels.at(world, 3, 30, 8));
+        assertEquals(Label.SKY, labels.at(world, 12, 60, 12));  // shaft up to the open top
+        assertEquals(Label.SKY, labels.at(world, 2, 110, 2));
+        assertEquals(Label.UNKNOWN, labels.at(world, 9, 0, 9));  // stone
+    }
+
+    @Test
+    void modifiedSectionsTurnTheirComponentsUnknown() {
+        byte[] layer = CaveLabels.compute(data(-64, 128, CaveLabelsTest::caves));
+        CaveLabels labels = new CaveLabels(plugin());
+        World world = world(layer, 1L << ((11 + 64) >> 4)); // the sealed bubble's section
+
+        assertEquals(Label.UNKNOWN, labels.at(world, 6, 11, 6));
+        assertEquals(Label.BORDER, labels.at(world, 3, 30, 8));
+    }
+
+    @Test
+    void componentIdsPastAShortDecodeUnsigned() {
+        // Air on a 3D checkerboard: every air cell is its own component, 49152 of them
+        byte[] layer = CaveLabels.compute(data(-64, 320, CaveLabelsTest::checkerboard));
+        assertNotNull(layer);
+        CaveLabels labels = new CaveLabels(plugin());
+        World world = world(layer, null);
+
+        assertEquals(Label.SEALED, labels.at(world, 5, 300, 7));
+        assertEquals(Label.BORDER, labels.at(world, 0, 300, 0));
+        assertEquals(Label.SKY, labels.at(world, 5, 319, 6));
+        assertEquals(Label.UNKNOWN, labels.at(world, 5, 301, 7));
+    }
+
+    @Test
+    void tooManyComponentsLeaveTheChunkWithoutALayer() {
+        assertNull(CaveLabels.compute(data(-64, 960, CaveLabelsTest::checkerboard)));
+    }
+
+    // Stone below y=100 and open air above, with a sealed bubble, a tunnel out of the chunk's west side
+    // and a shaft up to the open air
+    private static Material caves(int x, int y, int z) {
+        if (y >= 100) return Material.AIR;
+        if (x >= 5 && x <= 7 && y >= 10 && y <= 12 && z >= 5 && z <= 7) return Material.AIR;
+        if (x <= 4 && y == 30 && z == 8) return Material.AIR;
+        if (x == 12 && z == 12 && y >= 50) return Material.AIR;
+        return Material.STONE;
+    }
+
+    private static Material checkerboard(int x, int y, int z) {
+        return ((x + y + z) & 1) == 0 ? Material.AIR : Material.STONE;
+    }
+
+    private interface Terrain {
+        Material at(int x, int y, int z);
+    }
+
+    private static ChunkData data(int minY, int maxY, Terrain terrain) {
+        return proxy(ChunkData.class, (method, args) -> {
+            switch (method) {
+                case "getMinHeight": return minY;
+                case "getMaxHeight": return maxY;
+                case "getType": return terrain.at((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+                default: return null;
+            }
+        });
+    }
+
+    // Chunk 0,0 carrying the layer and the modified-sections mask in its persistent data
+    private static World world(byte[] layer, Long modified) {
+        PersistentDataContainer pdc = proxy(PersistentDataContainer.class, (method, args) -> {
+            if (!"get".equals(method)) return null;
+            return args[1] == PersistentDataType.BYTE_ARRAY ? layer : args[1] == PersistentDataType.LONG ? modified : null;
+        });
+        Chunk chunk = proxy(Chunk.class, (method, args) -> "getPersistentDataContainer".equals(method) ? pdc : null);
+        return proxy(World.class, (method, args) -> {
+            switch (method) {
+                case "getName": return "test";
+                case "isChunkLoaded": return true;
+                case "getChunkAt": return chunk;
+                default: return null;
+            }
+        });
+    }
+
+    private static Plugin plugin() {
+        return proxy(Plugin.class, (method, args) -> "getName".equals(method) ? "thaw" : null);
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object p = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(self);
+                case "equals": return self == args[0];
+                case "toString": return type.getSimpleName();
+                default: return handler.invoke(method.getName(), args);
+            }
+        });
+        return type.cast(p);
+    }
+}
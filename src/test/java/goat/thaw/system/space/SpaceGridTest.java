@@ -0,0 +1,128 @@
+package goat.thaw.system.space;
+
+import goat.thaw.system.space.Space.Bounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceGridTest {
+
+    @Test
+    void intersectingMatchesABruteForceScanWithoutDuplicates() {
+        Random random = new Random(3);
+        SpaceGrid grid = new SpaceGrid();
+        List<Space> spaces = populate(grid, random, 80);
+        for (int i = 0; i < 500; i++) {
+            Bounds query = randomBox(random, 200);
+            List<Space> found = grid.intersecting("world", query);
+            Set<UUID> ids = new HashSet<>();
+            for (Space s : found) assertTrue(ids.add(s.getId()), "reported twice: " + s.getBounds() + " for " + query);
+            assertEquals(bruteIntersecting(spaces, query), ids, "query " + query);
+        }
+        assertTrue(grid.intersecting("other", new Bounds(-1000, -100, -1000, 1000, 100, 1000)).isEmpty());
+    }
+
+    @Test
+    void nearestFindsTheClosestBoxWithinRange() {
+        Random random = new Random(5);
+        SpaceGrid grid = new SpaceGrid();
+        List<Space> spaces = populate(grid, random, 60);
+        Predicate<Space> bigOnes = s -> s.getBounds().maxX - s.getBounds().minX > 20;
+        for (int i = 0; i < 1000; i++) {
+            int x = random.nextInt(1400) - 700, y = random.nextInt(100) - 50, z = random.nextInt(1400) - 700;
+            int maxDistance = 1 + random.nextInt(300);
+            Predicate<Space> filter = random.nextBoolean() ? null : bigOnes;
+            Space found = grid.nearest("world", x, y, z, maxDistance, filter);
+            double best = bruteNearest(spaces, x, y, z, maxDistance, filter);
+            String at = x + "," + y + "," + z + " within " + maxDistance;
+            if (best < 0) {
+                assertNull(found, at);
+            } else {
+                // Ties may pick either space; only the distance has to match
+                assertEquals(best, found.getBounds().distanceSquared(x, y, z), at);
+                assertTrue(filter == null || filter.test(found), at);
+            }
+        }
+    }
+
+    @Test
+    void removedAndReplacedSpacesAreNoLongerFound() {
+        Random random = new Random(9);
+        SpaceGrid grid = new SpaceGrid();
+        List<Space> spaces = populate(grid, random, 40);
+        for (int i = 0; i < 20; i++) {
+            Space prev = spaces.get(i);
+            if (i % 2 == 0) {
+                grid.remove(prev);
+                spaces.set(i, null);
+            } else {
+                // Alternate between the same box (swapped in place) and a moved one
+                Space now = i % 4 == 1 ? space(prev.getId(), prev.getBounds()) : space(prev.getId(), randomBox(random, 120));
+                grid.replace(prev, now);
+                spaces.set(i, now);
+            }
+        }
+        spaces.removeIf(Objects::isNull);
+        for (int i = 0; i < 300; i++) {
+            Bounds query = randomBox(random, 300);
+            Set<UUID> ids = new HashSet<>();
+            for (Space s : grid.intersecting("world", query)) {
+                assertTrue(ids.add(s.getId()));
+                assertTrue(spaces.contains(s), "stale space " + s.getBounds());
+            }
+            assertEquals(bruteIntersecting(spaces, query), ids);
+        }
+    }
+
+    private static List<Space> populate(SpaceGrid grid, Random random, int count) {
+        List<Space> spaces = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Space s = space(UUID.randomUUID(), randomBox(random, i % 10 == 0 ? 200 : 40)); // a few span many columns
+            grid.add(s);
+            spaces.add(s);
+        }
+        return spaces;
+    }
+
+    // Negative coordinates and column boundaries included
+    private static Bounds randomBox(Random random, int maxSize) {
+        int x = random.nextInt(1000) - 500, y = random.nextInt(80) - 40, z = random.nextInt(1000) - 500;
+        return new Bounds(x, y, z, x + random.nextInt(maxSize), y + random.nextInt(20), z + random.nextInt(maxSize));
+    }
+
+    // Two opposite corners are enough to give a space its box
+    private static Space space(UUID id, Bounds b) {
+        VoxelSet voxels = new VoxelSet();
+        voxels.add(b.minX, b.minY, b.minZ);
+        voxels.add(b.maxX, b.maxY, b.maxZ);
+        return new Space(id, "world", voxels, 0.0, 0.0, voxels.size());
+    }
+
+    private static Set<UUID> bruteIntersecting(List<Space> spaces, Bounds query) {
+        Set<UUID> ids = new HashSet<>();
+        for (Space s : spaces) if (s.getBounds().intersects(query)) ids.add(s.getId());
+        return ids;
+    }
+
+    // Squared distance to the closest accepted box in range, or -1
+    private static double bruteNearest(List<Space> spaces, int x, int y, int z, int maxDistance, Predicate<Space> filter) {
+        double best = -1;
+        for (Space s : spaces) {
+            double d = s.getBounds().distanceSquared(x, y, z);
+            if (d > (double) maxDistance * maxDistance || (filter != null && !filter.test(s))) continue;
+            if (best < 0 || d < best) best = d;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,127 @@
+package goat.thaw.system.space;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SpaceSnapshotTest {
+    private static final String[] WORLDS = {"world", "world_nether"};
+
+    @Test
+    void batchesMatchAPlainMapAndOldVersionsStayIntact() {
+        Random random = new Random(11);
+        SpaceSnapshot snapshot = SpaceSnapshot.EMPTY;
+        Model model = new Model();
+        List<SpaceSnapshot> history = new ArrayList<>();
+        List<Model> expected = new ArrayList<>();
+        for (int batch = 0; batch < 60; batch++) {
+            Map<UUID, Space> changed = new LinkedHashMap<>(); // overlaps resolve by the order spaces are indexed in
+            List<UUID> ids = new ArrayList<>(model.spaces.keySet());
+            int edits = 1 + random.nextInt(6);
+            for (int e = 0; e < edits; e++) {
+                int kind = ids.isEmpty() ? 0 : random.nextInt(3);
+                UUID id = kind == 0 ? UUID.randomUUID() : ids.get(random.nextInt(ids.size()));
+                if (changed.containsKey(id)) continue;
+                changed.put(id, kind == 2 ? null : randomSpace(random, id));
+            }
+            snapshot = snapshot.with(changed);
+            model = model.apply(changed);
+            history.add(snapshot);
+            expected.add(model);
+            assertEquals(batch + 1, snapshot.version());
+        }
+        // Every published version still answers as it did when it was made
+        for (int i = 0; i < history.size(); i++) check(history.get(i), expected.get(i), new Random(i));
+    }
+
+    @Test
+    void unchangedSpaceIsSkippedAndRemovingTheLastSpaceEmptiesTheWorld() {
+        Space a = box(UUID.randomUUID(), "world", 0, 0, 0, 4);
+        SpaceSnapshot one = SpaceSnapshot.EMPTY.with(Map.of(a.getId(), a));
+        SpaceSnapshot same = one.with(Map.of(a.getId(), a));
+        assertEquals(1, same.getSpaces().size());
+        assertSame(a, same.spaceAt("world", 1, 1, 1));
+
+        Map<UUID, Space> gone = new HashMap<>();
+        gone.put(a.getId(), null);
+        SpaceSnapshot empty = same.with(gone);
+        assertEquals(0, empty.getSpaces().size());
+        assertNull(empty.get(a.getId()));
+        assertNull(empty.spaceAt("world", 1, 1, 1));
+        assertSame(a, one.spaceAt("world", 1, 1, 1));
+    }
+
+    private static void check(SpaceSnapshot snapshot, Model model, Random random) {
+        assertEquals(model.spaces.size(), snapshot.getSpaces().size());
+        Set<UUID> listed = new HashSet<>();
+        for (Space s : snapshot.getSpaces()) listed.add(s.getId());
+        assertEquals(model.spaces.keySet(), listed);
+        for (Map.Entry<UUID, Space> e : model.spaces.entrySet()) assertSame(e.getValue(), snapshot.get(e.getKey()));
+        for (int i = 0; i < 2000; i++) {
+            String world = WORLDS[random.nextInt(WORLDS.length)];
+            int x = random.nextInt(80) - 40, y = random.nextInt(40) - 20, z = random.nextInt(80) - 40;
+            assertSame(model.spaceAt(world, x, y, z), snapshot.spaceAt(world, x, y, z), world + " " + x + "," + y + "," + z);
+        }
+    }
+
+    // Boxes across section boundaries and negative coordinates, so spaces share sections and overlap
+    private static Space randomSpace(Random random, UUID id) {
+        return box(id, WORLDS[random.nextInt(WORLDS.length)],
+                random.nextInt(64) - 36, random.nextInt(32) - 18, random.nextInt(64) - 36, 2 + random.nextInt(14));
+    }
+
+    private static Space box(UUID id, String world, int x0, int y0, int z0, int size) {
+        VoxelSet voxels = new VoxelSet();
+        for (int x = x0; x < x0 + size; x++) {
+            for (int y = y0; y < y0 + size; y++) {
+                for (int z = z0; z < z0 + size; z++) voxels.add(x, y, z);
+            }
+        }
+        return new Space(id, world, voxels, 0.0, 0.0, voxels.size());
+    }
+
+    // The same state kept naively: every space with the order it was last indexed in
+    private static final class Model {
+        final Map<UUID, Space> spaces = new HashMap<>();
+        final Map<UUID, Integer> indexedAt = new HashMap<>();
+        int clock;
+
+        Model apply(Map<UUID, Space> changed) {
+            Model next = new Model();
+            next.spaces.putAll(spaces);
+            next.indexedAt.putAll(indexedAt);
+            next.clock = clock;
+            changed.forEach((id, space) -> {
+                if (space == null) {
+                    next.spaces.remove(id);
+                    next.indexedAt.remove(id);
+                } else {
+                    next.spaces.put(id, space);
+                    next.indexedAt.put(id, next.clock++);
+                }
+            });
+            return next;
+        }
+
+        Space spaceAt(String world, int x, int y, int z) {
+            Space best = null;
+            for (Space s : spaces.values()) {
+                if (!s.contains(world, x, y, z)) continue;
+                if (best == null || indexedAt.get(s.getId()) > indexedAt.get(best.getId())) best = s;
+            }
+            return best;
+        }
+    }
+}
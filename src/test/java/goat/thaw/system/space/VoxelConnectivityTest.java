@@ -0,0 +1,81 @@
+package goat.thaw.system.space;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoxelConnectivityTest {
+
+    @Test
+    void holeInAnOpenRoomDetachesNothing() {
+        VoxelSet rest = box(-8, 0, -8, 16, 8, 16);
+        rest.remove(0, 4, 0);
+        List<VoxelSet> pockets = VoxelConnectivity.detach(rest, 0, 4, 0, 10_000);
+        assertTrue(pockets.isEmpty());
+        assertEquals(16 * 8 * 16 - 1, rest.size());
+    }
+
+    @Test
+    void cuttingACorridorDetachesTheShorterEnd() {
+        VoxelSet rest = box(0, 0, 0, 40, 1, 1);
+        rest.remove(5, 0, 0);
+        List<VoxelSet> pockets = VoxelConnectivity.detach(rest, 5, 0, 0, 10_000);
+        assertEquals(1, pockets.size());
+        assertEquals(5, pockets.get(0).size());
+        assertTrue(pockets.get(0).contains(0, 0, 0));
+        assertEquals(34, rest.size());
+        assertFalse(rest.contains(4, 0, 0));
+        assertTrue(rest.contains(39, 0, 0));
+    }
+
+    @Test
+    void fillingAJunctionDetachesEveryShortArm() {
+        // Arms of 3, 4 and 30 voxels that met at the origin
+        VoxelSet rest = new VoxelSet();
+        for (int i = 1; i <= 3; i++) rest.add(-i, 0, 0);
+        for (int i = 1; i <= 4; i++) rest.add(0, 0, i);
+        for (int i = 1; i <= 30; i++) rest.add(i, 0, 0);
+        List<VoxelSet> pockets = VoxelConnectivity.detach(rest, 0, 0, 0, 10_000);
+        assertEquals(2, pockets.size());
+        assertEquals(7, pockets.get(0).size() + pockets.get(1).size());
+        assertEquals(30, rest.size());
+        assertTrue(rest.contains(30, 0, 0));
+        assertFalse(rest.contains(-1, 0, 0));
+        assertFalse(rest.contains(0, 0, 1));
+    }
+
+    @Test
+    void exhaustedBudgetStillSplitsAndKeepsTheBiggestPiece() {
+        // Two rooms whose only link was the filled cell; both are far bigger than the budget
+        VoxelSet rest = box(-20, 0, 0, 20, 10, 10);
+        rest.addAll(box(1, 0, 0, 25, 10, 10));
+        List<VoxelSet> pockets = VoxelConnectivity.detach(rest, 0, 5, 5, 50);
+        assertEquals(1, pockets.size());
+        assertEquals(20 * 10 * 10, pockets.get(0).size());
+        assertTrue(pockets.get(0).contains(-1, 5, 5));
+        assertEquals(25 * 10 * 10, rest.size());
+        assertTrue(rest.contains(1, 5, 5));
+    }
+
+    @Test
+    void singleNeighbourIsNeverCutOff() {
+        VoxelSet rest = box(1, 0, 0, 10, 1, 1);
+        List<VoxelSet> pockets = VoxelConnectivity.detach(rest, 0, 0, 0, 10_000);
+        assertTrue(pockets.isEmpty());
+        assertEquals(10, rest.size());
+    }
+
+    private static VoxelSet box(int x0, int y0, int z0, int sx, int sy, int sz) {
+        VoxelSet set = new VoxelSet();
+        for (int x = x0; x < x0 + sx; x++) {
+            for (int y = y0; y < y0 + sy; y++) {
+                for (int z = z0; z < z0 + sz; z++) set.add(x, y, z);
+            }
+        }
+        return set;
+    }
+}
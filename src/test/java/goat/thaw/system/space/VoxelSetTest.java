@@ -0,0 +1,106 @@
+package goat.thaw.system.space;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoxelSetTest {
+
+    @Test
+    void unionAndDifferenceMatchJavaSets() {
+        Random random = new Random(7);
+        Set<Long> a = new HashSet<>(), b = new HashSet<>();
+        VoxelSet va = new VoxelSet(), vb = new VoxelSet();
+        for (int i = 0; i < 20_000; i++) {
+            // Straddles section boundaries, including negative coordinates
+            int x = random.nextInt(64) - 32, y = random.nextInt(40) - 8, z = random.nextInt(64) - 32;
+            if (random.nextBoolean()) { a.add(Space.BlockPos.pack(x, y, z)); va.add(x, y, z); }
+            else { b.add(Space.BlockPos.pack(x, y, z)); vb.add(x, y, z); }
+        }
+        Set<Long> union = new HashSet<>(a);
+        union.addAll(b);
+        Set<Long> difference = new HashSet<>(a);
+        difference.removeAll(b);
+
+        assertSameVoxels(union, VoxelSet.union(va, vb));
+        assertSameVoxels(difference, VoxelSet.difference(va, vb));
+        assertSameVoxels(a, va); // neither operand changed
+        assertSameVoxels(b, vb);
+    }
+
+    @Test
+    void inPlaceOperationsCountChangedVoxels() {
+        VoxelSet set = box(0, 0, 0, 20);
+        VoxelSet other = box(10, 10, 10, 20);
+        assertEquals(8000 - 1000, set.addAll(other)); // the 10³ overlap was already there
+        assertEquals(2 * 8000 - 1000, set.size());
+        assertEquals(8000, set.removeAll(other));
+        assertEquals(7000, set.size());
+        assertFalse(set.contains(15, 15, 15));
+        assertTrue(set.contains(5, 5, 5));
+    }
+
+    @Test
+    void copyOfFrozenSetSharesUntilWritten() {
+        VoxelSet frozen = box(0, 0, 0, 32).freeze();
+        assertThrows(IllegalStateException.class, () -> frozen.add(100, 100, 100));
+
+        VoxelSet copy = frozen.copy();
+        assertFalse(copy.isFrozen());
+        assertTrue(copy.remove(1, 1, 1));
+        assertTrue(copy.add(40, 0, 0));
+        copy.removeAll(box(16, 16, 16, 16)); // drops a whole section the copy still shares
+        copy.addSection(0, 0, 0, new long[64]);
+
+        // The frozen original never sees the copy's writes
+        assertEquals(32 * 32 * 32, frozen.size());
+        assertTrue(frozen.contains(1, 1, 1));
+        assertFalse(frozen.contains(40, 0, 0));
+        assertTrue(frozen.contains(20, 20, 20));
+
+        assertEquals(32 * 32 * 32 - 1 + 1 - 16 * 16 * 16, copy.size());
+        assertFalse(copy.contains(1, 1, 1));
+        assertFalse(copy.contains(20, 20, 20));
+    }
+
+    @Test
+    void removingTheLastVoxelDropsTheSection() {
+        VoxelSet set = new VoxelSet();
+        set.add(-1, -1, -1);
+        set.add(0, 0, 0);
+        assertEquals(2, set.sectionCount());
+        set.remove(-1, -1, -1);
+        assertEquals(1, set.sectionCount());
+        assertEquals(0, set.bounds().minX);
+        assertEquals(0, set.bounds().maxY);
+    }
+
+    private static VoxelSet box(int x0, int y0, int z0, int size) {
+        VoxelSet set = new VoxelSet();
+        for (int x = x0; x < x0 + size; x++) {
+            for (int y = y0; y < y0 + size; y++) {
+                for (int z = z0; z < z0 + size; z++) set.add(x, y, z);
+            }
+        }
+        return set;
+    }
+
+    private static void assertSameVoxels(Set<Long> expected, VoxelSet actual) {
+        assertEquals(expected.size(), actual.size());
+        for (long p : expected) {
+            assertTrue(actual.contains(Space.BlockPos.unpackX(p), Space.BlockPos.unpackY(p), Space.BlockPos.unpackZ(p)));
+        }
+        // The cursor visits each voxel exactly once
+        Set<Long> walked = new HashSet<>();
+        VoxelSet.Cursor cursor = actual.cursor();
+        while (cursor.hasNext()) assertTrue(walked.add(cursor.next()));
+        assertEquals(expected, walked);
+    }
+}
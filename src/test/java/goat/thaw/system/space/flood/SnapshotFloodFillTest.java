@@ -0,0 +1,142 @@
+package goat.thaw.system.space.flood;
+
+import goat.thaw.system.space.BoundaryFaces;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotFloodFillTest {
+    // A tall cavern inside the 3x3 chunks start() captures up front, so no main-thread hop is needed
+    private static final int MIN_X = -15, MAX_X = 30, MIN_Z = -15, MAX_Z = 30;
+    private static final int MIN_Y = -250, MAX_Y = 245, ROOF_Y = 250;
+
+    @Test
+    void parallelFillMatchesSequentialOnALargeCavern() {
+        World world = world();
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SnapshotFloodFill.Result sequential = new SnapshotFloodFill(null, world, workers, true, 2_000_000)
+                    .start(0, 0, 0).join();
+            SnapshotFloodFill.Result parallel = new SnapshotFloodFill(null, world, workers, pool, true, 2_000_000)
+                    .start(0, 0, 0).join();
+
+            assertFalse(sequential.unsealed);
+            assertFalse(parallel.unsealed);
+            assertTrue(sequential.voxels.size() > 850_000, "cavern should be close to a million voxels: " + sequential.voxels.size());
+            assertEquals(sequential.voxels.size(), parallel.voxels.size());
+            sequential.voxels.forEach((x, y, z) ->
+                    assertTrue(parallel.voxels.contains(x, y, z), "parallel fill missed " + x + "," + y + "," + z));
+            assertEquals(histogram(sequential.faces), histogram(parallel.faces));
+            assertEquals(sequential.totalInfluence, parallel.totalInfluence, 1e-6);
+        } finally {
+            workers.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelFillStopsAtTheSky() {
+        World world = world((x, y, z) -> x == 20 && z == 20 ? Material.AIR : terrain(x, y, z), ROOF_Y); // a shaft through the roof
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SnapshotFloodFill.Result result = new SnapshotFloodFill(null, world, workers, pool, true, 2_000_000)
+                    .start(0, 0, 0).join();
+            assertTrue(result.unsealed);
+        } finally {
+            workers.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    // Air inside the box, broken up by stone and ice pillars and by floors with scattered holes,
+    // so the flood has to cross sections through narrow gaps
+    private static Material terrain(int x, int y, int z) {
+        if (x < MIN_X || x > MAX_X || z < MIN_Z || z > MAX_Z || y < MIN_Y || y > MAX_Y) return Material.STONE;
+        if (x == 0 && z == 0) return Material.AIR; // keep the seed column open
+        int h = hash(x >> 2, z >> 2);
+        if (h % 16 == 0) return Material.STONE;
+        if (h % 13 == 0 && y % 40 < 20) return Material.ICE;
+        if ((y & 63) == 0 && hash(x, z + y) % 5 != 0) return Material.STONE;
+        return Material.AIR;
+    }
+
+    private static int hash(int a, int b) {
+        int h = a * 73856093 ^ b * 19349663;
+        return (h ^ (h >>> 13)) & 0x7FFFFFFF;
+    }
+
+    private static Map<Integer, Integer> histogram(BoundaryFaces faces) {
+        Map<Integer, Integer> out = new HashMap<>();
+        faces.forEach(out::put);
+        return out;
+    }
+
+    private interface Terrain {
+        Material at(int x, int y, int z);
+    }
+
+    private static World world() {
+        return world(SnapshotFloodFillTest::terrain, ROOF_Y);
+    }
+
+    // Just enough of World, Chunk and ChunkSnapshot for a fill to run against generated terrain
+    private static World world(Terrain terrain, int highest) {
+        return proxy(World.class, (method, args) -> {
+            switch (method) {
+                case "getMinHeight": return -256;
+                case "getMaxHeight": return 256;
+                case "isChunkLoaded": return true;
+                case "getName": return "test";
+                case "getChunkAt": return chunk(terrain, highest, (Integer) args[0], (Integer) args[1]);
+                default: return null;
+            }
+        });
+    }
+
+    private static Chunk chunk(Terrain terrain, int highest, int cx, int cz) {
+        ChunkSnapshot snapshot = proxy(ChunkSnapshot.class, (method, args) -> {
+            switch (method) {
+                case "getHighestBlockYAt": return highest;
+                case "getBlockType": return terrain.at((cx << 4) + (Integer) args[0], (Integer) args[1], (cz << 4) + (Integer) args[2]);
+                case "getBlockData": {
+                    Material m = terrain.at((cx << 4) + (Integer) args[0], (Integer) args[1], (cz << 4) + (Integer) args[2]);
+                    return proxy(BlockData.class, (inner, unused) -> "getMaterial".equals(inner) ? m : null);
+                }
+                default: return null;
+            }
+        });
+        return proxy(Chunk.class, (method, args) -> "getChunkSnapshot".equals(method) ? snapshot : null);
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object p = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(self);
+                case "equals": return self == args[0];
+                case "toString": return type.getSimpleName();
+                default: return handler.invoke(method.getName(), args);
+            }
+        });
+        return type.cast(p);
+    }
+}
@@ -0,0 +1,199 @@
+package goat.thaw.system.space.storage;
+
+import goat.thaw.system.space.Space;
+import goat.thaw.system.space.VoxelSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceStoreTest {
+    private static final Logger LOGGER = Logger.getLogger("SpaceStoreTest");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void codecRoundTripsSparseAndDenseSections() throws Exception {
+        VoxelSet voxels = box(-20, 60, -20, 4, 3, 4); // sparse, across negative sections
+        voxels.addAll(box(32, 0, 32, 16, 16, 16));    // one full section, written as a raw bitset
+        Space s = new Space(UUID.randomUUID(), "world", voxels, 12.5, -3.25, voxels.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SpaceCodec.writeSpace(new DataOutputStream(bytes), s);
+        SpaceRecord rec = SpaceCodec.readSpace(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(s.getId(), rec.id);
+        assertEquals("world", rec.world);
+        assertEquals(12.5, rec.temperature);
+        assertEquals(-3.25, rec.totalInfluence);
+        assertEquals(voxels.size(), rec.airBlocks);
+        assertSameVoxels(voxels, rec.voxels);
+    }
+
+    @Test
+    void putDeltaAndDeleteReplayAfterReopen() {
+        Space a = space(box(0, 64, 0, 8, 4, 8), 20.0);
+        Space b = space(box(100, 64, 100, 6, 3, 6), 5.0);
+        VoxelSet grown = a.getVoxels().copy();
+        grown.add(8, 64, 0);          // small change: journalled as a DELTA
+        grown.remove(0, 64, 0);
+        Space a2 = new Space(a.getId(), "world", grown, 21.0, 0.0, grown.size());
+
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        store.put(a);
+        store.put(b);
+        store.putChange(a, a2);
+        store.delete(b);
+        store.close();
+
+        List<Space> loaded = reopen().loadRegion("world", 0, 0).join();
+        assertEquals(1, loaded.size());
+        Space got = loaded.get(0);
+        assertEquals(a.getId(), got.getId());
+        assertEquals(21.0, got.getTemperature());
+        assertSameVoxels(grown, got.getVoxels());
+    }
+
+    @Test
+    void refsFollowASpaceAcrossRegions() {
+        Space wide = space(box(500, 64, 0, 24, 2, 4), 10.0); // x 500..523 spans regions 0 and 1
+        VoxelSet narrow = box(500, 64, 0, 8, 2, 4);          // back inside region 0 only
+        Space shrunk = new Space(wide.getId(), "world", narrow, 10.0, 0.0, narrow.size());
+
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        store.put(wide);
+        store.flush();
+        List<Space> viaRef = store.loadRegion("world", 1, 0).join();
+        assertEquals(1, viaRef.size());
+        assertSameVoxels(wide.getVoxels(), viaRef.get(0).getVoxels());
+
+        store.putChange(wide, shrunk);
+        store.close();
+
+        SpaceStore reopened = reopen();
+        assertTrue(reopened.loadRegion("world", 1, 0).join().isEmpty(), "UNREF should drop the far region's pointer");
+        assertEquals(1, reopened.loadRegion("world", 0, 0).join().size());
+    }
+
+    @Test
+    void loadSpacesReadsOnlyTheRequestedIds() {
+        Space wide = space(box(500, 64, 0, 24, 2, 4), 10.0); // home region 0, REF in region 1
+        Space other = space(box(600, 64, 0, 4, 2, 4), 3.0);  // region 1 only
+
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        store.put(wide);
+        store.put(other);
+        store.close();
+
+        SpaceStore reopened = reopen();
+        List<Space> got = reopened.loadSpaces("world", 1, 0, Set.of(wide.getId(), UUID.randomUUID())).join();
+        assertEquals(1, got.size()); // the unknown id is just missing
+        assertEquals(wide.getId(), got.get(0).getId());
+        assertSameVoxels(wide.getVoxels(), got.get(0).getVoxels());
+        assertEquals(2, reopened.loadRegion("world", 1, 0).join().size());
+    }
+
+    @Test
+    void deleteUnrefsEveryCoveredRegion() {
+        Space wide = space(box(500, 64, 0, 24, 2, 4), 10.0);
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        store.put(wide);
+        store.delete(wide);
+        store.close();
+
+        SpaceStore reopened = reopen();
+        assertTrue(reopened.loadRegion("world", 0, 0).join().isEmpty());
+        assertTrue(reopened.loadRegion("world", 1, 0).join().isEmpty());
+    }
+
+    @Test
+    void compactionKeepsTheLatestVersion() {
+        Space s = space(box(0, 0, 0, 16, 16, 16), 0.0);
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        // Each full rewrite is about 600 bytes; 200 of them push the journal past the 64 KiB threshold
+        for (int i = 1; i <= 200; i++) store.put(new Space(s.getId(), "world", s.getVoxels(), i, 0.0, s.getAirBlocks()));
+        store.close();
+
+        File snapshot = regionFile("r.0.0.dat");
+        File journal = regionFile("r.0.0.log");
+        assertTrue(snapshot.exists(), "journal should have been compacted into a snapshot");
+        assertTrue(!journal.exists() || journal.length() < 64 * 1024, "journal should have been reset");
+
+        List<Space> loaded = reopen().loadRegion("world", 0, 0).join();
+        assertEquals(1, loaded.size());
+        assertEquals(200.0, loaded.get(0).getTemperature());
+        assertSameVoxels(s.getVoxels(), loaded.get(0).getVoxels());
+    }
+
+    @Test
+    void tornJournalTailIsDroppedAndLaterAppendsStayReadable() throws Exception {
+        Space a = space(box(0, 64, 0, 4, 4, 4), 1.0);
+        Space b = space(box(20, 64, 20, 4, 4, 4), 2.0);
+        SpaceStore store = new SpaceStore(dir.toFile(), LOGGER);
+        store.put(a);
+        store.put(b);
+        store.close();
+
+        // Simulate a crash in the middle of appending b's record
+        File journal = regionFile("r.0.0.log");
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        SpaceStore reopened = reopen();
+        List<Space> loaded = reopened.loadRegion("world", 0, 0).join();
+        assertEquals(1, loaded.size());
+        assertEquals(a.getId(), loaded.get(0).getId());
+
+        Space c = space(box(40, 64, 40, 4, 4, 4), 3.0);
+        reopened.put(c);
+        reopened.close();
+
+        List<Space> after = reopen().loadRegion("world", 0, 0).join();
+        assertEquals(2, after.size());
+        assertFalse(after.stream().anyMatch(s -> s.getId().equals(b.getId())));
+        assertTrue(after.stream().anyMatch(s -> s.getId().equals(c.getId())));
+    }
+
+    private SpaceStore reopen() {
+        return new SpaceStore(dir.toFile(), LOGGER);
+    }
+
+    private File regionFile(String name) {
+        return dir.resolve("world").resolve(name).toFile();
+    }
+
+    private static Space space(VoxelSet voxels, double temperature) {
+        return new Space(UUID.randomUUID(), "world", voxels, temperature, 0.0, voxels.size());
+    }
+
+    private static VoxelSet box(int x0, int y0, int z0, int dx, int dy, int dz) {
+        VoxelSet set = new VoxelSet();
+        for (int x = x0; x < x0 + dx; x++) {
+            for (int y = y0; y < y0 + dy; y++) {
+                for (int z = z0; z < z0 + dz; z++) set.add(x, y, z);
+            }
+        }
+        return set;
+    }
+
+    private static void assertSameVoxels(VoxelSet expected, VoxelSet actual) {
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((x, y, z) -> assertTrue(actual.contains(x, y, z), "missing " + x + "," + y + "," + z));
+    }
+}
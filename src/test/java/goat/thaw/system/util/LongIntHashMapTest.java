@@ -0,0 +1,84 @@
+package goat.thaw.system.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongIntHashMapTest {
+
+    @Test
+    void matchesHashMapThroughGrowthAndRemoval() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range so removes hit often; multiples of 4096 like packed coordinates
+            long key = (random.nextInt(5_000) - 2_500) * 4096L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1).intValue(), map.remove(key, -1));
+                expected.remove(key);
+            } else {
+                int value = random.nextInt();
+                assertEquals(expected.getOrDefault(key, -1).intValue(), map.put(key, value, -1));
+                expected.put(key, value);
+            }
+        }
+        assertSameContents(expected, map);
+    }
+
+    @Test
+    void backwardShiftKeepsCollidingKeysReachable() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (long k = 1; k <= 9; k++) map.put(k << 40, (int) k, 0);
+        for (long k = 1; k <= 9; k += 2) assertEquals((int) k, map.remove(k << 40, 0));
+        for (long k = 1; k <= 9; k++) {
+            assertEquals(k % 2 == 0, map.containsKey(k << 40), "key " + k);
+            assertEquals(k % 2 == 0 ? (int) k : -1, map.get(k << 40, -1));
+        }
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    void zeroKeyIsStoredOutOfBand() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertFalse(map.containsKey(0L));
+        assertEquals(-1, map.put(0L, 7, -1));
+        assertEquals(1, map.size());
+        assertEquals(7, map.get(0L, -1));
+        assertFalse(map.removeIfMapped(0L, 8));
+        assertTrue(map.removeIfMapped(0L, 7));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void ensureCapacityAndClearKeepEntriesConsistent() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for (int i = 1; i <= 100; i++) map.put(i, i, 0);
+        map.ensureCapacity(100_000);
+        for (int i = 1; i <= 100; i++) assertEquals(i, map.get(i, 0));
+        assertTrue(map.removeIfMapped(50, 50));
+        assertFalse(map.removeIfMapped(51, 0));
+        assertEquals(99, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(1, -1));
+        map.put(1, 2, 0);
+        assertEquals(2, map.get(1, 0));
+    }
+
+    private static void assertSameContents(Map<Long, Integer> expected, LongIntHashMap map) {
+        assertEquals(expected.size(), map.size());
+        int[] seen = {0};
+        map.forEach((key, value) -> {
+            assertEquals(expected.get(key), Integer.valueOf(value));
+            seen[0]++;
+        });
+        assertEquals(expected.size(), seen[0]);
+    }
+}